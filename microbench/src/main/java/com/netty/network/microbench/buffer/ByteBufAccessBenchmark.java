@@ -0,0 +1,85 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.ByteBufAllocator;
+import com.netty.network.buffer.UnpooledByteBufAllocator;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the accessors of {@link ByteBuf} whose cost is dominated by the accessibility and bounds checks, which
+ * must leave them small enough to be inlined into the caller.
+ */
+public class ByteBufAccessBenchmark extends AbstractMicrobenchmark {
+
+    // Leak detection would wrap the buffers and measure the wrapper instead.
+    private static final ByteBufAllocator allocator = new UnpooledByteBufAllocator(false, true);
+
+    private static final int SIZE = 1024;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        buffer = direct ? allocator.directBuffer(SIZE, SIZE) : allocator.heapBuffer(SIZE, SIZE);
+        buffer.writeZero(SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+    }
+
+    @Benchmark
+    public long getIntAndLong() {
+        ByteBuf buffer = this.buffer;
+        long sum = 0;
+        for (int i = 0; i < SIZE; i += 16) {
+            sum += buffer.getInt(i) + buffer.getLong(i + 8);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long readIntAndLong() {
+        ByteBuf buffer = this.buffer;
+        buffer.readerIndex(0);
+        long sum = 0;
+        while (buffer.isReadable()) {
+            sum += buffer.readInt() + buffer.readLong();
+            buffer.skipBytes(4);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public ByteBuf writeIntAndLong() {
+        ByteBuf buffer = this.buffer;
+        buffer.writerIndex(0);
+        for (int i = 0; i < SIZE; i += 16) {
+            buffer.writeInt(i).writeLong(i).writeInt(i);
+        }
+        return buffer;
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2012 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.ByteBufAllocator;
+import com.netty.network.buffer.PooledByteBufAllocator;
+import com.netty.network.buffer.UnpooledByteBufAllocator;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Random;
+
+/**
+ * Compares pooled and unpooled allocation across the tiny, small, normal and huge size classes. Buffers are kept
+ * in a ring so that allocation and release are interleaved the same way as under a realistic workload.
+ */
+public class ByteBufAllocatorBenchmark extends AbstractMicrobenchmark {
+
+    private static final ByteBufAllocator unpooledAllocator = new UnpooledByteBufAllocator(true);
+    private static final ByteBufAllocator pooledAllocator =
+            new PooledByteBufAllocator(true, 4, 4, 8192, 11, 0, 0); // Disable thread-local cache
+    private static final ByteBufAllocator pooledCachedAllocator = PooledByteBufAllocator.DEFAULT;
+
+    private static final int MAX_LIVE_BUFFERS = 8192;
+    // Upper bound for the memory kept alive per ring so the huge sizes do not exhaust the heap.
+    private static final int MAX_LIVE_BYTES = 64 * 1024 * 1024;
+
+    private final Random rand = new Random();
+    private ByteBuf[] unpooledHeapBuffers;
+    private ByteBuf[] unpooledDirectBuffers;
+    private ByteBuf[] pooledHeapBuffers;
+    private ByteBuf[] pooledDirectBuffers;
+    private ByteBuf[] pooledCachedHeapBuffers;
+    private ByteBuf[] pooledCachedDirectBuffers;
+
+    @Param({ "16", "256", "1024", "4096", "5120", "8192", "9216", "16384", "65536", "1048576", "33554432" })
+    public int size;
+
+    @Setup
+    public void setup() {
+        int liveBuffers = Math.max(1, Math.min(MAX_LIVE_BUFFERS, MAX_LIVE_BYTES / size));
+        unpooledHeapBuffers = new ByteBuf[liveBuffers];
+        unpooledDirectBuffers = new ByteBuf[liveBuffers];
+        pooledHeapBuffers = new ByteBuf[liveBuffers];
+        pooledDirectBuffers = new ByteBuf[liveBuffers];
+        pooledCachedHeapBuffers = new ByteBuf[liveBuffers];
+        pooledCachedDirectBuffers = new ByteBuf[liveBuffers];
+
+        // Make sure the pools are warm before we start measuring.
+        pooledAllocator.directBuffer(size).release();
+        pooledCachedAllocator.directBuffer(size).release();
+    }
+
+    @TearDown
+    public void releaseBuffers() {
+        release(unpooledHeapBuffers);
+        release(unpooledDirectBuffers);
+        release(pooledHeapBuffers);
+        release(pooledDirectBuffers);
+        release(pooledCachedHeapBuffers);
+        release(pooledCachedDirectBuffers);
+    }
+
+    private static void release(ByteBuf[] buffers) {
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuf buf = buffers[i];
+            if (buf != null) {
+                buf.release();
+                buffers[i] = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public void unpooledHeapAllocAndFree() {
+        int idx = rand.nextInt(unpooledHeapBuffers.length);
+        ByteBuf oldBuf = unpooledHeapBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        unpooledHeapBuffers[idx] = unpooledAllocator.heapBuffer(size);
+    }
+
+    @Benchmark
+    public void unpooledDirectAllocAndFree() {
+        int idx = rand.nextInt(unpooledDirectBuffers.length);
+        ByteBuf oldBuf = unpooledDirectBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        unpooledDirectBuffers[idx] = unpooledAllocator.directBuffer(size);
+    }
+
+    @Benchmark
+    public void pooledHeapAllocAndFree() {
+        int idx = rand.nextInt(pooledHeapBuffers.length);
+        ByteBuf oldBuf = pooledHeapBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledHeapBuffers[idx] = pooledAllocator.heapBuffer(size);
+    }
+
+    @Benchmark
+    public void pooledDirectAllocAndFree() {
+        int idx = rand.nextInt(pooledDirectBuffers.length);
+        ByteBuf oldBuf = pooledDirectBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledDirectBuffers[idx] = pooledAllocator.directBuffer(size);
+    }
+
+    @Benchmark
+    public void cachedPooledHeapAllocAndFree() {
+        int idx = rand.nextInt(pooledCachedHeapBuffers.length);
+        ByteBuf oldBuf = pooledCachedHeapBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledCachedHeapBuffers[idx] = pooledCachedAllocator.heapBuffer(size);
+    }
+
+    @Benchmark
+    public void cachedPooledDirectAllocAndFree() {
+        int idx = rand.nextInt(pooledCachedDirectBuffers.length);
+        ByteBuf oldBuf = pooledCachedDirectBuffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        pooledCachedDirectBuffers[idx] = pooledCachedAllocator.directBuffer(size);
+    }
+}
@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.ByteBufUtil;
+import com.netty.network.buffer.Unpooled;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.ByteProcessor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures the word at a time implementations of {@link ByteBuf#indexOf(int, int, byte)},
+ * {@link ByteBufUtil#equals(ByteBuf, ByteBuf)}, {@link ByteBufUtil#compare(ByteBuf, ByteBuf)} and
+ * {@link ByteBufUtil#hashCode(ByteBuf)}. {@link #forEachByteIndexOf()} is the byte by byte search used before.
+ */
+public class ByteBufUtilSwarBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "7", "64", "1024", "16384" })
+    public int length;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private ByteBuf buffer;
+    private ByteBuf same;
+    private ByteBuf lastDiffers;
+
+    @Setup
+    public void setup() {
+        buffer = newBuffer();
+        same = newBuffer();
+        lastDiffers = newBuffer();
+        // The delimiter is only found at the very end.
+        buffer.setByte(length - 1, '\n');
+        same.setByte(length - 1, '\n');
+    }
+
+    private ByteBuf newBuffer() {
+        ByteBuf buf = direct ? Unpooled.directBuffer(length) : Unpooled.buffer(length);
+        for (int i = 0; i < length; i++) {
+            buf.writeByte('a' + i % 26);
+        }
+        return buf;
+    }
+
+    @TearDown
+    public void tearDown() {
+        buffer.release();
+        same.release();
+        lastDiffers.release();
+    }
+
+    @Benchmark
+    public int indexOf() {
+        return buffer.indexOf(buffer.readerIndex(), buffer.writerIndex(), (byte) '\n');
+    }
+
+    @Benchmark
+    public int forEachByteIndexOf() {
+        return buffer.forEachByte(ByteProcessor.FIND_LF);
+    }
+
+    @Benchmark
+    public boolean equals() {
+        return ByteBufUtil.equals(buffer, same);
+    }
+
+    @Benchmark
+    public int compare() {
+        return ByteBufUtil.compare(buffer, lastDiffers);
+    }
+
+    @Benchmark
+    public int hashCode() {
+        return ByteBufUtil.hashCode(buffer);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.ByteBufUtil;
+import com.netty.network.buffer.Unpooled;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.CharsetUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures {@link ByteBufUtil#writeUtf8(ByteBuf, CharSequence)}, {@link ByteBufUtil#writeAscii(ByteBuf, CharSequence)}
+ * and {@link ByteBuf#toString(java.nio.charset.Charset)} for heap and direct buffers.
+ */
+public class ByteBufUtilUtf8Benchmark extends AbstractMicrobenchmark {
+
+    @Param({ "8", "64", "1024", "16384" })
+    public int length;
+
+    @Param({ "true", "false" })
+    public boolean ascii;
+
+    @Param({ "true", "false" })
+    public boolean direct;
+
+    private String string;
+    private StringBuilder stringBuilder;
+    private ByteBuf encodeBuffer;
+    private ByteBuf decodeBuffer;
+
+    @Setup
+    public void setup() {
+        StringBuilder sb = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            // Mix in a two byte character every 16 chars for the non ascii case.
+            sb.append(!ascii && (i & 15) == 15 ? 'é' : (char) ('a' + i % 26));
+        }
+        string = sb.toString();
+        stringBuilder = sb;
+
+        int maxBytes = ByteBufUtil.utf8MaxBytes(string);
+        encodeBuffer = direct ? Unpooled.directBuffer(maxBytes) : Unpooled.buffer(maxBytes);
+        byte[] bytes = string.getBytes(CharsetUtil.UTF_8);
+        decodeBuffer = direct ? Unpooled.directBuffer(bytes.length) : Unpooled.buffer(bytes.length);
+        decodeBuffer.writeBytes(bytes);
+    }
+
+    @TearDown
+    public void tearDown() {
+        encodeBuffer.release();
+        decodeBuffer.release();
+    }
+
+    @Benchmark
+    public int writeUtf8String() {
+        encodeBuffer.resetWriterIndex();
+        return ByteBufUtil.writeUtf8(encodeBuffer, string);
+    }
+
+    @Benchmark
+    public int writeUtf8StringBuilder() {
+        encodeBuffer.resetWriterIndex();
+        return ByteBufUtil.writeUtf8(encodeBuffer, stringBuilder);
+    }
+
+    @Benchmark
+    public int writeAsciiString() {
+        encodeBuffer.resetWriterIndex();
+        return ByteBufUtil.writeAscii(encodeBuffer, string);
+    }
+
+    @Benchmark
+    public int jdkGetBytesUtf8() {
+        encodeBuffer.resetWriterIndex();
+        byte[] bytes = string.getBytes(CharsetUtil.UTF_8);
+        encodeBuffer.writeBytes(bytes);
+        return bytes.length;
+    }
+
+    @Benchmark
+    public String decodeUtf8() {
+        return decodeBuffer.toString(CharsetUtil.UTF_8);
+    }
+
+    @Benchmark
+    public String decodeAscii() {
+        return decodeBuffer.toString(CharsetUtil.US_ASCII);
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.CompositeByteBuf;
+import com.netty.network.buffer.Unpooled;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Measures aggregating many small slices into a {@link CompositeByteBuf} and reading them back.
+ */
+public class CompositeByteBufBenchmark extends AbstractMicrobenchmark {
+
+    @Param({ "16", "1024" })
+    public int numComponents;
+
+    @Param({ "8", "128" })
+    public int componentSize;
+
+    private ByteBuf source;
+    private ByteBuf[] slices;
+    private CompositeByteBuf composite;
+
+    @Setup
+    public void setup() {
+        source = Unpooled.directBuffer(numComponents * componentSize);
+        source.writeZero(source.capacity());
+        slices = new ByteBuf[numComponents];
+        composite = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < numComponents; i++) {
+            composite.addComponent(true, source.retainedSlice(i * componentSize, componentSize));
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        composite.release();
+        source.release();
+    }
+
+    @Benchmark
+    public int addComponent() {
+        CompositeByteBuf buf = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        for (int i = 0; i < numComponents; i++) {
+            buf.addComponent(true, source.retainedSlice(i * componentSize, componentSize));
+        }
+        int readable = buf.readableBytes();
+        buf.release();
+        return readable;
+    }
+
+    @Benchmark
+    public int addComponents() {
+        CompositeByteBuf buf = Unpooled.compositeBuffer(Integer.MAX_VALUE);
+        ByteBuf[] slices = this.slices;
+        for (int i = 0; i < numComponents; i++) {
+            slices[i] = source.retainedSlice(i * componentSize, componentSize);
+        }
+        buf.addComponents(true, slices);
+        int readable = buf.readableBytes();
+        buf.release();
+        return readable;
+    }
+
+    @Benchmark
+    public long sequentialGetLong() {
+        CompositeByteBuf buf = composite;
+        long sum = 0;
+        for (int i = 0, end = buf.capacity() - 7; i < end; i += 8) {
+            sum += buf.getLong(i);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public int sequentialGetByte() {
+        CompositeByteBuf buf = composite;
+        int sum = 0;
+        for (int i = 0, end = buf.capacity(); i < end; i++) {
+            sum += buf.getByte(i);
+        }
+        return sum;
+    }
+}
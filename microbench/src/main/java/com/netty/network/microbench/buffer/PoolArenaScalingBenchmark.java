@@ -0,0 +1,101 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.buffer;
+
+import com.netty.network.buffer.ByteBuf;
+import com.netty.network.buffer.PooledByteBufAllocator;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures how allocation and deallocation out of a single {@link PooledByteBufAllocator} arena scale with the
+ * number of threads. The thread-local caches are disabled so every operation goes through the arena.
+ *
+ * Run e.g. {@code java -jar microbenchmarks.jar PoolArenaScalingBenchmark -p size=16384} and compare the scores
+ * of the nested {@code Threads*} classes.
+ */
+public abstract class PoolArenaScalingBenchmark extends AbstractMicrobenchmark {
+
+    private static final int LIVE_BUFFERS = 64;
+
+    @State(Scope.Benchmark)
+    public static class ArenaState {
+        // One heap and one direct arena shared by all threads, no thread-local caches.
+        final PooledByteBufAllocator allocator = new PooledByteBufAllocator(true, 1, 1, 8192, 11, 0, 0);
+
+        @Param({ "256", "16384", "65536" })
+        public int size;
+    }
+
+    private ByteBuf[] buffers;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        buffers = new ByteBuf[LIVE_BUFFERS];
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        for (int i = 0; i < buffers.length; i++) {
+            ByteBuf buf = buffers[i];
+            if (buf != null) {
+                buf.release();
+                buffers[i] = null;
+            }
+        }
+    }
+
+    @Benchmark
+    public void directAllocAndFree(ArenaState state) {
+        int idx = ThreadLocalRandom.current().nextInt(LIVE_BUFFERS);
+        ByteBuf oldBuf = buffers[idx];
+        if (oldBuf != null) {
+            oldBuf.release();
+        }
+        buffers[idx] = state.allocator.directBuffer(state.size);
+    }
+
+    @Threads(1)
+    public static class Threads1 extends PoolArenaScalingBenchmark { }
+
+    @Threads(2)
+    public static class Threads2 extends PoolArenaScalingBenchmark { }
+
+    @Threads(4)
+    public static class Threads4 extends PoolArenaScalingBenchmark { }
+
+    @Threads(8)
+    public static class Threads8 extends PoolArenaScalingBenchmark { }
+
+    @Threads(16)
+    public static class Threads16 extends PoolArenaScalingBenchmark { }
+
+    @Threads(32)
+    public static class Threads32 extends PoolArenaScalingBenchmark { }
+
+    @Threads(64)
+    public static class Threads64 extends PoolArenaScalingBenchmark { }
+}
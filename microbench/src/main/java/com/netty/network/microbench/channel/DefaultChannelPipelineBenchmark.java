@@ -0,0 +1,104 @@
+/*
+ * Copyright 2016 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.channel;
+
+import com.netty.network.channel.ChannelDuplexHandler;
+import com.netty.network.channel.ChannelHandler;
+import com.netty.network.channel.ChannelHandlerContext;
+import com.netty.network.channel.ChannelInboundHandlerAdapter;
+import com.netty.network.channel.ChannelPipeline;
+import com.netty.network.channel.ChannelPromise;
+import com.netty.network.channel.embedded.EmbeddedChannel;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the cost of traversing a {@link ChannelPipeline} of a given depth with
+ * {@link ChannelPipeline#fireChannelRead(Object)} and {@link ChannelPipeline#write(Object)}.
+ */
+public class DefaultChannelPipelineBenchmark extends AbstractMicrobenchmark {
+
+    private static final Object MESSAGE = new Object();
+
+    @ChannelHandler.Sharable
+    private static final class PassThroughHandler extends ChannelDuplexHandler {
+        static final PassThroughHandler INSTANCE = new PassThroughHandler();
+    }
+
+    private static final class ConsumingHandler extends ChannelInboundHandlerAdapter {
+        private final Blackhole hole;
+
+        ConsumingHandler(Blackhole hole) {
+            this.hole = hole;
+        }
+
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            hole.consume(msg);
+        }
+    }
+
+    private static final class OutboundConsumingHandler extends ChannelDuplexHandler {
+        private final Blackhole hole;
+
+        OutboundConsumingHandler(Blackhole hole) {
+            this.hole = hole;
+        }
+
+        @Override
+        public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+            hole.consume(msg);
+        }
+    }
+
+    @Param({ "1", "4", "16", "64" })
+    public int depth;
+
+    private EmbeddedChannel channel;
+    private ChannelPipeline pipeline;
+
+    @Setup
+    public void setup(Blackhole hole) {
+        channel = new EmbeddedChannel();
+        pipeline = channel.pipeline();
+        // The outbound consumer sits at the head so writes travel through every handler before being consumed.
+        pipeline.addLast(new OutboundConsumingHandler(hole));
+        for (int i = 0; i < depth; i++) {
+            pipeline.addLast(PassThroughHandler.INSTANCE);
+        }
+        pipeline.addLast(new ConsumingHandler(hole));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.close();
+    }
+
+    @Benchmark
+    public void fireChannelRead() {
+        pipeline.fireChannelRead(MESSAGE);
+    }
+
+    @Benchmark
+    public void write() {
+        pipeline.write(MESSAGE, channel.voidPromise());
+    }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.channel;
+
+import com.netty.network.channel.nio.NioEventLoop;
+import com.netty.network.channel.nio.NioEventLoopGroup;
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.concurrent.SingleThreadEventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Measures handing tasks to an idle {@link NioEventLoop} from another thread one at a time with
+ * {@link SingleThreadEventExecutor#execute(Runnable)}, which may wake up the selector for each of them, and all at
+ * once with {@link SingleThreadEventExecutor#executeBatch(java.util.Collection)}.
+ */
+public class NioEventLoopExecuteBatchBenchmark extends AbstractMicrobenchmark {
+
+    private static final int BATCH_SIZE = 16;
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    private static final Callable<Void> SYNC = new Callable<Void>() {
+        @Override
+        public Void call() {
+            return null;
+        }
+    };
+
+    private NioEventLoopGroup group;
+    private NioEventLoop loop;
+    private List<Runnable> batch;
+
+    @Setup
+    public void setup() {
+        group = new NioEventLoopGroup(1);
+        loop = (NioEventLoop) group.next();
+        Runnable[] tasks = new Runnable[BATCH_SIZE];
+        Arrays.fill(tasks, NOOP);
+        batch = Arrays.asList(tasks);
+    }
+
+    @TearDown
+    public void tearDown() {
+        group.shutdownGracefully().syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void execute() {
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            loop.execute(NOOP);
+        }
+        loop.submit(SYNC).syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_SIZE)
+    public void executeBatch() {
+        loop.executeBatch(batch);
+        loop.submit(SYNC).syncUninterruptibly();
+    }
+}
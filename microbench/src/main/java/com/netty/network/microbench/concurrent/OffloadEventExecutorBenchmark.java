@@ -0,0 +1,79 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.concurrent;
+
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.concurrent.EventExecutor;
+import com.netty.network.util.concurrent.UnorderedThreadPoolEventExecutor;
+import com.netty.network.util.concurrent.WorkStealingEventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures the throughput of offloading small CPU bound tasks from several producer threads to an executor with
+ * a single shared queue and to a work-stealing executor. Every producer periodically waits for the executor to
+ * catch up so the task queues can not grow without bounds.
+ */
+@State(Scope.Benchmark)
+public class OffloadEventExecutorBenchmark extends AbstractMicrobenchmark {
+
+    private static final int SYNC_INTERVAL = 1024;
+
+    private static final Runnable WORK = new Runnable() {
+        @Override
+        public void run() {
+            Blackhole.consumeCPU(100);
+        }
+    };
+
+    @Param({ "unordered", "workStealing" })
+    public String executorType;
+
+    private EventExecutor executor;
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        int submitted;
+    }
+
+    @Setup
+    public void setup() {
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        executor = "workStealing".equals(executorType) ?
+                new WorkStealingEventExecutor(nThreads) : new UnorderedThreadPoolEventExecutor(nThreads);
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdownGracefully().sync();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void execute4Producers(ProducerState state) {
+        executor.execute(WORK);
+        if (++state.submitted == SYNC_INTERVAL) {
+            state.submitted = 0;
+            executor.submit(WORK).syncUninterruptibly();
+        }
+    }
+}
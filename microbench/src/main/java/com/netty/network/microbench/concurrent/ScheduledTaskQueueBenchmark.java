@@ -0,0 +1,94 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.microbench.concurrent;
+
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.concurrent.AbstractScheduledEventExecutor;
+import com.netty.network.util.concurrent.DefaultEventExecutor;
+import com.netty.network.util.concurrent.ScheduledFuture;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scheduling and cancelling a timeout on an event executor which already has many outstanding timeouts,
+ * as an idle or connect timeout of one of many channels does, with the scheduled tasks kept in a priority queue
+ * or in a timing wheel, see {@link AbstractScheduledEventExecutor#setTimingWheelEnabled(boolean)}.
+ */
+public class ScheduledTaskQueueBenchmark extends AbstractMicrobenchmark {
+
+    private static final int OPERATIONS = 1000;
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    @Param({ "1000", "100000" })
+    public int pending;
+
+    @Param({ "false", "true" })
+    public boolean timingWheel;
+
+    private DefaultEventExecutor executor;
+    private Callable<Void> scheduleAndCancel;
+
+    @Setup
+    public void setup() {
+        executor = new DefaultEventExecutor();
+        executor.setTimingWheelEnabled(timingWheel);
+        executor.submit(new Callable<Void>() {
+            @Override
+            public Void call() {
+                // Spread the outstanding timeouts over a minute, far enough ahead to never fire during a run.
+                for (int i = 0; i < pending; i++) {
+                    executor.schedule(NOOP, 600000 + i % 60000, TimeUnit.MILLISECONDS);
+                }
+                return null;
+            }
+        }).syncUninterruptibly();
+
+        scheduleAndCancel = new Callable<Void>() {
+            @Override
+            public Void call() {
+                for (int i = 0; i < OPERATIONS; i++) {
+                    // Like the timeout of a new channel, it is due after the outstanding ones.
+                    ScheduledFuture<?> timeout = executor.schedule(NOOP, 1200000 + i, TimeUnit.MILLISECONDS);
+                    timeout.cancel(false);
+                }
+                return null;
+            }
+        };
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdownGracefully(0, 0, TimeUnit.SECONDS).syncUninterruptibly();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(OPERATIONS)
+    public void scheduleAndCancel() {
+        executor.submit(scheduleAndCancel).syncUninterruptibly();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.concurrent;
+
+import com.netty.network.microbench.util.AbstractMicrobenchmark;
+import com.netty.network.util.concurrent.DefaultEventExecutor;
+import com.netty.network.util.concurrent.SingleThreadEventExecutor;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Measures the throughput of {@link SingleThreadEventExecutor#execute(Runnable)} when called from one or more
+ * foreign producer threads. Every producer periodically waits for the executor to catch up so the task queue
+ * can not grow without bounds.
+ */
+@State(Scope.Benchmark)
+public class SingleThreadEventExecutorBenchmark extends AbstractMicrobenchmark {
+
+    private static final int SYNC_INTERVAL = 1024;
+
+    private static final Runnable NOOP = new Runnable() {
+        @Override
+        public void run() {
+            // NOOP
+        }
+    };
+
+    private SingleThreadEventExecutor executor;
+
+    @State(Scope.Thread)
+    public static class ProducerState {
+        int submitted;
+    }
+
+    @Setup
+    public void setup() {
+        executor = new DefaultEventExecutor();
+    }
+
+    @TearDown
+    public void tearDown() throws InterruptedException {
+        executor.shutdownGracefully().sync();
+    }
+
+    private void execute(ProducerState state) {
+        executor.execute(NOOP);
+        if (++state.submitted == SYNC_INTERVAL) {
+            state.submitted = 0;
+            executor.submit(NOOP).syncUninterruptibly();
+        }
+    }
+
+    @Benchmark
+    @Threads(1)
+    public void execute1Producer(ProducerState state) {
+        execute(state);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void execute4Producers(ProducerState state) {
+        execute(state);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void execute16Producers(ProducerState state) {
+        execute(state);
+    }
+}
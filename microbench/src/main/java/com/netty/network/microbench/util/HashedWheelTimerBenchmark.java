@@ -0,0 +1,69 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.util;
+
+import com.netty.network.util.HashedWheelTimer;
+import com.netty.network.util.Timeout;
+import com.netty.network.util.TimerTask;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures scheduling and cancelling timeouts on a {@link HashedWheelTimer}, which is the typical life cycle of
+ * an idle or connect timeout that never fires.
+ */
+@State(Scope.Benchmark)
+public class HashedWheelTimerBenchmark extends AbstractMicrobenchmark {
+
+    private static final TimerTask NOOP = new TimerTask() {
+        @Override
+        public void run(Timeout timeout) {
+            // NOOP
+        }
+    };
+
+    private HashedWheelTimer timer;
+
+    @Setup
+    public void setup() {
+        timer = new HashedWheelTimer(10, TimeUnit.MILLISECONDS, 512);
+        timer.start();
+    }
+
+    @TearDown
+    public void tearDown() {
+        timer.stop();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean scheduleAndCancel() {
+        return timer.newTimeout(NOOP, 30, TimeUnit.SECONDS).cancel();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean scheduleAndCancel4Threads() {
+        return timer.newTimeout(NOOP, 30, TimeUnit.SECONDS).cancel();
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.microbench.util;
+
+import com.netty.network.util.Recycler;
+import org.jctools.queues.SpscArrayQueue;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures {@link Recycler#get()} and {@link Recycler.Handle#recycle(Object)} when objects are recycled by the
+ * thread that obtained them and when they are handed over to and recycled by another thread.
+ */
+public class RecyclerBenchmark extends AbstractMicrobenchmark {
+
+    private static final Recycler<DummyObject> RECYCLER = new Recycler<DummyObject>() {
+        @Override
+        protected DummyObject newObject(Handle<DummyObject> handle) {
+            return new DummyObject(handle);
+        }
+    };
+
+    static final class DummyObject {
+        private final Recycler.Handle<DummyObject> handle;
+
+        DummyObject(Recycler.Handle<DummyObject> handle) {
+            this.handle = handle;
+        }
+
+        void recycle() {
+            handle.recycle(this);
+        }
+    }
+
+    @State(Scope.Group)
+    public static class HandOverState {
+        final SpscArrayQueue<DummyObject> queue = new SpscArrayQueue<DummyObject>(1024);
+    }
+
+    @Benchmark
+    public DummyObject sameThreadGetAndRecycle() {
+        DummyObject object = RECYCLER.get();
+        object.recycle();
+        return object;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public boolean producerGet(HandOverState state) {
+        DummyObject object = RECYCLER.get();
+        if (!state.queue.offer(object)) {
+            // Consumer is behind, just recycle it from this thread.
+            object.recycle();
+            return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("crossThread")
+    @GroupThreads(1)
+    public boolean consumerRecycle(HandOverState state) {
+        DummyObject object = state.queue.poll();
+        if (object == null) {
+            return false;
+        }
+        object.recycle();
+        return true;
+    }
+}
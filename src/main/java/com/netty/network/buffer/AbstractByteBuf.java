@@ -42,6 +42,8 @@ public abstract class AbstractByteBuf extends ByteBuf {
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(AbstractByteBuf.class);
     private static final String PROP_MODE = "io.netty.buffer.bytebuf.checkAccessible";
     private static final boolean checkAccessible;
+    private static final int MAX_VARINT32_BYTES = 5;
+    private static final int MAX_VARINT64_BYTES = 10;
 
     static {
         checkAccessible = SystemPropertyUtil.getBoolean(PROP_MODE, true);
@@ -264,10 +266,23 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     private void ensureWritable0(int minWritableBytes) {
-        if (minWritableBytes <= writableBytes()) {
-            return;
+        if (minWritableBytes > writableBytes()) {
+            grow(minWritableBytes);
         }
+    }
 
+    /**
+     * Checks that this buffer is accessible and can take {@code minWritableBytes}, in a single branch so the write
+     * methods stay small enough to be inlined.
+     */
+    private void ensureAccessibleAndWritable(int minWritableBytes) {
+        if (isInaccessible() | minWritableBytes > capacity() - writerIndex) {
+            ensureAccessible();
+            ensureWritable0(minWritableBytes);
+        }
+    }
+
+    private void grow(int minWritableBytes) {
         if (minWritableBytes > maxCapacity - writerIndex) {
             throw new IndexOutOfBoundsException(String.format(
                     "writerIndex(%d) + minWritableBytes(%d) exceeds maxCapacity(%d): %s",
@@ -800,6 +815,94 @@ public abstract class AbstractByteBuf extends ByteBuf {
         return v;
     }
 
+    @Override
+    public int readVarInt32() {
+        ensureAccessible();
+        int i = readerIndex;
+        if (writerIndex - i < MAX_VARINT32_BYTES) {
+            return (int) readVarInt64Slow();
+        }
+
+        // There are enough readable bytes for all encodings of up to 5 bytes, so none of them needs a bounds check.
+        int b = _getByte(i);
+        if (b >= 0) {
+            readerIndex = i + 1;
+            return b;
+        }
+        int v = b & 0x7F;
+        if ((b = _getByte(i + 1)) >= 0) {
+            readerIndex = i + 2;
+            return v | b << 7;
+        }
+        v |= (b & 0x7F) << 7;
+        if ((b = _getByte(i + 2)) >= 0) {
+            readerIndex = i + 3;
+            return v | b << 14;
+        }
+        v |= (b & 0x7F) << 14;
+        if ((b = _getByte(i + 3)) >= 0) {
+            readerIndex = i + 4;
+            return v | b << 21;
+        }
+        v |= (b & 0x7F) << 21;
+        if ((b = _getByte(i + 4)) >= 0) {
+            readerIndex = i + 5;
+            return v | b << 28;
+        }
+        // A negative number which was written as a 64-bit varint.
+        return (int) readVarInt64Slow();
+    }
+
+    @Override
+    public long readVarInt64() {
+        ensureAccessible();
+        int i = readerIndex;
+        if (writerIndex - i < MAX_VARINT64_BYTES) {
+            return readVarInt64Slow();
+        }
+
+        // There are enough readable bytes for all encodings, so none of them needs a bounds check.
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = _getByte(i++);
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                readerIndex = i;
+                return v;
+            }
+        }
+        throw new IllegalStateException("malformed varint: longer than " + MAX_VARINT64_BYTES + " bytes");
+    }
+
+    private long readVarInt64Slow() {
+        int i = readerIndex;
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (i >= writerIndex) {
+                throw new IndexOutOfBoundsException(String.format(
+                        "readerIndex(%d) + length(%d) exceeds writerIndex(%d): %s",
+                        readerIndex, i - readerIndex + 1, writerIndex, this));
+            }
+            byte b = _getByte(i++);
+            v |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                readerIndex = i;
+                return v;
+            }
+        }
+        throw new IllegalStateException("malformed varint: longer than " + MAX_VARINT64_BYTES + " bytes");
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        return ByteBufUtil.zigZagDecode32(readVarInt32());
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        return ByteBufUtil.zigZagDecode64(readVarInt64());
+    }
+
     @Override
     public char readChar() {
         return (char) readShort();
@@ -931,16 +1034,14 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeByte(int value) {
-        ensureAccessible();
-        ensureWritable0(1);
+        ensureAccessibleAndWritable(1);
         _setByte(writerIndex++, value);
         return this;
     }
 
     @Override
     public ByteBuf writeShort(int value) {
-        ensureAccessible();
-        ensureWritable0(2);
+        ensureAccessibleAndWritable(2);
         _setShort(writerIndex, value);
         writerIndex += 2;
         return this;
@@ -948,8 +1049,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeShortLE(int value) {
-        ensureAccessible();
-        ensureWritable0(2);
+        ensureAccessibleAndWritable(2);
         _setShortLE(writerIndex, value);
         writerIndex += 2;
         return this;
@@ -957,8 +1057,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeMedium(int value) {
-        ensureAccessible();
-        ensureWritable0(3);
+        ensureAccessibleAndWritable(3);
         _setMedium(writerIndex, value);
         writerIndex += 3;
         return this;
@@ -966,8 +1065,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeMediumLE(int value) {
-        ensureAccessible();
-        ensureWritable0(3);
+        ensureAccessibleAndWritable(3);
         _setMediumLE(writerIndex, value);
         writerIndex += 3;
         return this;
@@ -975,8 +1073,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeInt(int value) {
-        ensureAccessible();
-        ensureWritable0(4);
+        ensureAccessibleAndWritable(4);
         _setInt(writerIndex, value);
         writerIndex += 4;
         return this;
@@ -984,8 +1081,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeIntLE(int value) {
-        ensureAccessible();
-        ensureWritable0(4);
+        ensureAccessibleAndWritable(4);
         _setIntLE(writerIndex, value);
         writerIndex += 4;
         return this;
@@ -993,8 +1089,7 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeLong(long value) {
-        ensureAccessible();
-        ensureWritable0(8);
+        ensureAccessibleAndWritable(8);
         _setLong(writerIndex, value);
         writerIndex += 8;
         return this;
@@ -1002,13 +1097,48 @@ public abstract class AbstractByteBuf extends ByteBuf {
 
     @Override
     public ByteBuf writeLongLE(long value) {
-        ensureAccessible();
-        ensureWritable0(8);
+        ensureAccessibleAndWritable(8);
         _setLongLE(writerIndex, value);
         writerIndex += 8;
         return this;
     }
 
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        ensureAccessibleAndWritable(ByteBufUtil.varInt32Size(value));
+        int i = writerIndex;
+        while ((value & ~0x7F) != 0) {
+            _setByte(i++, value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        _setByte(i++, value);
+        writerIndex = i;
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        ensureAccessibleAndWritable(ByteBufUtil.varInt64Size(value));
+        int i = writerIndex;
+        while ((value & ~0x7FL) != 0) {
+            _setByte(i++, (int) value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        _setByte(i++, (int) value);
+        writerIndex = i;
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        return writeVarInt32(ByteBufUtil.zigZagEncode32(value));
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        return writeVarInt64(ByteBufUtil.zigZagEncode64(value));
+    }
+
     @Override
     public ByteBuf writeChar(int value) {
         writeShort(value);
@@ -1347,30 +1477,29 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     protected final void checkIndex(int index, int fieldLength) {
-        ensureAccessible();
-        checkIndex0(index, fieldLength);
+        // Both checks share a single branch, the cold path works out which of them failed.
+        if (isInaccessible() | MathUtil.isOutOfBounds(index, fieldLength, capacity())) {
+            throw checkIndexFailure(index, fieldLength);
+        }
     }
 
     final void checkIndex0(int index, int fieldLength) {
         if (MathUtil.isOutOfBounds(index, fieldLength, capacity())) {
-            throw new IndexOutOfBoundsException(String.format(
-                    "index: %d, length: %d (expected: range(0, %d))", index, fieldLength, capacity()));
+            throw indexOutOfBounds("index", index, fieldLength, capacity());
         }
     }
 
     protected final void checkSrcIndex(int index, int length, int srcIndex, int srcCapacity) {
         checkIndex(index, length);
         if (MathUtil.isOutOfBounds(srcIndex, length, srcCapacity)) {
-            throw new IndexOutOfBoundsException(String.format(
-                    "srcIndex: %d, length: %d (expected: range(0, %d))", srcIndex, length, srcCapacity));
+            throw indexOutOfBounds("srcIndex", srcIndex, length, srcCapacity);
         }
     }
 
     protected final void checkDstIndex(int index, int length, int dstIndex, int dstCapacity) {
         checkIndex(index, length);
         if (MathUtil.isOutOfBounds(dstIndex, length, dstCapacity)) {
-            throw new IndexOutOfBoundsException(String.format(
-                    "dstIndex: %d, length: %d (expected: range(0, %d))", dstIndex, length, dstCapacity));
+            throw indexOutOfBounds("dstIndex", dstIndex, length, dstCapacity);
         }
     }
 
@@ -1387,14 +1516,35 @@ public abstract class AbstractByteBuf extends ByteBuf {
     }
 
     private void checkReadableBytes0(int minimumReadableBytes) {
-        ensureAccessible();
-        if (readerIndex > writerIndex - minimumReadableBytes) {
-            throw new IndexOutOfBoundsException(String.format(
-                    "readerIndex(%d) + length(%d) exceeds writerIndex(%d): %s",
-                    readerIndex, minimumReadableBytes, writerIndex, this));
+        if (isInaccessible() | readerIndex > writerIndex - minimumReadableBytes) {
+            throw checkReadableBytesFailure(minimumReadableBytes);
         }
     }
 
+    // The exceptions are built out of line, as formatting their messages would make the accessors too big to be
+    // inlined.
+
+    private RuntimeException checkIndexFailure(int index, int fieldLength) {
+        ensureAccessible();
+        return indexOutOfBounds("index", index, fieldLength, capacity());
+    }
+
+    private RuntimeException checkReadableBytesFailure(int minimumReadableBytes) {
+        ensureAccessible();
+        return new IndexOutOfBoundsException(String.format(
+                "readerIndex(%d) + length(%d) exceeds writerIndex(%d): %s",
+                readerIndex, minimumReadableBytes, writerIndex, this));
+    }
+
+    private static IndexOutOfBoundsException indexOutOfBounds(String name, int index, int length, int capacity) {
+        return new IndexOutOfBoundsException(String.format(
+                "%s: %d, length: %d (expected: range(0, %d))", name, index, length, capacity));
+    }
+
+    private boolean isInaccessible() {
+        return checkAccessible && refCnt() == 0;
+    }
+
     /**
      * Should be called by every method that tries to access the buffers content to check
      * if the buffer was released before.
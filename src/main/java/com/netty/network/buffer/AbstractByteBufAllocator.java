@@ -94,6 +94,13 @@ public abstract class AbstractByteBufAllocator implements ByteBufAllocator {
         emptyBuf = new EmptyByteBuf(this);
     }
 
+    /**
+     * Returns {@code true} if {@link #buffer()} allocates direct buffers.
+     */
+    final boolean isDirectByDefault() {
+        return directByDefault;
+    }
+
     @Override
     public ByteBuf buffer() {
         if (directByDefault) {
@@ -18,8 +18,10 @@ package com.netty.network.buffer;
 
 
 import com.netty.network.util.IllegalReferenceCountException;
+import com.netty.network.util.concurrent.FastThreadLocalThread;
 import com.netty.network.util.internal.ObjectUtil;
 import com.netty.network.util.internal.PlatformDependent;
+import com.netty.network.util.internal.SystemPropertyUtil;
 
 import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
@@ -41,7 +43,13 @@ public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
         refCntUpdater = updater;
     }
 
+    // Read here rather than in PooledByteBufAllocator so the first buffer does not initialize the default allocator.
+    static final boolean BIASED_REFERENCE_COUNTING =
+            SystemPropertyUtil.getBoolean("io.netty.allocator.biasedReferenceCounting", false);
+
     private volatile int refCnt = 1;
+    // The thread which may update refCnt without atomic operations, see initRefCnt().
+    private volatile Thread owner;
 
     protected AbstractReferenceCountedByteBuf(int maxCapacity) {
         super(maxCapacity);
@@ -59,6 +67,45 @@ public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
         this.refCnt = refCnt;
     }
 
+    /**
+     * Sets the reference count of a pooled buffer that is about to be handed out to {@code 1}. If biased reference
+     * counting is enabled and the current thread belongs to an event loop, this thread updates the reference count
+     * without atomic operations until the buffer is used by another thread or {@link #markShared()} is called.
+     */
+    final void initRefCnt() {
+        if (BIASED_REFERENCE_COUNTING) {
+            Thread current = Thread.currentThread();
+            owner = current instanceof FastThreadLocalThread ? current : null;
+        }
+        refCnt = 1;
+    }
+
+    /**
+     * Makes all following updates of the reference count atomic, must be called before the buffer is handed to
+     * another thread while the current thread may still retain or release it.
+     */
+    final void markShared() {
+        if (BIASED_REFERENCE_COUNTING && owner != null) {
+            owner = null;
+        }
+    }
+
+    /**
+     * Returns {@code true} if the current thread may update the reference count without atomic operations. When
+     * called by any other thread the buffer is marked as shared.
+     */
+    private boolean isOwnedByCurrentThread() {
+        Thread owner = this.owner;
+        if (owner == null) {
+            return false;
+        }
+        if (owner == Thread.currentThread()) {
+            return true;
+        }
+        this.owner = null;
+        return false;
+    }
+
     @Override
     public ByteBuf retain() {
         return retain0(1);
@@ -70,6 +117,16 @@ public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
     }
 
     private ByteBuf retain0(int increment) {
+        if (BIASED_REFERENCE_COUNTING && isOwnedByCurrentThread()) {
+            int refCnt = this.refCnt;
+            final int nextCnt = refCnt + increment;
+            if (nextCnt <= increment) {
+                throw new IllegalReferenceCountException(refCnt, increment);
+            }
+            // Only this thread updates the count, so there is no need for a CAS or a full fence.
+            refCntUpdater.lazySet(this, nextCnt);
+            return this;
+        }
         for (;;) {
             int refCnt = this.refCnt;
             final int nextCnt = refCnt + increment;
@@ -106,6 +163,18 @@ public abstract class AbstractReferenceCountedByteBuf extends AbstractByteBuf {
     }
 
     private boolean release0(int decrement) {
+        if (BIASED_REFERENCE_COUNTING && isOwnedByCurrentThread()) {
+            int refCnt = this.refCnt;
+            if (refCnt < decrement) {
+                throw new IllegalReferenceCountException(refCnt, -decrement);
+            }
+            refCntUpdater.lazySet(this, refCnt - decrement);
+            if (refCnt == decrement) {
+                deallocate();
+                return true;
+            }
+            return false;
+        }
         for (;;) {
             int refCnt = this.refCnt;
             if (refCnt < decrement) {
@@ -863,6 +863,30 @@ final class AdvancedLeakAwareByteBuf extends WrappedByteBuf {
         return super.readLongLE();
     }
 
+    @Override
+    public int readVarInt32() {
+        recordLeakNonRefCountingOperation(leak);
+        return super.readVarInt32();
+    }
+
+    @Override
+    public long readVarInt64() {
+        recordLeakNonRefCountingOperation(leak);
+        return super.readVarInt64();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        recordLeakNonRefCountingOperation(leak);
+        return super.readZigZagVarInt32();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        recordLeakNonRefCountingOperation(leak);
+        return super.readZigZagVarInt64();
+    }
+
     @Override
     public ByteBuf writeShortLE(int value) {
         recordLeakNonRefCountingOperation(leak);
@@ -887,6 +911,30 @@ final class AdvancedLeakAwareByteBuf extends WrappedByteBuf {
         return super.writeLongLE(value);
     }
 
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        recordLeakNonRefCountingOperation(leak);
+        return super.writeVarInt32(value);
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        recordLeakNonRefCountingOperation(leak);
+        return super.writeVarInt64(value);
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        recordLeakNonRefCountingOperation(leak);
+        return super.writeZigZagVarInt32(value);
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        recordLeakNonRefCountingOperation(leak);
+        return super.writeZigZagVarInt64(value);
+    }
+
     @Override
     public int writeCharSequence(CharSequence sequence, Charset charset) {
         recordLeakNonRefCountingOperation(leak);
@@ -862,6 +862,30 @@ final class AdvancedLeakAwareCompositeByteBuf extends WrappedCompositeByteBuf {
         return super.readLongLE();
     }
 
+    @Override
+    public int readVarInt32() {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.readVarInt32();
+    }
+
+    @Override
+    public long readVarInt64() {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.readVarInt64();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.readZigZagVarInt32();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.readZigZagVarInt64();
+    }
+
     @Override
     public ByteBuf writeShortLE(int value) {
         AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
@@ -886,6 +910,30 @@ final class AdvancedLeakAwareCompositeByteBuf extends WrappedCompositeByteBuf {
         return super.writeLongLE(value);
     }
 
+    @Override
+    public CompositeByteBuf writeVarInt32(int value) {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.writeVarInt32(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeVarInt64(long value) {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.writeVarInt64(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt32(int value) {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.writeZigZagVarInt32(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt64(long value) {
+        AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
+        return super.writeZigZagVarInt64(value);
+    }
+
     @Override
     public CompositeByteBuf addComponent(ByteBuf buffer) {
         AdvancedLeakAwareByteBuf.recordLeakNonRefCountingOperation(leak);
@@ -0,0 +1,429 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ScatteringByteChannel;
+import java.nio.charset.Charset;
+
+/**
+ * A buffer allocated by a {@link BudgetedByteBufAllocator}. Growing it is charged to the budget before the memory is
+ * allocated, and the charge is returned once it was released. Derived buffers share the {@link Charge}, as any of
+ * them may release the memory and duplicates may also grow it.
+ */
+final class BudgetedByteBuf extends WrappedByteBuf {
+
+    private final Charge charge;
+
+    BudgetedByteBuf(ByteBuf buf, Charge charge) {
+        super(buf);
+        this.charge = charge;
+    }
+
+    /**
+     * Charges the growth a write of {@code minWritableBytes} will cause.
+     */
+    private void reserveWritable(int minWritableBytes) {
+        if (minWritableBytes > writableBytes()) {
+            int minNewCapacity = writerIndex() + minWritableBytes;
+            // Otherwise the write will fail without growing the buffer.
+            if (minNewCapacity >= 0 && minNewCapacity <= maxCapacity()) {
+                charge.reserve(alloc().calculateNewCapacity(minNewCapacity, maxCapacity()) - capacity());
+            }
+        }
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        charge.reserve(newCapacity - capacity());
+        buf.capacity(newCapacity);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf ensureWritable(int minWritableBytes) {
+        reserveWritable(minWritableBytes);
+        buf.ensureWritable(minWritableBytes);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public int ensureWritable(int minWritableBytes, boolean force) {
+        if (force && minWritableBytes > maxWritableBytes()) {
+            // The buffer will grow to its maximum capacity.
+            charge.reserve(maxCapacity() - capacity());
+        } else {
+            reserveWritable(minWritableBytes);
+        }
+        int result = buf.ensureWritable(minWritableBytes, force);
+        charge.update();
+        return result;
+    }
+
+    @Override
+    public ByteBuf writeBoolean(boolean value) {
+        reserveWritable(1);
+        buf.writeBoolean(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeByte(int value) {
+        reserveWritable(1);
+        buf.writeByte(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeShort(int value) {
+        reserveWritable(2);
+        buf.writeShort(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeShortLE(int value) {
+        reserveWritable(2);
+        buf.writeShortLE(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeMedium(int value) {
+        reserveWritable(3);
+        buf.writeMedium(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeMediumLE(int value) {
+        reserveWritable(3);
+        buf.writeMediumLE(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeInt(int value) {
+        reserveWritable(4);
+        buf.writeInt(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeIntLE(int value) {
+        reserveWritable(4);
+        buf.writeIntLE(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeLong(long value) {
+        reserveWritable(8);
+        buf.writeLong(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeLongLE(long value) {
+        reserveWritable(8);
+        buf.writeLongLE(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        reserveWritable(ByteBufUtil.varInt32Size(value));
+        buf.writeVarInt32(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        reserveWritable(ByteBufUtil.varInt64Size(value));
+        buf.writeVarInt64(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        reserveWritable(ByteBufUtil.varInt32Size(ByteBufUtil.zigZagEncode32(value)));
+        buf.writeZigZagVarInt32(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        reserveWritable(ByteBufUtil.varInt64Size(ByteBufUtil.zigZagEncode64(value)));
+        buf.writeZigZagVarInt64(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeChar(int value) {
+        reserveWritable(2);
+        buf.writeChar(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeFloat(float value) {
+        reserveWritable(4);
+        buf.writeFloat(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeDouble(double value) {
+        reserveWritable(8);
+        buf.writeDouble(value);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(ByteBuf src) {
+        reserveWritable(src.readableBytes());
+        buf.writeBytes(src);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(ByteBuf src, int length) {
+        reserveWritable(length);
+        buf.writeBytes(src, length);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(ByteBuf src, int srcIndex, int length) {
+        reserveWritable(length);
+        buf.writeBytes(src, srcIndex, length);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(byte[] src) {
+        reserveWritable(src.length);
+        buf.writeBytes(src);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(byte[] src, int srcIndex, int length) {
+        reserveWritable(length);
+        buf.writeBytes(src, srcIndex, length);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeBytes(ByteBuffer src) {
+        reserveWritable(src.remaining());
+        buf.writeBytes(src);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public int writeBytes(InputStream in, int length) throws IOException {
+        reserveWritable(length);
+        int written = buf.writeBytes(in, length);
+        charge.update();
+        return written;
+    }
+
+    @Override
+    public int writeBytes(ScatteringByteChannel in, int length) throws IOException {
+        reserveWritable(length);
+        int written = buf.writeBytes(in, length);
+        charge.update();
+        return written;
+    }
+
+    @Override
+    public int writeBytes(FileChannel in, long position, int length) throws IOException {
+        reserveWritable(length);
+        int written = buf.writeBytes(in, position, length);
+        charge.update();
+        return written;
+    }
+
+    @Override
+    public ByteBuf writeZero(int length) {
+        reserveWritable(length);
+        buf.writeZero(length);
+        charge.update();
+        return this;
+    }
+
+    @Override
+    public int writeCharSequence(CharSequence sequence, Charset charset) {
+        // The encoded length is not known up front, any growth beyond one byte per char is charged afterwards.
+        reserveWritable(sequence.length());
+        int written = buf.writeCharSequence(sequence, charset);
+        charge.update();
+        return written;
+    }
+
+    @Override
+    public boolean release() {
+        boolean deallocated = super.release();
+        if (deallocated) {
+            charge.release();
+        }
+        return deallocated;
+    }
+
+    @Override
+    public boolean release(int decrement) {
+        boolean deallocated = super.release(decrement);
+        if (deallocated) {
+            charge.release();
+        }
+        return deallocated;
+    }
+
+    @Override
+    public ByteBuf order(ByteOrder endianness) {
+        if (order() == endianness) {
+            return this;
+        } else {
+            return new BudgetedByteBuf(super.order(endianness), charge);
+        }
+    }
+
+    @Override
+    public ByteBuf slice() {
+        return new BudgetedByteBuf(super.slice(), charge);
+    }
+
+    @Override
+    public ByteBuf retainedSlice() {
+        return new BudgetedByteBuf(super.retainedSlice(), charge);
+    }
+
+    @Override
+    public ByteBuf slice(int index, int length) {
+        return new BudgetedByteBuf(super.slice(index, length), charge);
+    }
+
+    @Override
+    public ByteBuf retainedSlice(int index, int length) {
+        return new BudgetedByteBuf(super.retainedSlice(index, length), charge);
+    }
+
+    @Override
+    public ByteBuf duplicate() {
+        return new BudgetedByteBuf(super.duplicate(), charge);
+    }
+
+    @Override
+    public ByteBuf retainedDuplicate() {
+        return new BudgetedByteBuf(super.retainedDuplicate(), charge);
+    }
+
+    @Override
+    public ByteBuf readSlice(int length) {
+        return new BudgetedByteBuf(super.readSlice(length), charge);
+    }
+
+    @Override
+    public ByteBuf readRetainedSlice(int length) {
+        return new BudgetedByteBuf(super.readRetainedSlice(length), charge);
+    }
+
+    @Override
+    public ByteBuf asReadOnly() {
+        return new BudgetedByteBuf(super.asReadOnly(), charge);
+    }
+
+    /**
+     * The number of bytes a buffer and all buffers derived from it are charged with.
+     */
+    static final class Charge {
+        private final BudgetedByteBufAllocator.Budget budget;
+        private final ByteBuf root;
+        private long charged;
+        private boolean released;
+
+        Charge(BudgetedByteBufAllocator.Budget budget, ByteBuf root, long charged) {
+            this.budget = budget;
+            this.root = root;
+            this.charged = charged;
+        }
+
+        /**
+         * Charges {@code bytes} the buffer is about to grow by, throws if this would exceed a limit.
+         */
+        void reserve(long bytes) {
+            if (bytes > 0 && !released) {
+                budget.reserve(bytes);
+                charged += bytes;
+            }
+        }
+
+        /**
+         * Adjusts the charge to the current capacity, which returns what was reserved but not used.
+         */
+        void update() {
+            if (released) {
+                return;
+            }
+            long delta = root.capacity() - charged;
+            if (delta > 0) {
+                budget.forceReserve(delta);
+            } else if (delta < 0) {
+                budget.release(-delta);
+            }
+            charged += delta;
+        }
+
+        void release() {
+            if (!released) {
+                released = true;
+                budget.release(charged);
+                charged = 0;
+            }
+        }
+    }
+}
@@ -0,0 +1,265 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import com.netty.network.util.internal.OutOfDirectMemoryError;
+import com.netty.network.util.internal.PlatformDependent;
+import com.netty.network.util.internal.StringUtil;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A {@link ByteBufAllocator} which allocates from another allocator, usually a {@link PooledByteBufAllocator}, and
+ * limits how much direct memory the buffers allocated through it may hold at once.
+ *
+ * Allocators form a hierarchy: a child created by {@link #newChild(String, long)} charges its buffers to its own
+ * budget and to the budgets of all its ancestors. This way inbound decoding, outbound buffering and caches can each
+ * get their own limit while the root limits their sum, and a slow consumer can only exhaust its own budget.
+ *
+ * A buffer is charged with its capacity when it is allocated and again whenever it grows, the charge is returned
+ * once the buffer is released. An allocation or a write which would exceed a limit fails with an
+ * {@link OutOfDirectMemoryError} before any memory is allocated. Heap buffers are counted but not limited.
+ *
+ * Only the capacity of the buffers that are handed out is counted, not the memory the parent allocator keeps in its
+ * pools and caches, which must be taken into account when choosing the limits.
+ */
+public final class BudgetedByteBufAllocator extends AbstractByteBufAllocator
+        implements ByteBufAllocatorMetricProvider {
+
+    private final ByteBufAllocator delegate;
+    private final BudgetedByteBufAllocator parent;
+    private final String name;
+    private final Budget directBudget;
+    private final Budget heapBudget;
+    private final ByteBufAllocatorMetric metric = new ByteBufAllocatorMetric() {
+        @Override
+        public long usedHeapMemory() {
+            return BudgetedByteBufAllocator.this.usedHeapMemory();
+        }
+
+        @Override
+        public long usedDirectMemory() {
+            return BudgetedByteBufAllocator.this.usedDirectMemory();
+        }
+    };
+
+    /**
+     * Creates a new root allocator.
+     *
+     * @param delegate          the allocator the buffers are allocated from
+     * @param name              the name used in error messages
+     * @param maxDirectMemory   the maximum number of bytes the direct buffers allocated through this allocator and
+     *                          all its children may hold at once
+     */
+    public BudgetedByteBufAllocator(ByteBufAllocator delegate, String name, long maxDirectMemory) {
+        this(delegate, null, name, maxDirectMemory);
+    }
+
+    private BudgetedByteBufAllocator(
+            ByteBufAllocator delegate, BudgetedByteBufAllocator parent, String name, long maxDirectMemory) {
+        super(preferDirect(delegate));
+        if (delegate == null) {
+            throw new NullPointerException("delegate");
+        }
+        if (name == null) {
+            throw new NullPointerException("name");
+        }
+        if (maxDirectMemory < 0) {
+            throw new IllegalArgumentException("maxDirectMemory: " + maxDirectMemory + " (expected: >= 0)");
+        }
+        this.delegate = delegate;
+        this.parent = parent;
+        this.name = name;
+        directBudget = new Budget(parent == null ? null : parent.directBudget, name, maxDirectMemory);
+        heapBudget = new Budget(parent == null ? null : parent.heapBudget, name, Long.MAX_VALUE);
+    }
+
+    private static boolean preferDirect(ByteBufAllocator delegate) {
+        if (delegate instanceof AbstractByteBufAllocator) {
+            return ((AbstractByteBufAllocator) delegate).isDirectByDefault();
+        }
+        return PlatformDependent.directBufferPreferred();
+    }
+
+    /**
+     * Creates a child allocator which allocates from the same allocator as this one. Its buffers are charged to its
+     * own budget as well as to the budget of this allocator and all of its ancestors.
+     *
+     * @param name              the name used in error messages
+     * @param maxDirectMemory   the maximum number of bytes the direct buffers allocated through the child and all its
+     *                          children may hold at once
+     */
+    public BudgetedByteBufAllocator newChild(String name, long maxDirectMemory) {
+        return new BudgetedByteBufAllocator(delegate, this, name, maxDirectMemory);
+    }
+
+    /**
+     * Returns the allocator this allocator was created from by {@link #newChild(String, long)}, or {@code null} if
+     * it is a root allocator.
+     */
+    public BudgetedByteBufAllocator parent() {
+        return parent;
+    }
+
+    /**
+     * Returns the allocator the buffers are allocated from.
+     */
+    public ByteBufAllocator delegate() {
+        return delegate;
+    }
+
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Returns the maximum number of bytes the direct buffers of this allocator and its children may hold at once.
+     */
+    public long maxDirectMemory() {
+        return directBudget.max;
+    }
+
+    /**
+     * Returns the number of bytes the direct buffers of this allocator and its children currently hold.
+     */
+    public long usedDirectMemory() {
+        return directBudget.used.get();
+    }
+
+    /**
+     * Returns the number of bytes the heap buffers of this allocator and its children currently hold.
+     */
+    public long usedHeapMemory() {
+        return heapBudget.used.get();
+    }
+
+    @Override
+    public ByteBufAllocatorMetric metric() {
+        return metric;
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        heapBudget.reserve(initialCapacity);
+        final ByteBuf buf;
+        try {
+            buf = delegate.heapBuffer(initialCapacity, maxCapacity);
+        } catch (Throwable cause) {
+            heapBudget.release(initialCapacity);
+            PlatformDependent.throwException(cause);
+            return null;
+        }
+        return newBudgetedBuffer(buf, heapBudget, initialCapacity);
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        directBudget.reserve(initialCapacity);
+        final ByteBuf buf;
+        try {
+            buf = delegate.directBuffer(initialCapacity, maxCapacity);
+        } catch (Throwable cause) {
+            directBudget.release(initialCapacity);
+            PlatformDependent.throwException(cause);
+            return null;
+        }
+        return newBudgetedBuffer(buf, directBudget, initialCapacity);
+    }
+
+    private static ByteBuf newBudgetedBuffer(ByteBuf buf, Budget budget, int charged) {
+        BudgetedByteBuf.Charge charge = new BudgetedByteBuf.Charge(budget, buf, charged);
+        // The delegate may have returned a larger buffer than requested.
+        charge.update();
+        return new BudgetedByteBuf(buf, charge);
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return delegate.isDirectBufferPooled();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(name: " + name + ", usedDirectMemory: " + usedDirectMemory() +
+                ", maxDirectMemory: " + maxDirectMemory() + ", usedHeapMemory: " + usedHeapMemory() + ')';
+    }
+
+    /**
+     * The number of bytes the buffers of one allocator hold, which are also counted by the budgets of all its
+     * ancestors.
+     */
+    static final class Budget {
+        private final Budget parent;
+        private final String name;
+        final long max;
+        final AtomicLong used = new AtomicLong();
+
+        Budget(Budget parent, String name, long max) {
+            this.parent = parent;
+            this.name = name;
+            this.max = max;
+        }
+
+        /**
+         * Charges {@code bytes} to this budget and all its ancestors, or to none of them if one would exceed its
+         * limit.
+         */
+        void reserve(long bytes) {
+            Budget b = this;
+            try {
+                for (; b != null; b = b.parent) {
+                    b.reserve0(bytes);
+                }
+            } catch (OutOfDirectMemoryError e) {
+                for (Budget r = this; r != b; r = r.parent) {
+                    r.used.addAndGet(-bytes);
+                }
+                throw e;
+            }
+        }
+
+        private void reserve0(long bytes) {
+            for (;;) {
+                long usedMemory = used.get();
+                long newUsedMemory = usedMemory + bytes;
+                if (newUsedMemory > max) {
+                    throw new OutOfDirectMemoryError("failed to allocate " + bytes + " byte(s) of direct memory in '" +
+                            name + "' (used: " + usedMemory + ", max: " + max + ')');
+                }
+                if (used.compareAndSet(usedMemory, newUsedMemory)) {
+                    break;
+                }
+            }
+        }
+
+        /**
+         * Charges {@code bytes} which were already allocated, even if a limit is exceeded by doing so.
+         */
+        void forceReserve(long bytes) {
+            for (Budget b = this; b != null; b = b.parent) {
+                b.used.addAndGet(bytes);
+            }
+        }
+
+        void release(long bytes) {
+            for (Budget b = this; b != null; b = b.parent) {
+                long usedMemory = b.used.addAndGet(-bytes);
+                assert usedMemory >= 0;
+            }
+        }
+    }
+}
@@ -1446,6 +1446,52 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract long  readLongLE();
 
+    /**
+     * Gets a 32-bit integer encoded as a variable-length integer (varint) at the current {@code readerIndex} and
+     * increases the {@code readerIndex} by the length of the encoding, which is {@code 1} to {@code 5} bytes as
+     * written by {@link #writeVarInt32(int)}. Like in protocol buffers, encodings of up to {@code 10} bytes are
+     * accepted and the bits which do not fit are discarded.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.readableBytes} is less than the length of the encoding
+     * @throws IllegalStateException
+     *         if the encoding is longer than {@code 10} bytes
+     */
+    public abstract int readVarInt32();
+
+    /**
+     * Gets a 64-bit integer encoded as a variable-length integer (varint) at the current {@code readerIndex} and
+     * increases the {@code readerIndex} by the length of the encoding, which is {@code 1} to {@code 10} bytes.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.readableBytes} is less than the length of the encoding
+     * @throws IllegalStateException
+     *         if the encoding is longer than {@code 10} bytes
+     */
+    public abstract long readVarInt64();
+
+    /**
+     * Gets a signed 32-bit integer written by {@link #writeZigZagVarInt32(int)} at the current {@code readerIndex}
+     * and increases the {@code readerIndex} by the length of the encoding.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.readableBytes} is less than the length of the encoding
+     * @throws IllegalStateException
+     *         if the encoding is longer than {@code 10} bytes
+     */
+    public abstract int readZigZagVarInt32();
+
+    /**
+     * Gets a signed 64-bit integer written by {@link #writeZigZagVarInt64(long)} at the current {@code readerIndex}
+     * and increases the {@code readerIndex} by the length of the encoding.
+     *
+     * @throws IndexOutOfBoundsException
+     *         if {@code this.readableBytes} is less than the length of the encoding
+     * @throws IllegalStateException
+     *         if the encoding is longer than {@code 10} bytes
+     */
+    public abstract long readZigZagVarInt64();
+
     /**
      * Gets a 2-byte UTF-16 character at the current {@code readerIndex}
      * and increases the {@code readerIndex} by {@code 2} in this buffer.
@@ -1775,6 +1821,43 @@ public abstract class ByteBuf implements ReferenceCounted, Comparable<ByteBuf> {
      */
     public abstract ByteBuf writeLongLE(long value);
 
+    /**
+     * Sets the specified 32-bit integer at the current {@code writerIndex} as a variable-length integer (varint),
+     * which stores 7 bits per byte starting with the least significant ones as in protocol buffers, and increases
+     * the {@code writerIndex} by the length of the encoding, which is {@code 1} to {@code 5} bytes, see
+     * {@link ByteBufUtil#varInt32Size(int)}. Negative values always take {@code 5} bytes, use
+     * {@link #writeZigZagVarInt32(int)} for them.
+     * If {@code this.writableBytes} is less than the length of the encoding, {@link #ensureWritable(int)}
+     * will be called in an attempt to expand capacity to accommodate.
+     */
+    public abstract ByteBuf writeVarInt32(int value);
+
+    /**
+     * Sets the specified 64-bit integer at the current {@code writerIndex} as a variable-length integer (varint) and
+     * increases the {@code writerIndex} by the length of the encoding, which is {@code 1} to {@code 10} bytes, see
+     * {@link ByteBufUtil#varInt64Size(long)}.
+     * If {@code this.writableBytes} is less than the length of the encoding, {@link #ensureWritable(int)}
+     * will be called in an attempt to expand capacity to accommodate.
+     */
+    public abstract ByteBuf writeVarInt64(long value);
+
+    /**
+     * Sets the specified signed 32-bit integer at the current {@code writerIndex} as a ZigZag encoded varint, which
+     * maps values of a small magnitude to short encodings no matter their sign, and increases the
+     * {@code writerIndex} by the length of the encoding.
+     * If {@code this.writableBytes} is less than the length of the encoding, {@link #ensureWritable(int)}
+     * will be called in an attempt to expand capacity to accommodate.
+     */
+    public abstract ByteBuf writeZigZagVarInt32(int value);
+
+    /**
+     * Sets the specified signed 64-bit integer at the current {@code writerIndex} as a ZigZag encoded varint and
+     * increases the {@code writerIndex} by the length of the encoding.
+     * If {@code this.writableBytes} is less than the length of the encoding, {@link #ensureWritable(int)}
+     * will be called in an attempt to expand capacity to accommodate.
+     */
+    public abstract ByteBuf writeZigZagVarInt64(long value);
+
     /**
      * Sets the specified 2-byte UTF-16 character at the current
      * {@code writerIndex} and increases the {@code writerIndex} by {@code 2}
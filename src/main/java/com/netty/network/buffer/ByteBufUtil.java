@@ -49,6 +49,12 @@ public final class ByteBufUtil {
             return CharBuffer.allocate(1024);
         }
     };
+    private static final FastThreadLocal<byte[]> BYTE_ARRAYS = new FastThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() throws Exception {
+            return new byte[1024];
+        }
+    };
 
     private static final byte WRITE_UTF_UNKNOWN = (byte) '?';
     private static final int MAX_CHAR_BUFFER_SIZE;
@@ -56,6 +62,9 @@ public final class ByteBufUtil {
     private static final int MAX_BYTES_PER_CHAR_UTF8 =
             (int) CharsetUtil.encoder(CharsetUtil.UTF_8).maxBytesPerChar();
 
+    // Compare and search 8 bytes at once if the platform supports fast unaligned access, see SWARUtil.
+    private static final boolean USE_SWAR = PlatformDependent.isUnaligned();
+
     static final ByteBufAllocator DEFAULT_ALLOCATOR;
 
     static {
@@ -121,6 +130,10 @@ public final class ByteBufUtil {
      * useful when implementing a new buffer type.
      */
     public static int hashCode(ByteBuf buffer) {
+        if (USE_SWAR && isBigEndianAbstractByteBuf(buffer)) {
+            return hashCodeSwar((AbstractByteBuf) buffer, buffer.readerIndex(), buffer.readableBytes());
+        }
+
         final int aLen = buffer.readableBytes();
         final int intCount = aLen >>> 2;
         final int byteCount = aLen & 3;
@@ -150,6 +163,36 @@ public final class ByteBufUtil {
         return hashCode;
     }
 
+    @SuppressWarnings("deprecation")
+    private static boolean isBigEndianAbstractByteBuf(ByteBuf buffer) {
+        return buffer instanceof AbstractByteBuf && buffer.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    private static int hashCodeSwar(AbstractByteBuf buffer, int index, int length) {
+        buffer.checkIndex(index, length);
+
+        // Same result as hashCode(ByteBuf) which hashes one int at a time, but with a single bounds check.
+        int hashCode = 1;
+        for (int i = length >>> 3; i > 0; i --) {
+            long value = buffer._getLong(index);
+            hashCode = 31 * (31 * hashCode + (int) (value >>> 32)) + (int) value;
+            index += 8;
+        }
+        if ((length & 4) != 0) {
+            hashCode = 31 * hashCode + buffer._getInt(index);
+            index += 4;
+        }
+        for (int i = length & 3; i > 0; i --) {
+            hashCode = 31 * hashCode + buffer._getByte(index ++);
+        }
+
+        if (hashCode == 0) {
+            hashCode = 1;
+        }
+
+        return hashCode;
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other for {@code length} bytes starting at {@code aStartIndex}
@@ -166,6 +209,10 @@ public final class ByteBufUtil {
             return false;
         }
 
+        if (USE_SWAR && a instanceof AbstractByteBuf && b instanceof AbstractByteBuf) {
+            return equalsSwar((AbstractByteBuf) a, aStartIndex, (AbstractByteBuf) b, bStartIndex, length);
+        }
+
         final int longCount = length >>> 3;
         final int byteCount = length & 7;
 
@@ -198,6 +245,31 @@ public final class ByteBufUtil {
         return true;
     }
 
+    private static boolean equalsSwar(AbstractByteBuf a, int aStartIndex, AbstractByteBuf b, int bStartIndex,
+                                      int length) {
+        a.checkIndex(aStartIndex, length);
+        b.checkIndex(bStartIndex, length);
+
+        // The byte order does not matter as long as both sides are read the same way.
+        for (int i = length >>> 3; i > 0; i --) {
+            if (a._getLong(aStartIndex) != b._getLong(bStartIndex)) {
+                return false;
+            }
+            aStartIndex += 8;
+            bStartIndex += 8;
+        }
+
+        for (int i = length & 7; i > 0; i --) {
+            if (a._getByte(aStartIndex) != b._getByte(bStartIndex)) {
+                return false;
+            }
+            aStartIndex ++;
+            bStartIndex ++;
+        }
+
+        return true;
+    }
+
     /**
      * Returns {@code true} if and only if the two specified buffers are
      * identical to each other as described in {@link ByteBuf#equals(Object)}.
@@ -219,6 +291,13 @@ public final class ByteBufUtil {
         final int aLen = bufferA.readableBytes();
         final int bLen = bufferB.readableBytes();
         final int minLength = Math.min(aLen, bLen);
+
+        if (USE_SWAR && isBigEndianAbstractByteBuf(bufferA) && isBigEndianAbstractByteBuf(bufferB)) {
+            int res = compareSwar((AbstractByteBuf) bufferA, bufferA.readerIndex(),
+                                  (AbstractByteBuf) bufferB, bufferB.readerIndex(), minLength);
+            return res != 0 ? res : aLen - bLen;
+        }
+
         final int uintCount = minLength >>> 2;
         final int byteCount = minLength & 3;
         int aIndex = bufferA.readerIndex();
@@ -238,7 +317,7 @@ public final class ByteBufUtil {
             }
             if (res != 0) {
                 // Ensure we not overflow when cast
-                return (int) Math.min(Integer.MAX_VALUE, res);
+                return (int) Math.min(Integer.MAX_VALUE, Math.max(Integer.MIN_VALUE, res));
             }
             aIndex += uintCountIncrement;
             bIndex += uintCountIncrement;
@@ -254,6 +333,31 @@ public final class ByteBufUtil {
         return aLen - bLen;
     }
 
+    private static int compareSwar(AbstractByteBuf a, int aIndex, AbstractByteBuf b, int bIndex, int length) {
+        a.checkIndex(aIndex, length);
+        b.checkIndex(bIndex, length);
+
+        for (int i = length >>> 3; i > 0; i --) {
+            long aValue = a._getLong(aIndex);
+            long bValue = b._getLong(bIndex);
+            if (aValue != bValue) {
+                // Big endian, so the first differing byte holds the most significant differing bit.
+                int shift = 56 - (Long.numberOfLeadingZeros(aValue ^ bValue) & ~7);
+                return (int) (aValue >>> shift & 0xFF) - (int) (bValue >>> shift & 0xFF);
+            }
+            aIndex += 8;
+            bIndex += 8;
+        }
+
+        for (int i = length & 7; i > 0; i --) {
+            int comp = (a._getByte(aIndex ++) & 0xFF) - (b._getByte(bIndex ++) & 0xFF);
+            if (comp != 0) {
+                return comp;
+            }
+        }
+        return 0;
+    }
+
     private static long compareUintBigEndian(
             ByteBuf bufferA, ByteBuf bufferB, int aIndex, int bIndex, int uintCountIncrement) {
         for (int aEnd = aIndex + uintCountIncrement; aIndex < aEnd; aIndex += 4, bIndex += 4) {
@@ -365,9 +469,37 @@ public final class ByteBufUtil {
             return -1;
         }
 
+        if (USE_SWAR && buffer instanceof AbstractByteBuf) {
+            return firstIndexOfSwar((AbstractByteBuf) buffer, fromIndex, toIndex, value);
+        }
+
         return buffer.forEachByte(fromIndex, toIndex - fromIndex, new ByteProcessor.IndexOfProcessor(value));
     }
 
+    private static int firstIndexOfSwar(AbstractByteBuf buffer, int fromIndex, int toIndex, byte value) {
+        buffer.checkIndex(fromIndex, toIndex - fromIndex);
+
+        // Read the words in native order so no bytes need to be swapped.
+        final boolean bigEndian = PlatformDependent.BIG_ENDIAN_NATIVE_ORDER;
+        final long pattern = SWARUtil.compilePattern(value);
+        int index = fromIndex;
+        for (int i = toIndex - fromIndex >>> 3; i > 0; i --) {
+            long word = bigEndian ? buffer._getLong(index) : buffer._getLongLE(index);
+            long result = SWARUtil.applyPattern(word, pattern);
+            if (result != 0) {
+                return index + SWARUtil.getIndex(result, bigEndian);
+            }
+            index += 8;
+        }
+
+        for (; index < toIndex; index ++) {
+            if (buffer._getByte(index) == value) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
     private static int lastIndexOf(ByteBuf buffer, int fromIndex, int toIndex, byte value) {
         fromIndex = Math.min(fromIndex, buffer.capacity());
         if (fromIndex < 0 || buffer.capacity() == 0) {
@@ -386,8 +518,8 @@ public final class ByteBufUtil {
      * result.
      */
     public static ByteBuf writeUtf8(ByteBufAllocator alloc, CharSequence seq) {
-        // UTF-8 uses max. 3 bytes per char, so calculate the worst case.
-        ByteBuf buf = alloc.buffer(utf8MaxBytes(seq));
+        // Counting the bytes is cheap compared to allocating up to 3 times the memory needed.
+        ByteBuf buf = alloc.buffer(utf8Bytes(seq));
         writeUtf8(buf, seq);
         return buf;
     }
@@ -400,7 +532,9 @@ public final class ByteBufUtil {
      */
     public static int writeUtf8(ByteBuf buf, CharSequence seq) {
         final int len = seq.length();
-        buf.ensureWritable(utf8MaxBytes(seq));
+        // Only count the bytes if reserving the worst case would make the buffer grow more than needed.
+        final int maxBytes = utf8MaxBytes(seq);
+        buf.ensureWritable(maxBytes <= buf.writableBytes() ? maxBytes : utf8Bytes(seq));
 
         for (;;) {
             if (buf instanceof AbstractByteBuf) {
@@ -425,7 +559,17 @@ public final class ByteBufUtil {
 
         // We can use the _set methods as these not need to do any index checks and reference checks.
         // This is possible as we called ensureWritable(...) before.
-        for (int i = 0; i < len; i++) {
+        int i = 0;
+        // Write leading ASCII characters 8 at a time.
+        for (int end = len - 7; i < end; i += 8) {
+            long word = asciiWord(seq, i);
+            if (word < 0) {
+                break;
+            }
+            buffer._setLong(writerIndex, word);
+            writerIndex += 8;
+        }
+        for (; i < len; i++) {
             char c = seq.charAt(i);
             if (c < 0x80) {
                 buffer._setByte(writerIndex++, (byte) c);
@@ -467,6 +611,26 @@ public final class ByteBufUtil {
         return writerIndex - oldWriterIndex;
     }
 
+    /**
+     * Returns the 8 chars of {@code seq} starting at {@code index} as the bytes of a big-endian {@code long}, or
+     * {@code -1} if one of them is not an ASCII character.
+     */
+    private static long asciiWord(CharSequence seq, int index) {
+        char c0 = seq.charAt(index);
+        char c1 = seq.charAt(index + 1);
+        char c2 = seq.charAt(index + 2);
+        char c3 = seq.charAt(index + 3);
+        char c4 = seq.charAt(index + 4);
+        char c5 = seq.charAt(index + 5);
+        char c6 = seq.charAt(index + 6);
+        char c7 = seq.charAt(index + 7);
+        if ((c0 | c1 | c2 | c3 | c4 | c5 | c6 | c7) >= 0x80) {
+            return -1;
+        }
+        return (long) c0 << 56 | (long) c1 << 48 | (long) c2 << 40 | (long) c3 << 32 |
+               (long) c4 << 24 | (long) c5 << 16 | (long) c6 << 8 | c7;
+    }
+
     /**
      * Returns max bytes length of UTF8 character sequence.
      */
@@ -474,6 +638,92 @@ public final class ByteBufUtil {
         return seq.length() * MAX_BYTES_PER_CHAR_UTF8;
     }
 
+    /**
+     * Returns the number of bytes {@link ByteBuf#writeVarInt32(int)} writes for {@code value}.
+     */
+    public static int varInt32Size(int value) {
+        // The number of significant bits divided by 7 and rounded up, but at least 1, without a division.
+        return 352 - Integer.numberOfLeadingZeros(value) * 9 >>> 6;
+    }
+
+    /**
+     * Returns the number of bytes {@link ByteBuf#writeVarInt64(long)} writes for {@code value}.
+     */
+    public static int varInt64Size(long value) {
+        return 640 - Long.numberOfLeadingZeros(value) * 9 >>> 6;
+    }
+
+    /**
+     * Maps signed integers to unsigned ones so that numbers of a small magnitude have a short varint encoding no
+     * matter their sign: {@code 0, -1, 1, -2, 2, ...} become {@code 0, 1, 2, 3, 4, ...}.
+     */
+    public static int zigZagEncode32(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    /**
+     * Reverses {@link #zigZagEncode32(int)}.
+     */
+    public static int zigZagDecode32(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Maps signed integers to unsigned ones, see {@link #zigZagEncode32(int)}.
+     */
+    public static long zigZagEncode64(long value) {
+        return value << 1 ^ value >> 63;
+    }
+
+    /**
+     * Reverses {@link #zigZagEncode64(long)}.
+     */
+    public static long zigZagDecode64(long value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    /**
+     * Returns the exact number of bytes {@link #writeUtf8(ByteBuf, CharSequence)} writes for {@code seq}, which
+     * allows to allocate a buffer of the right size up front.
+     */
+    public static int utf8Bytes(CharSequence seq) {
+        final int len = seq.length();
+        int i = 0;
+        // ASCII characters are by far the most common ones and take one byte each.
+        while (i < len && seq.charAt(i) < 0x80) {
+            i++;
+        }
+        return i < len ? i + utf8BytesNonAscii(seq, i, len) : i;
+    }
+
+    private static int utf8BytesNonAscii(CharSequence seq, int start, int len) {
+        int bytes = 0;
+        for (int i = start; i < len; i++) {
+            char c = seq.charAt(i);
+            if (c < 0x80) {
+                bytes++;
+            } else if (c < 0x800) {
+                bytes += 2;
+            } else if (StringUtil.isSurrogate(c)) {
+                if (!Character.isHighSurrogate(c)) {
+                    // WRITE_UTF_UNKNOWN
+                    bytes++;
+                } else if (++i == len) {
+                    // WRITE_UTF_UNKNOWN for the truncated surrogate pair.
+                    bytes++;
+                } else if (!Character.isLowSurrogate(seq.charAt(i))) {
+                    // WRITE_UTF_UNKNOWN followed by a single byte for the second char.
+                    bytes += 2;
+                } else {
+                    bytes += 4;
+                }
+            } else {
+                bytes += 3;
+            }
+        }
+        return bytes;
+    }
+
     /**
      * Encode a {@link CharSequence} in <a href="http://en.wikipedia.org/wiki/ASCII">ASCII</a> and write
      * it to a {@link ByteBuf} allocated with {@code alloc}.
@@ -521,16 +771,40 @@ public final class ByteBufUtil {
     }
 
     // Fast-Path implementation
+    @SuppressWarnings("deprecation")
     static int writeAscii(AbstractByteBuf buffer, int writerIndex, CharSequence seq, int len) {
+        if (seq instanceof String && buffer.hasArray()) {
+            // Copies the low byte of every char just like the loop below, but in bulk.
+            ((String) seq).getBytes(0, len, buffer.array(), buffer.arrayOffset() + writerIndex);
+            return len;
+        }
 
         // We can use the _set methods as these not need to do any index checks and reference checks.
         // This is possible as we called ensureWritable(...) before.
-        for (int i = 0; i < len; i++) {
-            buffer._setByte(writerIndex++, (byte) seq.charAt(i));
+        int i = 0;
+        for (int end = len - 7; i < end; i += 8) {
+            buffer._setLong(writerIndex + i, lowBytesWord(seq, i));
+        }
+        for (; i < len; i++) {
+            buffer._setByte(writerIndex + i, (byte) seq.charAt(i));
         }
         return len;
     }
 
+    /**
+     * Returns the low bytes of the 8 chars of {@code seq} starting at {@code index} as a big-endian {@code long}.
+     */
+    private static long lowBytesWord(CharSequence seq, int index) {
+        return (seq.charAt(index) & 0xFFL) << 56 |
+               (seq.charAt(index + 1) & 0xFFL) << 48 |
+               (seq.charAt(index + 2) & 0xFFL) << 40 |
+               (seq.charAt(index + 3) & 0xFFL) << 32 |
+               (seq.charAt(index + 4) & 0xFFL) << 24 |
+               (seq.charAt(index + 5) & 0xFFL) << 16 |
+               (seq.charAt(index + 6) & 0xFFL) << 8 |
+               seq.charAt(index + 7) & 0xFFL;
+    }
+
     /**
      * Encode the given {@link CharBuffer} using the given {@link Charset} into a new {@link ByteBuf} which
      * is allocated via the {@link ByteBufAllocator}.
@@ -590,6 +864,13 @@ public final class ByteBufUtil {
         if (len == 0) {
             return StringUtil.EMPTY_STRING;
         }
+        // Every byte is a char of its own in ISO-8859-1, and so is every ASCII character in US-ASCII and UTF-8. Such
+        // text can be turned into a String without a CharsetDecoder and an intermediate CharBuffer.
+        if (CharsetUtil.ISO_8859_1.equals(charset) ||
+                (CharsetUtil.UTF_8.equals(charset) || CharsetUtil.US_ASCII.equals(charset)) &&
+                isAscii(src, readerIndex, len)) {
+            return decodeLatin1(src, readerIndex, len);
+        }
         final CharsetDecoder decoder = CharsetUtil.decoder(charset);
         final int maxLength = (int) ((double) len * decoder.maxCharsPerByte());
         CharBuffer dst = CHAR_BUFFERS.get();
@@ -620,6 +901,26 @@ public final class ByteBufUtil {
         return dst.flip().toString();
     }
 
+    @SuppressWarnings("deprecation")
+    private static String decodeLatin1(ByteBuf src, int readerIndex, int len) {
+        if (src.hasArray()) {
+            if (src instanceof AbstractByteBuf) {
+                ((AbstractByteBuf) src).checkIndex(readerIndex, len);
+            }
+            return new String(src.array(), 0, src.arrayOffset() + readerIndex, len);
+        }
+        // Copy direct and composite buffers with one bulk copy into a reused array.
+        byte[] array = BYTE_ARRAYS.get();
+        if (array.length < len) {
+            array = new byte[len];
+            if (len <= MAX_CHAR_BUFFER_SIZE) {
+                BYTE_ARRAYS.set(array);
+            }
+        }
+        src.getBytes(readerIndex, array, 0, len);
+        return new String(array, 0, 0, len);
+    }
+
     private static void decodeString(CharsetDecoder decoder, ByteBuffer src, CharBuffer dst) {
         try {
             CoderResult cr = decoder.decode(src, dst, true);
@@ -635,6 +936,38 @@ public final class ByteBufUtil {
         }
     }
 
+    /**
+     * Makes the reference counts of {@code msg}, which may be a {@link ByteBuf} or a {@link ByteBufHolder}, and of
+     * all buffers it is derived from or composed of safe to be updated by other threads, see
+     * {@link PooledByteBufAllocator#defaultBiasedReferenceCounting()}. Must be called before a buffer is handed to
+     * another thread while the current thread may still retain or release it, does nothing for other objects.
+     */
+    public static void markShared(Object msg) {
+        if (!AbstractReferenceCountedByteBuf.BIASED_REFERENCE_COUNTING) {
+            return;
+        }
+        if (msg instanceof ByteBufHolder) {
+            msg = ((ByteBufHolder) msg).content();
+        }
+        if (msg instanceof ByteBuf) {
+            markShared((ByteBuf) msg);
+        }
+    }
+
+    private static void markShared(ByteBuf buf) {
+        for (; buf != null; buf = buf.unwrap()) {
+            if (buf instanceof AbstractReferenceCountedByteBuf) {
+                ((AbstractReferenceCountedByteBuf) buf).markShared();
+            }
+            if (buf instanceof CompositeByteBuf) {
+                CompositeByteBuf composite = (CompositeByteBuf) buf;
+                for (int i = 0; i < composite.numComponents(); i++) {
+                    markShared(composite.internalComponent(i));
+                }
+            }
+        }
+    }
+
     /**
      * Returns a cached thread-local direct buffer, if available.
      *
@@ -977,6 +1310,16 @@ public final class ByteBufUtil {
             this.handle = handle;
         }
 
+        @Override
+        protected ByteBuffer allocateDirect(int initialCapacity) {
+            return UnpooledDirectBufferCache.allocateDirect(initialCapacity);
+        }
+
+        @Override
+        protected void freeDirect(ByteBuffer buffer) {
+            UnpooledDirectBufferCache.freeDirect(buffer);
+        }
+
         @Override
         protected void deallocate() {
             if (capacity() > THREAD_LOCAL_BUFFER_SIZE) {
@@ -1010,6 +1353,16 @@ public final class ByteBufUtil {
             this.handle = handle;
         }
 
+        @Override
+        protected ByteBuffer allocateDirect(int initialCapacity) {
+            return UnpooledDirectBufferCache.allocateDirect(initialCapacity);
+        }
+
+        @Override
+        protected void freeDirect(ByteBuffer buffer) {
+            UnpooledDirectBufferCache.freeDirect(buffer);
+        }
+
         @Override
         protected void deallocate() {
             if (capacity() > THREAD_LOCAL_BUFFER_SIZE) {
@@ -1094,9 +1447,32 @@ public final class ByteBufUtil {
      * @param length The length of the specified buffer.
      */
     private static boolean isAscii(ByteBuf buf, int index, int length) {
+        if (USE_SWAR && buf instanceof AbstractByteBuf) {
+            return isAsciiSwar((AbstractByteBuf) buf, index, length);
+        }
         return buf.forEachByte(index, length, FIND_NON_ASCII) == -1;
     }
 
+    private static boolean isAsciiSwar(AbstractByteBuf buf, int index, int length) {
+        buf.checkIndex(index, length);
+
+        // All bytes are checked the same way, so the byte order of the words does not matter.
+        final int end = index + length;
+        for (int i = length >>> 3; i > 0; i --) {
+            if (!SWARUtil.isAscii(buf._getLong(index))) {
+                return false;
+            }
+            index += 8;
+        }
+
+        for (; index < end; index ++) {
+            if (buf._getByte(index) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     /**
      * Returns {@code true} if the specified {@link ByteBuf} starting at {@code index} with {@code length} is valid
      * UTF8 text, otherwise return {@code false}.
@@ -16,6 +16,7 @@
 package com.netty.network.buffer;
 
 
+import com.netty.network.util.Recycler;
 import com.netty.network.util.internal.EmptyArrays;
 import com.netty.network.util.internal.ObjectUtil;
 
@@ -33,7 +34,6 @@ import java.util.Collections;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.List;
-import java.util.ListIterator;
 import java.util.NoSuchElementException;
 
 
@@ -46,15 +46,27 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     private static final ByteBuffer EMPTY_NIO_BUFFER = Unpooled.EMPTY_BUFFER.nioBuffer();
     private static final Iterator<ByteBuf> EMPTY_ITERATOR = Collections.<ByteBuf>emptyList().iterator();
+    private static final Component[] EMPTY_COMPONENTS = new Component[0];
 
     private final ByteBufAllocator alloc;
     private final boolean direct;
-    private final List<Component> components;
     private final int maxNumComponents;
 
+    // The components are stored in a plain array which is only resized when it is full, so inserting or removing a
+    // range of components moves the array once instead of once per component.
+    private Component[] components;
+    private int componentCount;
+    // The index of the component that was found by the last lookup. Reads and writes mostly move forward through
+    // the buffer, so the next lookup will usually hit the same or the next component.
+    private int lastAccessed;
+
     private boolean freed;
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents) {
+        this(alloc, direct, maxNumComponents, 0);
+    }
+
+    private CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents, int initSize) {
         super(Integer.MAX_VALUE);
         if (alloc == null) {
             throw new NullPointerException("alloc");
@@ -62,7 +74,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         this.direct = direct;
         this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
+        components = newCompArray(initSize, maxNumComponents);
     }
 
     public CompositeByteBuf(ByteBufAllocator alloc, boolean direct, int maxNumComponents, ByteBuf... buffers) {
@@ -71,20 +83,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     CompositeByteBuf(
             ByteBufAllocator alloc, boolean direct, int maxNumComponents, ByteBuf[] buffers, int offset, int len) {
-        super(Integer.MAX_VALUE);
-        if (alloc == null) {
-            throw new NullPointerException("alloc");
-        }
+        this(alloc, direct, maxNumComponents, len - offset);
         if (maxNumComponents < 2) {
             throw new IllegalArgumentException(
                     "maxNumComponents: " + maxNumComponents + " (expected: >= 2)");
         }
 
-        this.alloc = alloc;
-        this.direct = direct;
-        this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
-
         addComponents0(false, 0, buffers, offset, len);
         consolidateIfNeeded();
         setIndex(0, capacity());
@@ -92,27 +96,21 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     public CompositeByteBuf(
             ByteBufAllocator alloc, boolean direct, int maxNumComponents, Iterable<ByteBuf> buffers) {
-        super(Integer.MAX_VALUE);
-        if (alloc == null) {
-            throw new NullPointerException("alloc");
-        }
+        this(alloc, direct, maxNumComponents,
+                buffers instanceof Collection ? ((Collection<ByteBuf>) buffers).size() : 0);
         if (maxNumComponents < 2) {
             throw new IllegalArgumentException(
                     "maxNumComponents: " + maxNumComponents + " (expected: >= 2)");
         }
 
-        this.alloc = alloc;
-        this.direct = direct;
-        this.maxNumComponents = maxNumComponents;
-        components = newList(maxNumComponents);
-
         addComponents0(false, 0, buffers);
         consolidateIfNeeded();
         setIndex(0, capacity());
     }
 
-    private static List<Component> newList(int maxNumComponents) {
-        return new ArrayList<Component>(Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents));
+    private static Component[] newCompArray(int initComponents, int maxNumComponents) {
+        int capacityGuess = Math.min(AbstractByteBufAllocator.DEFAULT_MAX_COMPONENTS, maxNumComponents);
+        return new Component[Math.max(initComponents, capacityGuess)];
     }
 
     // Special constructor used by WrappedCompositeByteBuf
@@ -121,7 +119,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         this.alloc = alloc;
         direct = false;
         maxNumComponents = 0;
-        components = Collections.emptyList();
+        components = EMPTY_COMPONENTS;
     }
 
     /**
@@ -193,7 +191,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf addComponent(boolean increaseWriterIndex, ByteBuf buffer) {
         ObjectUtil.checkNotNull(buffer, "buffer");
-        addComponent0(increaseWriterIndex, components.size(), buffer);
+        addComponent0(increaseWriterIndex, componentCount, buffer);
         consolidateIfNeeded();
         return this;
     }
@@ -208,7 +206,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * ownership of all {@link ByteBuf} objects is transfered to this {@link CompositeByteBuf}.
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, ByteBuf... buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers, 0, buffers.length);
+        addComponents0(increaseWriterIndex, componentCount, buffers, 0, buffers.length);
         consolidateIfNeeded();
         return this;
     }
@@ -223,7 +221,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * ownership of all {@link ByteBuf} objects is transfered to this {@link CompositeByteBuf}.
      */
     public CompositeByteBuf addComponents(boolean increaseWriterIndex, Iterable<ByteBuf> buffers) {
-        addComponents0(increaseWriterIndex, components.size(), buffers);
+        addComponents0(increaseWriterIndex, componentCount, buffers);
         consolidateIfNeeded();
         return this;
     }
@@ -253,29 +251,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         try {
             checkComponentIndex(cIndex);
 
-            int readableBytes = buffer.readableBytes();
-
             // No need to consolidate - just add a component to the list.
-            @SuppressWarnings("deprecation")
-            Component c = new Component(buffer.order(ByteOrder.BIG_ENDIAN).slice());
-            if (cIndex == components.size()) {
-                wasAdded = components.add(c);
-                if (cIndex == 0) {
-                    c.endOffset = readableBytes;
-                } else {
-                    Component prev = components.get(cIndex - 1);
-                    c.offset = prev.endOffset;
-                    c.endOffset = c.offset + readableBytes;
-                }
-            } else {
-                components.add(cIndex, c);
-                wasAdded = true;
-                if (readableBytes != 0) {
-                    updateComponentOffsets(cIndex);
-                }
+            Component c = newComponent(buffer, 0);
+            int readableBytes = c.length;
+
+            addComp(cIndex, c);
+            wasAdded = true;
+            if (readableBytes > 0 && cIndex < componentCount - 1) {
+                updateComponentOffsets(cIndex);
+            } else if (cIndex > 0) {
+                c.reposition(components[cIndex - 1].endOffset);
             }
             if (increaseWriterIndex) {
-                writerIndex(writerIndex() + buffer.readableBytes());
+                writerIndex(writerIndex() + readableBytes);
             }
             return cIndex;
         } finally {
@@ -285,6 +273,17 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
     }
 
+    /**
+     * Wraps the readable bytes of {@code buf} without slicing it, the {@link Component} translates its own indexes
+     * into indexes of {@code buf}.
+     */
+    @SuppressWarnings("deprecation")
+    private static Component newComponent(ByteBuf buf, int offset) {
+        int srcIndex = buf.readerIndex();
+        int len = buf.readableBytes();
+        return Component.newInstance(buf.order(ByteOrder.BIG_ENDIAN), srcIndex, offset, len);
+    }
+
     /**
      * Add the given {@link ByteBuf}s on the specific index
      * <p>
@@ -305,28 +304,50 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return this;
     }
 
-    private int addComponents0(boolean increaseWriterIndex, int cIndex, ByteBuf[] buffers, int offset, int len) {
+    /**
+     * Adds {@code buffers[offset]} up to {@code buffers[len - 1]}, or up to the first {@code null} element. Room for
+     * all of them is made at once and the offsets of the components behind them are only updated once.
+     */
+    private int addComponents0(boolean increaseWriterIndex, final int cIndex, ByteBuf[] buffers, int offset, int len) {
         ObjectUtil.checkNotNull(buffers, "buffers");
         int i = offset;
+        // -1 until room for the new components was made.
+        int ci = -1;
+        int count = 0;
+        int startOffset = 0;
+        int nextOffset = 0;
         try {
             checkComponentIndex(cIndex);
-
-            // No need for consolidation
+            count = len - offset;
+            shiftComps(cIndex, count);
+            ci = cIndex;
+            startOffset = nextOffset = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
             while (i < len) {
-                // Increment i now to prepare for the next iteration and prevent a duplicate release (addComponent0
-                // will release if an exception occurs, and we also release in the finally block here).
-                ByteBuf b = buffers[i++];
+                ByteBuf b = buffers[i];
                 if (b == null) {
                     break;
                 }
-                cIndex = addComponent0(increaseWriterIndex, cIndex, b) + 1;
-                int size = components.size();
-                if (cIndex > size) {
-                    cIndex = size;
-                }
+                Component c = newComponent(b, nextOffset);
+                components[ci ++] = c;
+                // Increment i only now, so b is released in the finally block below if newComponent failed.
+                i ++;
+                nextOffset = c.endOffset;
             }
-            return cIndex;
+            return ci;
         } finally {
+            if (ci >= 0) {
+                // Close the gap left by null elements or a failure and move the components behind the new ones.
+                int endIndex = cIndex + count;
+                if (ci < endIndex) {
+                    removeCompRange(ci, endIndex);
+                }
+                if (ci < componentCount && nextOffset != startOffset) {
+                    updateComponentOffsets(ci);
+                }
+                if (increaseWriterIndex) {
+                    writerIndex(writerIndex() + nextOffset - startOffset);
+                }
+            }
             for (; i < len; ++i) {
                 ByteBuf b = buffers[i];
                 if (b != null) {
@@ -399,63 +420,42 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     private void consolidateIfNeeded() {
         // Consolidate if the number of components will exceed the allowed maximum by the current
         // operation.
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents > maxNumComponents) {
-            final int capacity = components.get(numComponents - 1).endOffset;
-
-            ByteBuf consolidated = allocBuffer(capacity);
-
-            // We're not using foreach to avoid creating an iterator.
-            for (int i = 0; i < numComponents; i ++) {
-                Component c = components.get(i);
-                ByteBuf b = c.buf;
-                consolidated.writeBytes(b);
-                c.freeIfNecessary();
-            }
-            Component c = new Component(consolidated);
-            c.endOffset = c.length;
-            components.clear();
-            components.add(c);
+            consolidate0(0, numComponents);
         }
     }
 
     private void checkComponentIndex(int cIndex) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex > components.size()) {
+        if (cIndex < 0 || cIndex > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d (expected: >= 0 && <= numComponents(%d))",
-                    cIndex, components.size()));
+                    cIndex, componentCount));
         }
     }
 
     private void checkComponentIndex(int cIndex, int numComponents) {
         ensureAccessible();
-        if (cIndex < 0 || cIndex + numComponents > components.size()) {
+        if (cIndex < 0 || cIndex + numComponents > componentCount) {
             throw new IndexOutOfBoundsException(String.format(
                     "cIndex: %d, numComponents: %d " +
                     "(expected: cIndex >= 0 && cIndex + numComponents <= totalNumComponents(%d))",
-                    cIndex, numComponents, components.size()));
+                    cIndex, numComponents, componentCount));
         }
     }
 
     private void updateComponentOffsets(int cIndex) {
-        int size = components.size();
+        int size = componentCount;
         if (size <= cIndex) {
             return;
         }
 
-        Component c = components.get(cIndex);
-        if (cIndex == 0) {
-            c.offset = 0;
-            c.endOffset = c.length;
-            cIndex ++;
-        }
-
-        for (int i = cIndex; i < size; i ++) {
-            Component prev = components.get(i - 1);
-            Component cur = components.get(i);
-            cur.offset = prev.endOffset;
-            cur.endOffset = cur.offset + cur.length;
+        int nextIndex = cIndex > 0 ? components[cIndex - 1].endOffset : 0;
+        for (; cIndex < size; cIndex ++) {
+            Component c = components[cIndex];
+            c.reposition(nextIndex);
+            nextIndex = c.endOffset;
         }
     }
 
@@ -465,10 +465,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param cIndex the index on from which the {@link ByteBuf} will be remove
      */
     public CompositeByteBuf removeComponent(int cIndex) {
-        checkComponentIndex(cIndex);
-        Component comp = components.remove(cIndex);
+        checkComponentIndex(cIndex, 1);
+        Component comp = components[cIndex];
+        int length = comp.length;
+        removeComp(cIndex);
         comp.freeIfNecessary();
-        if (comp.length > 0) {
+        if (length > 0) {
             // Only need to call updateComponentOffsets if the length was > 0
             updateComponentOffsets(cIndex);
         }
@@ -487,15 +489,16 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (numComponents == 0) {
             return this;
         }
-        List<Component> toRemove = components.subList(cIndex, cIndex + numComponents);
+        int endIndex = cIndex + numComponents;
         boolean needsUpdate = false;
-        for (Component c: toRemove) {
+        for (int i = cIndex; i < endIndex; i ++) {
+            Component c = components[i];
             if (c.length > 0) {
                 needsUpdate = true;
             }
             c.freeIfNecessary();
         }
-        toRemove.clear();
+        removeCompRange(cIndex, endIndex);
 
         if (needsUpdate) {
             // Only need to call updateComponentOffsets if the length was > 0
@@ -507,7 +510,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public Iterator<ByteBuf> iterator() {
         ensureAccessible();
-        if (components.isEmpty()) {
+        if (componentCount == 0) {
             return EMPTY_ITERATOR;
         }
         return new CompositeByteBufIterator();
@@ -522,37 +525,22 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return Collections.emptyList();
         }
 
-        int componentId = toComponentIndex(offset);
-        List<ByteBuf> slice = new ArrayList<ByteBuf>(components.size());
+        int componentId = toComponentIndex0(offset);
+        List<ByteBuf> slice = new ArrayList<ByteBuf>(componentCount - componentId);
 
         // The first component
-        Component firstC = components.get(componentId);
-        ByteBuf first = firstC.buf.duplicate();
-        first.readerIndex(offset - firstC.offset);
-
-        ByteBuf buf = first;
+        Component c = components[componentId];
         int bytesToSlice = length;
-        do {
-            int readableBytes = buf.readableBytes();
-            if (bytesToSlice <= readableBytes) {
-                // Last component
-                buf.writerIndex(buf.readerIndex() + bytesToSlice);
-                slice.add(buf);
-                break;
-            } else {
-                // Not the last component
-                slice.add(buf);
-                bytesToSlice -= readableBytes;
-                componentId ++;
-
-                // Fetch the next component.
-                buf = components.get(componentId).buf.duplicate();
-            }
-        } while (bytesToSlice > 0);
+        int localLength = Math.min(bytesToSlice, c.endOffset - offset);
+        slice.add(c.buf.slice(c.idx(offset), localLength));
+        bytesToSlice -= localLength;
 
-        // Slice all components because only readable bytes are interesting.
-        for (int i = 0; i < slice.size(); i ++) {
-            slice.set(i, slice.get(i).slice());
+        // Only the readable bytes are interesting, so slice the following components as well.
+        while (bytesToSlice > 0) {
+            c = components[++ componentId];
+            localLength = Math.min(bytesToSlice, c.length);
+            slice.add(c.buf.slice(c.idx(c.offset), localLength));
+            bytesToSlice -= localLength;
         }
 
         return slice;
@@ -560,12 +548,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean isDirect() {
-        int size = components.size();
+        int size = componentCount;
         if (size == 0) {
             return false;
         }
         for (int i = 0; i < size; i++) {
-           if (!components.get(i).buf.isDirect()) {
+           if (!components[i].buf.isDirect()) {
                return false;
            }
         }
@@ -574,11 +562,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasArray() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return true;
         case 1:
-            return components.get(0).buf.hasArray();
+            return components[0].buf.hasArray();
         default:
             return false;
         }
@@ -586,11 +574,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public byte[] array() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EmptyArrays.EMPTY_BYTES;
         case 1:
-            return components.get(0).buf.array();
+            return components[0].buf.array();
         default:
             throw new UnsupportedOperationException();
         }
@@ -598,11 +586,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int arrayOffset() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 0;
         case 1:
-            return components.get(0).buf.arrayOffset();
+            Component c = components[0];
+            return c.idx(c.buf.arrayOffset());
         default:
             throw new UnsupportedOperationException();
         }
@@ -610,11 +599,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public boolean hasMemoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.hasMemoryAddress();
         case 1:
-            return components.get(0).buf.hasMemoryAddress();
+            return components[0].buf.hasMemoryAddress();
         default:
             return false;
         }
@@ -622,11 +611,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public long memoryAddress() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return Unpooled.EMPTY_BUFFER.memoryAddress();
         case 1:
-            return components.get(0).buf.memoryAddress();
+            Component c = components[0];
+            return c.buf.memoryAddress() + c.adjustment;
         default:
             throw new UnsupportedOperationException();
         }
@@ -634,11 +624,11 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public int capacity() {
-        final int numComponents = components.size();
+        final int numComponents = componentCount;
         if (numComponents == 0) {
             return 0;
         }
-        return components.get(numComponents - 1).endOffset;
+        return components[numComponents - 1].endOffset;
     }
 
     @Override
@@ -652,36 +642,33 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         if (newCapacity > oldCapacity) {
             final int paddingLength = newCapacity - oldCapacity;
             ByteBuf padding;
-            int nComponents = components.size();
+            int nComponents = componentCount;
             if (nComponents < maxNumComponents) {
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
             } else {
                 padding = allocBuffer(paddingLength);
                 padding.setIndex(0, paddingLength);
                 // FIXME: No need to create a padding buffer and consolidate.
                 // Just create a big single buffer and put the current content there.
-                addComponent0(false, components.size(), padding);
+                addComponent0(false, componentCount, padding);
                 consolidateIfNeeded();
             }
         } else if (newCapacity < oldCapacity) {
             int bytesToTrim = oldCapacity - newCapacity;
-            for (ListIterator<Component> i = components.listIterator(components.size()); i.hasPrevious();) {
-                Component c = i.previous();
-                if (bytesToTrim >= c.length) {
-                    bytesToTrim -= c.length;
-                    i.remove();
-                    continue;
+            int i = componentCount - 1;
+            for (; i >= 0; i --) {
+                Component c = components[i];
+                if (bytesToTrim < c.length) {
+                    // Trim the last remaining component in place.
+                    c.trimEnd(bytesToTrim);
+                    break;
                 }
-
-                // Replace the last component with the trimmed slice.
-                Component newC = new Component(c.buf.slice(0, c.length - bytesToTrim));
-                newC.offset = c.offset;
-                newC.endOffset = newC.offset + newC.length;
-                i.set(newC);
-                break;
+                bytesToTrim -= c.length;
+                c.freeIfNecessary();
             }
+            removeCompRange(i + 1, componentCount);
 
             if (readerIndex() > newCapacity) {
                 setIndex(newCapacity, newCapacity);
@@ -706,7 +693,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * Return the current number of {@link ByteBuf}'s that are composed in this instance
      */
     public int numComponents() {
-        return components.size();
+        return componentCount;
     }
 
     /**
@@ -721,15 +708,43 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public int toComponentIndex(int offset) {
         checkIndex(offset);
+        return toComponentIndex0(offset);
+    }
+
+    /**
+     * Precondition is that {@code offset} is a valid index of this buffer, so the returned component is never
+     * empty.
+     */
+    private int toComponentIndex0(int offset) {
+        final Component[] components = this.components;
+        final int size = componentCount;
+        int last = lastAccessed;
+        if (last < size) {
+            Component c = components[last];
+            if (offset >= c.offset) {
+                if (offset < c.endOffset) {
+                    return last;
+                }
+                // Sequential access, try the next component before searching.
+                if (++ last < size) {
+                    c = components[last];
+                    if (offset >= c.offset && offset < c.endOffset) {
+                        lastAccessed = last;
+                        return last;
+                    }
+                }
+            }
+        }
 
-        for (int low = 0, high = components.size(); low <= high;) {
+        for (int low = 0, high = size - 1; low <= high;) {
             int mid = low + high >>> 1;
-            Component c = components.get(mid);
+            Component c = components[mid];
             if (offset >= c.endOffset) {
                 low = mid + 1;
             } else if (offset < c.offset) {
                 high = mid - 1;
             } else {
+                lastAccessed = mid;
                 return mid;
             }
         }
@@ -738,8 +753,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     public int toByteIndex(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).offset;
+        checkComponentIndex(cIndex, 1);
+        return components[cIndex].offset;
     }
 
     @Override
@@ -750,14 +765,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     protected byte _getByte(int index) {
         Component c = findComponent(index);
-        return c.buf.getByte(index - c.offset);
+        return c.buf.getByte(c.idx(index));
     }
 
     @Override
     protected short _getShort(int index) {
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
-            return c.buf.getShort(index - c.offset);
+            return c.buf.getShort(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) ((_getByte(index) & 0xff) << 8 | _getByte(index + 1) & 0xff);
         } else {
@@ -769,7 +784,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected short _getShortLE(int index) {
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
-            return c.buf.getShortLE(index - c.offset);
+            return c.buf.getShortLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (short) (_getByte(index) & 0xff | (_getByte(index + 1) & 0xff) << 8);
         } else {
@@ -781,7 +796,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected int _getUnsignedMedium(int index) {
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMedium(index - c.offset);
+            return c.buf.getUnsignedMedium(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 8 | _getByte(index + 2) & 0xff;
         } else {
@@ -793,7 +808,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected int _getUnsignedMediumLE(int index) {
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
-            return c.buf.getUnsignedMediumLE(index - c.offset);
+            return c.buf.getUnsignedMediumLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getByte(index + 2) & 0xff) << 16;
         } else {
@@ -805,7 +820,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected int _getInt(int index) {
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
-            return c.buf.getInt(index - c.offset);
+            return c.buf.getInt(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getShort(index) & 0xffff) << 16 | _getShort(index + 2) & 0xffff;
         } else {
@@ -817,7 +832,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected int _getIntLE(int index) {
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
-            return c.buf.getIntLE(index - c.offset);
+            return c.buf.getIntLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getShortLE(index) & 0xffff | (_getShortLE(index + 2) & 0xffff) << 16;
         } else {
@@ -829,7 +844,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected long _getLong(int index) {
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
-            return c.buf.getLong(index - c.offset);
+            return c.buf.getLong(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return (_getInt(index) & 0xffffffffL) << 32 | _getInt(index + 4) & 0xffffffffL;
         } else {
@@ -841,7 +856,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected long _getLongLE(int index) {
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
-            return c.buf.getLongLE(index - c.offset);
+            return c.buf.getLongLE(c.idx(index));
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             return _getIntLE(index) & 0xffffffffL | (_getIntLE(index + 4) & 0xffffffffL) << 32;
         } else {
@@ -856,13 +871,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -881,15 +895,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
+                Component c = components[i];
                 ByteBuf s = c.buf;
-                int adjustment = c.offset;
-                int localLength = Math.min(length, s.capacity() - (index - adjustment));
+                int localLength = Math.min(length, c.endOffset - index);
                 dst.limit(dst.position() + localLength);
-                s.getBytes(index - adjustment, dst);
+                s.getBytes(c.idx(index), dst);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -907,13 +920,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -963,13 +975,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, out, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.getBytes(c.idx(index), out, localLength);
             index += localLength;
             length -= localLength;
             i ++;
@@ -980,7 +991,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     @Override
     public CompositeByteBuf setByte(int index, int value) {
         Component c = findComponent(index);
-        c.buf.setByte(index - c.offset, value);
+        c.buf.setByte(c.idx(index), value);
         return this;
     }
 
@@ -998,7 +1009,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setShort(int index, int value) {
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
-            c.buf.setShort(index - c.offset, value);
+            c.buf.setShort(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) (value >>> 8));
             _setByte(index + 1, (byte) value);
@@ -1012,7 +1023,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setShortLE(int index, int value) {
         Component c = findComponent(index);
         if (index + 2 <= c.endOffset) {
-            c.buf.setShortLE(index - c.offset, value);
+            c.buf.setShortLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setByte(index, (byte) value);
             _setByte(index + 1, (byte) (value >>> 8));
@@ -1031,7 +1042,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setMedium(int index, int value) {
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
-            c.buf.setMedium(index - c.offset, value);
+            c.buf.setMedium(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >> 8));
             _setByte(index + 2, (byte) value);
@@ -1045,7 +1056,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setMediumLE(int index, int value) {
         Component c = findComponent(index);
         if (index + 3 <= c.endOffset) {
-            c.buf.setMediumLE(index - c.offset, value);
+            c.buf.setMediumLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setByte(index + 2, (byte) (value >>> 16));
@@ -1064,7 +1075,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setInt(int index, int value) {
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
-            c.buf.setInt(index - c.offset, value);
+            c.buf.setInt(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShort(index, (short) (value >>> 16));
             _setShort(index + 2, (short) value);
@@ -1078,7 +1089,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setIntLE(int index, int value) {
         Component c = findComponent(index);
         if (index + 4 <= c.endOffset) {
-            c.buf.setIntLE(index - c.offset, value);
+            c.buf.setIntLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setShortLE(index, (short) value);
             _setShortLE(index + 2, (short) (value >>> 16));
@@ -1097,7 +1108,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setLong(int index, long value) {
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
-            c.buf.setLong(index - c.offset, value);
+            c.buf.setLong(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setInt(index, (int) (value >>> 32));
             _setInt(index + 4, (int) value);
@@ -1111,7 +1122,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     protected void _setLongLE(int index, long value) {
         Component c = findComponent(index);
         if (index + 8 <= c.endOffset) {
-            c.buf.setLongLE(index - c.offset, value);
+            c.buf.setLongLE(c.idx(index), value);
         } else if (order() == ByteOrder.BIG_ENDIAN) {
             _setIntLE(index, (int) value);
             _setIntLE(index + 4, (int) (value >>> 32));
@@ -1128,13 +1139,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.setBytes(index - adjustment, src, srcIndex, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.setBytes(c.idx(index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1153,15 +1163,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         try {
             while (length > 0) {
-                Component c = components.get(i);
+                Component c = components[i];
                 ByteBuf s = c.buf;
-                int adjustment = c.offset;
-                int localLength = Math.min(length, s.capacity() - (index - adjustment));
+                int localLength = Math.min(length, c.endOffset - index);
                 src.limit(src.position() + localLength);
-                s.setBytes(index - adjustment, src);
+                s.setBytes(c.idx(index), src);
                 index += localLength;
                 length -= localLength;
                 i ++;
@@ -1179,13 +1188,12 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return this;
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.setBytes(index - adjustment, src, srcIndex, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.setBytes(c.idx(index), src, srcIndex, localLength);
             index += localLength;
             srcIndex += localLength;
             length -= localLength;
@@ -1201,20 +1209,19 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return in.read(EmptyArrays.EMPTY_BYTES);
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         int readBytes = 0;
 
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            int localLength = Math.min(length, c.endOffset - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, localLength);
+            int localReadBytes = s.setBytes(c.idx(index), in, localLength);
             if (localReadBytes < 0) {
                 if (readBytes == 0) {
                     return -1;
@@ -1245,19 +1252,18 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return in.read(EMPTY_NIO_BUFFER);
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            int localLength = Math.min(length, c.endOffset - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, localLength);
+            int localReadBytes = s.setBytes(c.idx(index), in, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1293,19 +1299,18 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return in.read(EMPTY_NIO_BUFFER, position);
         }
 
-        int i = toComponentIndex(index);
+        int i = toComponentIndex0(index);
         int readBytes = 0;
         do {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            int localLength = Math.min(length, c.endOffset - index);
             if (localLength == 0) {
                 // Skip empty buffer
                 i++;
                 continue;
             }
-            int localReadBytes = s.setBytes(index - adjustment, in, position + readBytes, localLength);
+            int localReadBytes = s.setBytes(c.idx(index), in, position + readBytes, localLength);
 
             if (localReadBytes == 0) {
                 break;
@@ -1339,7 +1344,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         checkIndex(index, length);
         ByteBuf dst = Unpooled.buffer(length);
         if (length != 0) {
-            copyTo(index, length, toComponentIndex(index), dst);
+            copyTo(index, length, toComponentIndex0(index), dst);
         }
         return dst;
     }
@@ -1349,11 +1354,10 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         int i = componentId;
 
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
-            s.getBytes(index - adjustment, dst, dstIndex, localLength);
+            int localLength = Math.min(length, c.endOffset - index);
+            s.getBytes(c.idx(index), dst, dstIndex, localLength);
             index += localLength;
             dstIndex += localLength;
             length -= localLength;
@@ -1390,8 +1394,8 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param cIndex the index for which the {@link ByteBuf} should be returned
      */
     public ByteBuf internalComponent(int cIndex) {
-        checkComponentIndex(cIndex);
-        return components.get(cIndex).buf;
+        checkComponentIndex(cIndex, 1);
+        return components[cIndex].slice();
     }
 
     /**
@@ -1401,40 +1405,28 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      * @param offset the offset for which the {@link ByteBuf} should be returned
      */
     public ByteBuf internalComponentAtOffset(int offset) {
-        return findComponent(offset).buf;
+        return findComponent(offset).slice();
     }
 
     private Component findComponent(int offset) {
         checkIndex(offset);
-
-        for (int low = 0, high = components.size(); low <= high;) {
-            int mid = low + high >>> 1;
-            Component c = components.get(mid);
-            if (offset >= c.endOffset) {
-                low = mid + 1;
-            } else if (offset < c.offset) {
-                high = mid - 1;
-            } else {
-                assert c.length != 0;
-                return c;
-            }
-        }
-
-        throw new Error("should not reach here");
+        Component c = components[toComponentIndex0(offset)];
+        assert c.length != 0;
+        return c;
     }
 
     @Override
     public int nioBufferCount() {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return 1;
         case 1:
-            return components.get(0).buf.nioBufferCount();
+            return components[0].buf.nioBufferCount();
         default:
             int count = 0;
-            int componentsCount = components.size();
+            int componentsCount = componentCount;
             for (int i = 0; i < componentsCount; i++) {
-                Component c = components.get(i);
+                Component c = components[i];
                 count += c.buf.nioBufferCount();
             }
             return count;
@@ -1443,11 +1435,13 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
     @Override
     public ByteBuffer internalNioBuffer(int index, int length) {
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            return components.get(0).buf.internalNioBuffer(index, length);
+            checkIndex(index, length);
+            Component c = components[0];
+            return c.buf.internalNioBuffer(c.idx(index), length);
         default:
             throw new UnsupportedOperationException();
         }
@@ -1457,13 +1451,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     public ByteBuffer nioBuffer(int index, int length) {
         checkIndex(index, length);
 
-        switch (components.size()) {
+        switch (componentCount) {
         case 0:
             return EMPTY_NIO_BUFFER;
         case 1:
-            ByteBuf buf = components.get(0).buf;
+            Component c = components[0];
+            ByteBuf buf = c.buf;
             if (buf.nioBufferCount() == 1) {
-                return components.get(0).buf.nioBuffer(index, length);
+                return buf.nioBuffer(c.idx(index), length);
             }
         }
 
@@ -1485,21 +1480,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
             return new ByteBuffer[] { EMPTY_NIO_BUFFER };
         }
 
-        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(components.size());
-        int i = toComponentIndex(index);
+        List<ByteBuffer> buffers = new ArrayList<ByteBuffer>(componentCount);
+        int i = toComponentIndex0(index);
         while (length > 0) {
-            Component c = components.get(i);
+            Component c = components[i];
             ByteBuf s = c.buf;
-            int adjustment = c.offset;
-            int localLength = Math.min(length, s.capacity() - (index - adjustment));
+            int localLength = Math.min(length, c.endOffset - index);
             switch (s.nioBufferCount()) {
                 case 0:
                     throw new UnsupportedOperationException();
                 case 1:
-                    buffers.add(s.nioBuffer(index - adjustment, localLength));
+                    buffers.add(s.nioBuffer(c.idx(index), localLength));
                     break;
                 default:
-                    Collections.addAll(buffers, s.nioBuffers(index - adjustment, localLength));
+                    Collections.addAll(buffers, s.nioBuffers(c.idx(index), localLength));
             }
 
             index += localLength;
@@ -1515,25 +1509,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf consolidate() {
         ensureAccessible();
-        final int numComponents = numComponents();
-        if (numComponents <= 1) {
-            return this;
-        }
-
-        final Component last = components.get(numComponents - 1);
-        final int capacity = last.endOffset;
-        final ByteBuf consolidated = allocBuffer(capacity);
-
-        for (int i = 0; i < numComponents; i ++) {
-            Component c = components.get(i);
-            ByteBuf b = c.buf;
-            consolidated.writeBytes(b);
-            c.freeIfNecessary();
-        }
-
-        components.clear();
-        components.add(new Component(consolidated));
-        updateComponentOffsets(0);
+        consolidate0(0, componentCount);
         return this;
     }
 
@@ -1545,26 +1521,27 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
      */
     public CompositeByteBuf consolidate(int cIndex, int numComponents) {
         checkComponentIndex(cIndex, numComponents);
+        consolidate0(cIndex, numComponents);
+        return this;
+    }
+
+    private void consolidate0(int cIndex, int numComponents) {
         if (numComponents <= 1) {
-            return this;
+            return;
         }
 
         final int endCIndex = cIndex + numComponents;
-        final Component last = components.get(endCIndex - 1);
-        final int capacity = last.endOffset - components.get(cIndex).offset;
+        final int startOffset = components[cIndex].offset;
+        final int capacity = components[endCIndex - 1].endOffset - startOffset;
         final ByteBuf consolidated = allocBuffer(capacity);
 
         for (int i = cIndex; i < endCIndex; i ++) {
-            Component c = components.get(i);
-            ByteBuf b = c.buf;
-            consolidated.writeBytes(b);
-            c.freeIfNecessary();
+            components[i].transferTo(consolidated);
         }
 
-        components.subList(cIndex + 1, endCIndex).clear();
-        components.set(cIndex, new Component(consolidated));
-        updateComponentOffsets(cIndex);
-        return this;
+        // The offsets of all other components stay the same.
+        removeCompRange(cIndex + 1, endCIndex);
+        components[cIndex] = newComponent(consolidated, startOffset);
     }
 
     /**
@@ -1580,24 +1557,20 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            for (Component c: components) {
-                c.freeIfNecessary();
-            }
-            components.clear();
+            freeComps(0, componentCount);
+            removeCompRange(0, componentCount);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
         }
 
         // Remove read components.
-        int firstComponentId = toComponentIndex(readerIndex);
-        for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
-        }
-        components.subList(0, firstComponentId).clear();
+        int firstComponentId = toComponentIndex0(readerIndex);
+        freeComps(0, firstComponentId);
+        removeCompRange(0, firstComponentId);
 
         // Update indexes and markers.
-        Component first = components.get(0);
+        Component first = components[0];
         int offset = first.offset;
         updateComponentOffsets(0);
         setIndex(readerIndex - offset, writerIndex - offset);
@@ -1616,31 +1589,27 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         // Discard everything if (readerIndex = writerIndex = capacity).
         int writerIndex = writerIndex();
         if (readerIndex == writerIndex && writerIndex == capacity()) {
-            for (Component c: components) {
-                c.freeIfNecessary();
-            }
-            components.clear();
+            freeComps(0, componentCount);
+            removeCompRange(0, componentCount);
             setIndex(0, 0);
             adjustMarkers(readerIndex);
             return this;
         }
 
         // Remove read components.
-        int firstComponentId = toComponentIndex(readerIndex);
-        for (int i = 0; i < firstComponentId; i ++) {
-            components.get(i).freeIfNecessary();
-        }
-        components.subList(0, firstComponentId).clear();
+        int firstComponentId = toComponentIndex0(readerIndex);
+        freeComps(0, firstComponentId);
+        removeCompRange(0, firstComponentId);
 
-        // Remove or replace the first readable component with a new slice.
-        Component c = components.get(0);
+        // Remove or trim the first readable component.
+        Component c = components[0];
         int adjustment = readerIndex - c.offset;
         if (adjustment == c.length) {
-            // new slice would be empty, so remove instead
-            components.remove(0);
+            // trimmed component would be empty, so remove instead
+            removeComp(0);
+            c.freeIfNecessary();
         } else {
-            Component newC = new Component(c.buf.slice(adjustment, c.length - adjustment));
-            components.set(0, newC);
+            c.trimStart(adjustment);
         }
 
         // Update indexes and markers.
@@ -1654,25 +1623,146 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return direct ? alloc().directBuffer(capacity) : alloc().heapBuffer(capacity);
     }
 
+    private void freeComps(int from, int to) {
+        for (int i = from; i < to; i ++) {
+            components[i].freeIfNecessary();
+        }
+    }
+
+    private void addComp(int i, Component c) {
+        shiftComps(i, 1);
+        components[i] = c;
+    }
+
+    /**
+     * Makes room for {@code count} components at index {@code i}, the new slots must be filled by the caller.
+     */
+    private void shiftComps(int i, int count) {
+        final int size = componentCount;
+        final int newSize = size + count;
+        assert i >= 0 && i <= size && count >= 0;
+        if (newSize > components.length) {
+            // grow the array
+            int newArrSize = Math.max(size + (size >> 1), newSize);
+            Component[] newArr = new Component[newArrSize];
+            System.arraycopy(components, 0, newArr, 0, i);
+            System.arraycopy(components, i, newArr, i + count, size - i);
+            components = newArr;
+        } else if (i < size) {
+            System.arraycopy(components, i, components, i + count, size - i);
+        }
+        componentCount = newSize;
+    }
+
+    private void removeComp(int i) {
+        removeCompRange(i, i + 1);
+    }
+
+    /**
+     * Removes the components from {@code from} (inclusive) to {@code to} (exclusive) without freeing them.
+     */
+    private void removeCompRange(int from, int to) {
+        if (from >= to) {
+            return;
+        }
+        final int size = componentCount;
+        assert from >= 0 && to <= size;
+        if (to < size) {
+            System.arraycopy(components, to, components, from, size - to);
+        }
+        int newSize = size - to + from;
+        for (int i = newSize; i < size; i ++) {
+            components[i] = null;
+        }
+        componentCount = newSize;
+    }
+
     @Override
     public String toString() {
         String result = super.toString();
         result = result.substring(0, result.length() - 1);
-        return result + ", components=" + components.size() + ')';
+        return result + ", components=" + componentCount + ')';
     }
 
+    /**
+     * A component wraps the readable bytes of an added buffer without slicing it. Instances are pooled as a
+     * {@link CompositeByteBuf} which is used to aggregate many small buffers creates and drops many of them, so they
+     * must not be used anymore after {@link #freeIfNecessary()} or {@link #transferTo(ByteBuf)} was called.
+     */
     private static final class Component {
-        final ByteBuf buf;
-        final int length;
+        private static final Recycler<Component> RECYCLER = new Recycler<Component>() {
+            @Override
+            protected Component newObject(Handle<Component> handle) {
+                return new Component(handle);
+            }
+        };
+
+        private final Recycler.Handle<Component> handle;
+        ByteBuf buf;
+        // Added to an index of the CompositeByteBuf to get the index in buf.
+        int adjustment;
+        int length;
         int offset;
         int endOffset;
 
-        Component(ByteBuf buf) {
-            this.buf = buf;
-            length = buf.readableBytes();
+        // Created lazily, only needed when the buffer is exposed.
+        private ByteBuf slice;
+
+        private Component(Recycler.Handle<Component> handle) {
+            this.handle = handle;
+        }
+
+        static Component newInstance(ByteBuf buf, int srcIndex, int offset, int length) {
+            Component c = RECYCLER.get();
+            c.buf = buf;
+            c.adjustment = srcIndex - offset;
+            c.length = length;
+            c.offset = offset;
+            c.endOffset = offset + length;
+            return c;
+        }
+
+        int idx(int index) {
+            return index + adjustment;
+        }
+
+        void reposition(int newOffset) {
+            int move = newOffset - offset;
+            endOffset += move;
+            adjustment -= move;
+            offset = newOffset;
+        }
+
+        void trimStart(int bytes) {
+            offset += bytes;
+            length -= bytes;
+            slice = null;
+        }
+
+        void trimEnd(int bytes) {
+            endOffset -= bytes;
+            length -= bytes;
+            slice = null;
+        }
+
+        ByteBuf slice() {
+            ByteBuf slice = this.slice;
+            if (slice == null) {
+                this.slice = slice = buf.slice(idx(offset), length);
+            }
+            return slice;
+        }
+
+        void transferTo(ByteBuf dst) {
+            dst.writeBytes(buf, idx(offset), length);
+            freeIfNecessary();
         }
 
         void freeIfNecessary() {
+            ByteBuf buf = this.buf;
+            this.buf = null;
+            slice = null;
+            handle.recycle(this);
             buf.release(); // We should not get a NPE here. If so, it must be a bug.
         }
     }
@@ -1847,6 +1937,26 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         return (CompositeByteBuf) super.writeLong(value);
     }
 
+    @Override
+    public CompositeByteBuf writeVarInt32(int value) {
+        return (CompositeByteBuf) super.writeVarInt32(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeVarInt64(long value) {
+        return (CompositeByteBuf) super.writeVarInt64(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt32(int value) {
+        return (CompositeByteBuf) super.writeZigZagVarInt32(value);
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt64(long value) {
+        return (CompositeByteBuf) super.writeZigZagVarInt64(value);
+    }
+
     @Override
     public CompositeByteBuf writeChar(int value) {
         return (CompositeByteBuf) super.writeChar(value);
@@ -1934,12 +2044,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
         }
 
         freed = true;
-        int size = components.size();
+        int size = componentCount;
         // We're not using foreach to avoid creating an iterator.
         // see https://github.com/netty/netty/issues/2642
         for (int i = 0; i < size; i++) {
-            components.get(i).freeIfNecessary();
+            components[i].freeIfNecessary();
         }
+        // The components were recycled, so they must not be reachable anymore.
+        removeCompRange(0, size);
     }
 
     @Override
@@ -1948,7 +2060,7 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
     }
 
     private final class CompositeByteBufIterator implements Iterator<ByteBuf> {
-        private final int size = components.size();
+        private final int size = componentCount;
         private int index;
 
         @Override
@@ -1958,14 +2070,14 @@ public class CompositeByteBuf extends AbstractReferenceCountedByteBuf implements
 
         @Override
         public ByteBuf next() {
-            if (size != components.size()) {
+            if (size != componentCount) {
                 throw new ConcurrentModificationException();
             }
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
             try {
-                return components.get(index++).buf;
+                return components[index++].slice();
             } catch (IndexOutOfBoundsException e) {
                 throw new ConcurrentModificationException();
             }
@@ -606,6 +606,26 @@ public final class EmptyByteBuf extends ByteBuf {
         throw new IndexOutOfBoundsException();
     }
 
+    @Override
+    public int readVarInt32() {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public long readVarInt64() {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        throw new IndexOutOfBoundsException();
+    }
+
     @Override
     public char readChar() {
         throw new IndexOutOfBoundsException();
@@ -744,6 +764,26 @@ public final class EmptyByteBuf extends ByteBuf {
         throw new IndexOutOfBoundsException();
     }
 
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        throw new IndexOutOfBoundsException();
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        throw new IndexOutOfBoundsException();
+    }
+
     @Override
     public ByteBuf writeChar(int value) {
         throw new IndexOutOfBoundsException();
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A {@link UnpooledDirectByteBuf} which is backed by a part of a memory-mapped file, see
+ * {@link MappedFileByteBufAllocator}.
+ */
+final class MappedFileByteBuf extends UnpooledDirectByteBuf {
+
+    private final MappedFileByteBufAllocator.Segment segment;
+
+    MappedFileByteBuf(MappedFileByteBufAllocator alloc, ByteBuffer memory,
+                      MappedFileByteBufAllocator.Segment segment) {
+        // The memory belongs to the segment, so it must not be freed on its own.
+        super(alloc, memory, memory.remaining());
+        this.segment = segment;
+        clear();
+    }
+
+    @Override
+    public ByteBuf capacity(int newCapacity) {
+        ensureAccessible();
+        if (newCapacity != capacity()) {
+            // The content would be copied into memory which is not backed by the file and so never be persisted.
+            throw new UnsupportedOperationException(
+                    "newCapacity: " + newCapacity + " (expected: " + capacity() + ", the buffer is memory-mapped)");
+        }
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        super.deallocate();
+        segment.release();
+    }
+}
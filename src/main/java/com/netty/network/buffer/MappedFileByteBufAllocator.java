@@ -0,0 +1,257 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import com.netty.network.util.internal.PlatformDependent;
+import com.netty.network.util.internal.StringUtil;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * A {@link ByteBufAllocator} which carves direct buffers out of a memory-mapped file, so the same pages can be
+ * written to a {@link java.nio.channels.Channel} and are persisted to disk without copying them.
+ *
+ * The file is mapped in segments of a fixed size which are filled one after the other, each buffer takes the next
+ * {@code initialCapacity} bytes of the current segment. Space is never reused, this allocator is meant for journals
+ * and other append-only data. Buffers can not change their capacity, so direct buffers must be allocated with a
+ * {@code maxCapacity} equal to their {@code initialCapacity}, for example with {@code directBuffer(n, n)}. Methods
+ * which ask for a buffer that can grow, like {@link #buffer()} or {@link #directBuffer(int)}, are rejected with an
+ * {@link IllegalArgumentException}. A segment is unmapped once the allocator moved on to the next segment and all
+ * buffers carved out of it were released.
+ *
+ * Heap buffers are not backed by the file, they are allocated like {@link UnpooledByteBufAllocator} does.
+ */
+public final class MappedFileByteBufAllocator extends AbstractByteBufAllocator implements Closeable {
+
+    /**
+     * The default size of a mapped segment, 64 MiB.
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private final RandomAccessFile file;
+    private final FileChannel channel;
+    private final int segmentSize;
+
+    // Guarded by this.
+    private Segment segment;
+    private long position;
+    private boolean closed;
+
+    /**
+     * Creates a new instance which maps {@code file} in segments of {@link #DEFAULT_SEGMENT_SIZE} bytes, starting
+     * at the beginning of the file.
+     */
+    public MappedFileByteBufAllocator(File file) throws IOException {
+        this(file, DEFAULT_SEGMENT_SIZE, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param file          the file to map, it is created if it does not exist yet
+     * @param segmentSize   the number of bytes that are mapped at once, which is also the largest buffer that can be
+     *                      allocated
+     * @param position      the offset in the file where the first buffer is allocated
+     */
+    public MappedFileByteBufAllocator(File file, int segmentSize, long position) throws IOException {
+        super(true);
+        if (file == null) {
+            throw new NullPointerException("file");
+        }
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("segmentSize: " + segmentSize + " (expected: > 0)");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("position: " + position + " (expected: >= 0)");
+        }
+        this.segmentSize = segmentSize;
+        this.position = position;
+        this.file = new RandomAccessFile(file, "rw");
+        channel = this.file.getChannel();
+    }
+
+    /**
+     * Returns the offset in the file where the next buffer will be allocated.
+     */
+    public synchronized long position() {
+        return position;
+    }
+
+    /**
+     * Returns the number of bytes that are mapped at once.
+     */
+    public int segmentSize() {
+        return segmentSize;
+    }
+
+    @Override
+    protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+        return toLeakAwareBuffer(PlatformDependent.hasUnsafe() ?
+                new UnpooledUnsafeHeapByteBuf(this, initialCapacity, maxCapacity) :
+                new UnpooledHeapByteBuf(this, initialCapacity, maxCapacity));
+    }
+
+    @Override
+    protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+        if (maxCapacity != initialCapacity) {
+            throw new IllegalArgumentException("maxCapacity: " + maxCapacity + " (expected: " + initialCapacity +
+                    ", buffers backed by the file can not grow)");
+        }
+        if (initialCapacity > segmentSize) {
+            throw new IllegalArgumentException(
+                    "initialCapacity: " + initialCapacity + " (expected: <= " + segmentSize + ')');
+        }
+
+        final Segment segment;
+        final ByteBuffer memory;
+        synchronized (this) {
+            if (closed) {
+                throw new IllegalStateException("allocator closed");
+            }
+            Segment current = this.segment;
+            if (current == null || current.remaining() < initialCapacity) {
+                current = nextSegment(current);
+            }
+            memory = current.slice(initialCapacity);
+            current.retain();
+            position += initialCapacity;
+            segment = current;
+        }
+
+        ByteBuf buf = PlatformDependent.hasUnsafe() ?
+                new UnsafeMappedFileByteBuf(this, memory, segment) : new MappedFileByteBuf(this, memory, segment);
+        return toLeakAwareBuffer(buf);
+    }
+
+    // Must be called while holding the lock.
+    private Segment nextSegment(Segment current) {
+        if (current != null) {
+            // Skip what is left of the current segment, a buffer never spans two segments.
+            position += current.remaining();
+            this.segment = null;
+            current.release();
+        }
+        final MappedByteBuffer mapped;
+        try {
+            mapped = channel.map(FileChannel.MapMode.READ_WRITE, position, segmentSize);
+        } catch (IOException e) {
+            throw new IllegalStateException("failed to map " + segmentSize + " bytes at " + position, e);
+        }
+        Segment next = new Segment(mapped);
+        this.segment = next;
+        return next;
+    }
+
+    @Override
+    public boolean isDirectBufferPooled() {
+        return false;
+    }
+
+    /**
+     * Forces the content of the current segment to be written to disk. Segments the allocator already moved on from
+     * are written by the OS in the background, see {@link MappedByteBuffer#force()}.
+     */
+    public void force() {
+        Segment segment;
+        synchronized (this) {
+            segment = this.segment;
+            if (segment == null) {
+                return;
+            }
+            segment.retain();
+        }
+        try {
+            segment.mapped.force();
+        } finally {
+            segment.release();
+        }
+    }
+
+    /**
+     * Closes the file. Buffers that were allocated before stay usable until they are released, no new buffers can be
+     * allocated afterwards.
+     */
+    @Override
+    public void close() throws IOException {
+        Segment segment;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            segment = this.segment;
+            this.segment = null;
+        }
+        if (segment != null) {
+            segment.release();
+        }
+        // The mappings stay valid after the channel was closed.
+        file.close();
+    }
+
+    @Override
+    public String toString() {
+        return StringUtil.simpleClassName(this) + "(position: " + position() + ", segmentSize: " + segmentSize + ')';
+    }
+
+    /**
+     * A mapped region of the file. It is retained by the allocator while it is the current segment and by every
+     * buffer that was carved out of it, and unmapped once the last of them released it.
+     */
+    static final class Segment {
+        private static final AtomicIntegerFieldUpdater<Segment> REFCNT_UPDATER =
+                AtomicIntegerFieldUpdater.newUpdater(Segment.class, "refCnt");
+
+        final MappedByteBuffer mapped;
+        // Only accessed while holding the allocator lock.
+        private int offset;
+        private volatile int refCnt = 1;
+
+        Segment(MappedByteBuffer mapped) {
+            this.mapped = mapped;
+        }
+
+        int remaining() {
+            return mapped.capacity() - offset;
+        }
+
+        ByteBuffer slice(int length) {
+            ByteBuffer slice = mapped.duplicate();
+            slice.position(offset).limit(offset + length);
+            offset += length;
+            return slice.slice();
+        }
+
+        void retain() {
+            REFCNT_UPDATER.incrementAndGet(this);
+        }
+
+        void release() {
+            if (REFCNT_UPDATER.decrementAndGet(this) == 0) {
+                // Unmap now instead of waiting for the GC, does nothing if the platform does not support it.
+                PlatformDependent.freeDirectBuffer(mapped);
+            }
+        }
+    }
+}
@@ -17,38 +17,40 @@
 package com.netty.network.buffer;
 
 
+import com.netty.network.util.concurrent.FastThreadLocal;
+import com.netty.network.util.internal.InternalThreadLocalMap;
 import com.netty.network.util.internal.LongCounter;
 import com.netty.network.util.internal.PlatformDependent;
 import com.netty.network.util.internal.StringUtil;
 
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.lang.Math.max;
 
-abstract class PoolArena<T> implements PoolArenaMetric {
+abstract class PoolArena<T> extends SizeClasses implements PoolArenaMetric {
     static final boolean HAS_UNSAFE = PlatformDependent.hasUnsafe();
 
+    private static final FastThreadLocal<FreeBatch> FREE_BATCH = new FastThreadLocal<FreeBatch>() {
+        @Override
+        protected FreeBatch initialValue() {
+            return new FreeBatch();
+        }
+    };
+
     enum SizeClass {
-        Tiny,
         Small,
         Normal
     }
 
-    static final int numTinySubpagePools = 512 >>> 4;
-
     final PooledByteBufAllocator parent;
 
-    private final int maxOrder;
-    final int pageSize;
-    final int pageShifts;
-    final int chunkSize;
-    final int subpageOverflowMask;
     final int numSmallSubpagePools;
-    private final PoolSubpage<T>[] tinySubpagePools;
     private final PoolSubpage<T>[] smallSubpagePools;
 
     private final PoolChunkList<T> q050;
@@ -60,51 +62,64 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     private final List<PoolChunkListMetric> chunkListMetrics;
 
+    // Number of chunks that are kept even if they are not used, guarded by the write lock.
+    private int minChunks;
+
+    /**
+     * Guards the structure of the {@link PoolChunkList}s. The read lock is held while allocating from or freeing to
+     * chunks that are already linked into a list; each {@link PoolChunk} guards its own runs, so several threads can
+     * work on the same arena concurrently. The write lock is only needed to move a chunk between lists, to add a new
+     * chunk or to unlink a chunk that is about to be destroyed.
+     *
+     * Lock order: arena lock, then subpage pool head, then chunk.
+     */
+    final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
     // Metrics for allocations and deallocations
-    private long allocationsNormal;
-    // We need to use the LongCounter here as this is not guarded via synchronized block.
-    private final LongCounter allocationsTiny = PlatformDependent.newLongCounter();
+    // We need to use the LongCounter here as these are not guarded via a lock.
+    private final LongCounter allocationsNormal = PlatformDependent.newLongCounter();
     private final LongCounter allocationsSmall = PlatformDependent.newLongCounter();
     private final LongCounter allocationsHuge = PlatformDependent.newLongCounter();
     private final LongCounter activeBytesHuge = PlatformDependent.newLongCounter();
 
-    private long deallocationsTiny;
-    private long deallocationsSmall;
-    private long deallocationsNormal;
-
-    // We need to use the LongCounter here as this is not guarded via synchronized block.
+    private final LongCounter deallocationsSmall = PlatformDependent.newLongCounter();
+    private final LongCounter deallocationsNormal = PlatformDependent.newLongCounter();
     private final LongCounter deallocationsHuge = PlatformDependent.newLongCounter();
 
+    private final LongCounter chunkAllocations = PlatformDependent.newLongCounter();
+    private final LongCounter chunkDestructions = PlatformDependent.newLongCounter();
+
     // Number of thread caches backed by this arena.
     final AtomicInteger numThreadCaches = new AtomicInteger();
 
+    // Decisions of the thread caches backed by this arena, updated from PoolThreadCache.trim().
+    final LongCounter threadCacheGrows = PlatformDependent.newLongCounter();
+    final LongCounter threadCacheShrinks = PlatformDependent.newLongCounter();
+    final LongCounter threadCacheCapacityBytes = PlatformDependent.newLongCounter();
+
+    // Hits and misses of the thread caches backed by this arena per sizeIdx, published by PoolThreadCache.trim().
+    private final LongCounter[] threadCacheHits;
+    private final LongCounter[] threadCacheMisses;
+
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
-    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+    protected PoolArena(PooledByteBufAllocator parent, int pageSize, int pageShifts, int chunkSize) {
+        super(pageSize, pageShifts, chunkSize);
         this.parent = parent;
-        this.pageSize = pageSize;
-        this.maxOrder = maxOrder;
-        this.pageShifts = pageShifts;
-        this.chunkSize = chunkSize;
-        subpageOverflowMask = ~(pageSize - 1);
-        tinySubpagePools = newSubpagePoolArray(numTinySubpagePools);
-        for (int i = 0; i < tinySubpagePools.length; i ++) {
-            tinySubpagePools[i] = newSubpagePoolHead(pageSize);
-        }
 
-        numSmallSubpagePools = pageShifts - 9;
+        numSmallSubpagePools = nSubpages;
         smallSubpagePools = newSubpagePoolArray(numSmallSubpagePools);
         for (int i = 0; i < smallSubpagePools.length; i ++) {
-            smallSubpagePools[i] = newSubpagePoolHead(pageSize);
+            smallSubpagePools[i] = newSubpagePoolHead();
         }
 
-        q100 = new PoolChunkList<T>(null, 100, Integer.MAX_VALUE, chunkSize);
-        q075 = new PoolChunkList<T>(q100, 75, 100, chunkSize);
-        q050 = new PoolChunkList<T>(q075, 50, 100, chunkSize);
-        q025 = new PoolChunkList<T>(q050, 25, 75, chunkSize);
-        q000 = new PoolChunkList<T>(q025, 1, 50, chunkSize);
-        qInit = new PoolChunkList<T>(q000, Integer.MIN_VALUE, 25, chunkSize);
+        q100 = new PoolChunkList<T>(this, null, 100, Integer.MAX_VALUE, chunkSize);
+        q075 = new PoolChunkList<T>(this, q100, 75, 100, chunkSize);
+        q050 = new PoolChunkList<T>(this, q075, 50, 100, chunkSize);
+        q025 = new PoolChunkList<T>(this, q050, 25, 75, chunkSize);
+        q000 = new PoolChunkList<T>(this, q025, 1, 50, chunkSize);
+        qInit = new PoolChunkList<T>(this, q000, Integer.MIN_VALUE, 25, chunkSize);
 
         q100.prevList(q075);
         q075.prevList(q050);
@@ -121,10 +136,21 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         metrics.add(q075);
         metrics.add(q100);
         chunkListMetrics = Collections.unmodifiableList(metrics);
+
+        threadCacheHits = newLongCounterArray(nSizes);
+        threadCacheMisses = newLongCounterArray(nSizes);
+    }
+
+    private static LongCounter[] newLongCounterArray(int size) {
+        LongCounter[] counters = new LongCounter[size];
+        for (int i = 0; i < counters.length; i ++) {
+            counters[i] = PlatformDependent.newLongCounter();
+        }
+        return counters;
     }
 
-    private PoolSubpage<T> newSubpagePoolHead(int pageSize) {
-        PoolSubpage<T> head = new PoolSubpage<T>(pageSize);
+    private PoolSubpage<T> newSubpagePoolHead() {
+        PoolSubpage<T> head = new PoolSubpage<T>();
         head.prev = head;
         head.next = head;
         return head;
@@ -143,104 +169,139 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return buf;
     }
 
-    static int tinyIdx(int normCapacity) {
-        return normCapacity >>> 4;
-    }
+    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
+        final int sizeIdx = size2SizeIdx(reqCapacity);
 
-    static int smallIdx(int normCapacity) {
-        int tableIdx = 0;
-        int i = normCapacity >>> 10;
-        while (i != 0) {
-            i >>>= 1;
-            tableIdx ++;
+        if (sizeIdx <= smallMaxSizeIdx) {
+            tcacheAllocateSmall(cache, buf, reqCapacity, sizeIdx);
+        } else if (sizeIdx < nSizes) {
+            tcacheAllocateNormal(cache, buf, reqCapacity, sizeIdx);
+        } else {
+            // Huge allocations are never served via the cache so just call allocateHuge
+            allocateHuge(buf, reqCapacity);
         }
-        return tableIdx;
     }
 
-    // capacity < pageSize
-    boolean isTinyOrSmall(int normCapacity) {
-        return (normCapacity & subpageOverflowMask) == 0;
+    private void tcacheAllocateSmall(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                     final int sizeIdx) {
+
+        if (cache.allocateSmall(this, buf, reqCapacity, sizeIdx)) {
+            // was able to allocate out of the cache so move on
+            return;
+        }
+
+        /**
+         * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
+         * {@link PoolChunk#free(long, int)} may modify the doubly linked list as well.
+         */
+        final PoolSubpage<T> head = smallSubpagePools[sizeIdx];
+        final boolean needsNormalAllocation;
+        synchronized (head) {
+            final PoolSubpage<T> s = head.next;
+            needsNormalAllocation = s == head;
+            if (!needsNormalAllocation) {
+                assert s.doNotDestroy && s.elemSize == sizeIdx2size(sizeIdx);
+                long handle = s.allocate();
+                assert handle >= 0;
+                s.chunk.initBufWithSubpage(buf, handle, reqCapacity, cache);
+            }
+        }
+
+        if (needsNormalAllocation) {
+            allocateNormal(buf, reqCapacity, sizeIdx, cache);
+        }
+
+        allocationsSmall.increment();
     }
 
-    // normCapacity < 512
-    static boolean isTiny(int normCapacity) {
-        return (normCapacity & 0xFFFFFE00) == 0;
+    private void tcacheAllocateNormal(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity,
+                                      final int sizeIdx) {
+        if (cache.allocateNormal(this, buf, reqCapacity, sizeIdx)) {
+            // was able to allocate out of the cache so move on
+            return;
+        }
+        allocateNormal(buf, reqCapacity, sizeIdx, cache);
+        allocationsNormal.increment();
     }
 
-    private void allocate(PoolThreadCache cache, PooledByteBuf<T> buf, final int reqCapacity) {
-        final int normCapacity = normalizeCapacity(reqCapacity);
-        if (isTinyOrSmall(normCapacity)) { // capacity < pageSize
-            int tableIdx;
-            PoolSubpage<T>[] table;
-            boolean tiny = isTiny(normCapacity);
-            if (tiny) { // < 512
-                if (cache.allocateTiny(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = tinyIdx(normCapacity);
-                table = tinySubpagePools;
-            } else {
-                if (cache.allocateSmall(this, buf, reqCapacity, normCapacity)) {
-                    // was able to allocate out of the cache so move on
-                    return;
-                }
-                tableIdx = smallIdx(normCapacity);
-                table = smallSubpagePools;
+    private void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
+        PoolChunk<T> chunk;
+        boolean needsRelocate = false;
+        final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            chunk = allocateFromChunkLists(buf, reqCapacity, sizeIdx, threadCache);
+            if (chunk != null) {
+                // This is only a hint as other threads may allocate from or free to the same chunk concurrently,
+                // relocate() checks again once it holds the write lock.
+                needsRelocate = !chunk.parent.fits(chunk);
             }
+        } finally {
+            readLock.unlock();
+        }
 
-            final PoolSubpage<T> head = table[tableIdx];
-
-            /**
-             * Synchronize on the head. This is needed as {@link PoolChunk#allocateSubpage(int)} and
-             * {@link PoolChunk#free(long)} may modify the doubly linked list as well.
-             */
-            synchronized (head) {
-                final PoolSubpage<T> s = head.next;
-                if (s != head) {
-                    assert s.doNotDestroy && s.elemSize == normCapacity;
-                    long handle = s.allocate();
-                    assert handle >= 0;
-                    s.chunk.initBufWithSubpage(buf, handle, reqCapacity);
-
-                    if (tiny) {
-                        allocationsTiny.increment();
-                    } else {
-                        allocationsSmall.increment();
-                    }
-                    return;
-                }
+        if (chunk != null) {
+            if (needsRelocate) {
+                relocate(chunk);
             }
-            allocateNormal(buf, reqCapacity, normCapacity);
             return;
         }
-        if (normCapacity <= chunkSize) {
-            if (cache.allocateNormal(this, buf, reqCapacity, normCapacity)) {
-                // was able to allocate out of the cache so move on
+
+        final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            // Another thread may have added a chunk while we were waiting for the write lock.
+            chunk = allocateFromChunkLists(buf, reqCapacity, sizeIdx, threadCache);
+            if (chunk != null) {
+                chunk.parent.relocate(chunk);
                 return;
             }
-            allocateNormal(buf, reqCapacity, normCapacity);
-        } else {
-            // Huge allocations are never served via the cache so just call allocateHuge
-            allocateHuge(buf, reqCapacity);
+
+            // Add a new chunk.
+            PoolChunk<T> c = newChunk(pageSize, nPSizes, pageShifts, chunkSize);
+            boolean success = c.allocate(buf, reqCapacity, sizeIdx, threadCache);
+            assert success;
+            qInit.add(c);
+            chunkAllocations.increment();
+        } finally {
+            writeLock.unlock();
         }
     }
 
-    private synchronized void allocateNormal(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
-        if (q050.allocate(buf, reqCapacity, normCapacity) || q025.allocate(buf, reqCapacity, normCapacity) ||
-            q000.allocate(buf, reqCapacity, normCapacity) || qInit.allocate(buf, reqCapacity, normCapacity) ||
-            q075.allocate(buf, reqCapacity, normCapacity)) {
-            ++allocationsNormal;
-            return;
+    // Method must be called while holding the read or write lock.
+    private PoolChunk<T> allocateFromChunkLists(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx,
+                                                PoolThreadCache threadCache) {
+        PoolChunk<T> chunk;
+        if ((chunk = q050.allocate(buf, reqCapacity, sizeIdx, threadCache)) != null ||
+            (chunk = q025.allocate(buf, reqCapacity, sizeIdx, threadCache)) != null ||
+            (chunk = q000.allocate(buf, reqCapacity, sizeIdx, threadCache)) != null ||
+            (chunk = qInit.allocate(buf, reqCapacity, sizeIdx, threadCache)) != null ||
+            (chunk = q075.allocate(buf, reqCapacity, sizeIdx, threadCache)) != null) {
+            return chunk;
         }
+        return null;
+    }
 
-        // Add a new chunk.
-        PoolChunk<T> c = newChunk(pageSize, maxOrder, pageShifts, chunkSize);
-        long handle = c.allocate(normCapacity);
-        ++allocationsNormal;
-        assert handle > 0;
-        c.initBuf(buf, handle, reqCapacity);
-        qInit.add(c);
+    /**
+     * Moves the {@link PoolChunk} into the {@link PoolChunkList} that matches its current usage, destroying it if
+     * it is not used at all anymore.
+     */
+    private void relocate(PoolChunk<T> chunk) {
+        final boolean destroyChunk;
+        final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            PoolChunkList<T> parent = chunk.parent;
+            // parent is null if the chunk was already destroyed by another thread.
+            destroyChunk = parent != null && !parent.relocate(chunk);
+        } finally {
+            writeLock.unlock();
+        }
+        if (destroyChunk) {
+            // destroyChunk not need to be called while holding the lock.
+            destroyChunk(chunk);
+            chunkDestructions.increment();
+        }
     }
 
     private void allocateHuge(PooledByteBuf<T> buf, int reqCapacity) {
@@ -257,99 +318,204 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             activeBytesHuge.add(-size);
             deallocationsHuge.increment();
         } else {
-            SizeClass sizeClass = sizeClass(normCapacity);
+            SizeClass sizeClass = sizeClass(handle);
             if (cache != null && cache.add(this, chunk, handle, normCapacity, sizeClass)) {
                 // cached so not free it.
                 return;
             }
 
-            freeChunk(chunk, handle, sizeClass);
+            freeChunk(chunk, handle, normCapacity, sizeClass);
         }
     }
 
-    private SizeClass sizeClass(int normCapacity) {
-        if (!isTinyOrSmall(normCapacity)) {
-            return SizeClass.Normal;
-        }
-        return isTiny(normCapacity) ? SizeClass.Tiny : SizeClass.Small;
+    private static SizeClass sizeClass(long handle) {
+        return PoolChunk.isSubpage(handle) ? SizeClass.Small : SizeClass.Normal;
     }
 
-    void freeChunk(PoolChunk<T> chunk, long handle, SizeClass sizeClass) {
-        final boolean destroyChunk;
-        synchronized (this) {
-            switch (sizeClass) {
-            case Normal:
-                ++deallocationsNormal;
-                break;
-            case Small:
-                ++deallocationsSmall;
-                break;
-            case Tiny:
-                ++deallocationsTiny;
-                break;
-            default:
-                throw new Error();
+    void freeChunk(PoolChunk<T> chunk, long handle, int normCapacity, SizeClass sizeClass) {
+        // Threads which never began a batch have none, so do not create one for them.
+        InternalThreadLocalMap threadLocalMap = InternalThreadLocalMap.getIfSet();
+        if (FREE_BATCH.isSet(threadLocalMap)) {
+            FreeBatch batch = FREE_BATCH.get(threadLocalMap);
+            if (batch.depth > 0) {
+                batch.add(chunk, handle, normCapacity);
+                return;
             }
-            destroyChunk = !chunk.parent.free(chunk, handle);
         }
-        if (destroyChunk) {
-            // destroyChunk not need to be called while holding the synchronized lock.
-            destroyChunk(chunk);
+
+        switch (sizeClass) {
+        case Normal:
+            deallocationsNormal.increment();
+            break;
+        case Small:
+            deallocationsSmall.increment();
+            break;
+        default:
+            throw new Error();
+        }
+
+        final boolean needsRelocate;
+        final boolean empty;
+        final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            needsRelocate = !chunk.parent.free(chunk, handle, normCapacity);
+            // Only a hint, releaseEmptyChunks() checks again while holding the write lock.
+            empty = chunk.freeBytes == chunkSize;
+        } finally {
+            readLock.unlock();
+        }
+        if (needsRelocate) {
+            relocate(chunk);
+        } else if (empty && parent.isAboveHighWatermark()) {
+            // Do not wait for the chunk to become idle, the allocator holds more memory than it should.
+            releaseEmptyChunks(0);
         }
     }
 
-    PoolSubpage<T> findSubpagePoolHead(int elemSize) {
-        int tableIdx;
-        PoolSubpage<T>[] table;
-        if (isTiny(elemSize)) { // < 512
-            tableIdx = elemSize >>> 4;
-            table = tinySubpagePools;
-        } else {
-            tableIdx = 0;
-            elemSize >>>= 10;
-            while (elemSize != 0) {
-                elemSize >>>= 1;
-                tableIdx ++;
+    /**
+     * Frees {@code handles[from]} up to {@code handles[to - 1]}, which all belong to chunks of this arena and are
+     * ordered so the handles of each chunk are next to each other. The read lock is taken once for all of them and
+     * every chunk is only locked once.
+     */
+    @SuppressWarnings("unchecked")
+    private void freeChunks(PoolChunk<?>[] chunks, long[] handles, int[] normCapacities, int from, int to) {
+        int numSmall = 0;
+        for (int i = from; i < to; i++) {
+            if (PoolChunk.isSubpage(handles[i])) {
+                numSmall++;
             }
-            table = smallSubpagePools;
         }
+        deallocationsSmall.add(numSmall);
+        deallocationsNormal.add(to - from - numSmall);
 
-        return table[tableIdx];
-    }
-
-    int normalizeCapacity(int reqCapacity) {
-        if (reqCapacity < 0) {
-            throw new IllegalArgumentException("capacity: " + reqCapacity + " (expected: 0+)");
+        List<PoolChunk<T>> needsRelocate = null;
+        boolean empty = false;
+        final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            for (int start = from; start < to;) {
+                PoolChunk<T> chunk = (PoolChunk<T>) chunks[start];
+                int end = start + 1;
+                while (end < to && chunks[end] == chunk) {
+                    end++;
+                }
+                if (!chunk.parent.free(chunk, handles, normCapacities, start, end)) {
+                    if (needsRelocate == null) {
+                        needsRelocate = new ArrayList<PoolChunk<T>>(4);
+                    }
+                    needsRelocate.add(chunk);
+                }
+                // Only a hint, releaseEmptyChunks() checks again while holding the write lock.
+                empty |= chunk.freeBytes == chunkSize;
+                start = end;
+            }
+        } finally {
+            readLock.unlock();
         }
-        if (reqCapacity >= chunkSize) {
-            return reqCapacity;
+        if (needsRelocate != null) {
+            for (int i = 0; i < needsRelocate.size(); i++) {
+                relocate(needsRelocate.get(i));
+            }
+        }
+        // Other chunks of the batch may have become empty without needing to be relocated.
+        if (empty && parent.isAboveHighWatermark()) {
+            releaseEmptyChunks(0);
         }
+    }
 
-        if (!isTiny(reqCapacity)) { // >= 512
-            // Doubled
+    /**
+     * Starts collecting the frees of the current thread that are not served by a thread cache, until the matching
+     * call of {@link #endFreeBatch()}. Calls can be nested.
+     */
+    static void beginFreeBatch() {
+        FREE_BATCH.get().depth++;
+    }
 
-            int normalizedCapacity = reqCapacity;
-            normalizedCapacity --;
-            normalizedCapacity |= normalizedCapacity >>>  1;
-            normalizedCapacity |= normalizedCapacity >>>  2;
-            normalizedCapacity |= normalizedCapacity >>>  4;
-            normalizedCapacity |= normalizedCapacity >>>  8;
-            normalizedCapacity |= normalizedCapacity >>> 16;
-            normalizedCapacity ++;
+    /**
+     * Frees everything that was collected since the outermost {@link #beginFreeBatch()}.
+     */
+    static void endFreeBatch() {
+        FreeBatch batch = FREE_BATCH.get();
+        assert batch.depth > 0;
+        if (--batch.depth == 0) {
+            batch.flush();
+        }
+    }
 
-            if (normalizedCapacity < 0) {
-                normalizedCapacity >>>= 1;
+    /**
+     * Destroys all chunks of this arena that are not used at all and were not used for at least {@code idleNanos}.
+     * Returns the number of destroyed chunks.
+     */
+    int releaseEmptyChunks(long idleNanos) {
+        long nowNanos = System.nanoTime();
+        final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            // Usually there is nothing to release, so check first without blocking the allocations of other threads.
+            // Only qInit may hold chunks that are not used at all, the other lists destroy them once they are empty.
+            if (chunkAllocations.value() - chunkDestructions.value() <= minChunks ||
+                    !qInit.hasEmptyChunks(nowNanos, idleNanos)) {
+                return 0;
             }
+        } finally {
+            readLock.unlock();
+        }
 
-            return normalizedCapacity;
+        List<PoolChunk<T>> released = new ArrayList<PoolChunk<T>>(1);
+        final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            // Keep as many chunks as were preallocated.
+            int max = (int) (chunkAllocations.value() - chunkDestructions.value()) - minChunks;
+            qInit.releaseEmptyChunks(nowNanos, idleNanos, max, released);
+        } finally {
+            writeLock.unlock();
         }
+        for (int i = 0; i < released.size(); i++) {
+            // destroyChunk not need to be called while holding the lock.
+            destroyChunk(released.get(i));
+            chunkDestructions.increment();
+        }
+        return released.size();
+    }
 
-        // Quantum-spaced
-        if ((reqCapacity & 15) == 0) {
-            return reqCapacity;
+    /**
+     * Adds the hits and misses a thread cache observed for {@code sizeIdx} to the metrics of this arena.
+     */
+    void recordThreadCacheStats(int sizeIdx, int hits, int misses) {
+        if (hits > 0) {
+            threadCacheHits[sizeIdx].add(hits);
+        }
+        if (misses > 0) {
+            threadCacheMisses[sizeIdx].add(misses);
         }
+    }
 
-        return (reqCapacity & ~15) + 16;
+    /**
+     * Allocates and pre-touches {@code numChunks} chunks up front so the first allocations do not need to pay for
+     * creating them and for the page faults. From now on {@link #releaseEmptyChunks(long)} keeps at least
+     * {@code numChunks} chunks in this arena.
+     */
+    void preallocateChunks(int numChunks) {
+        final ReentrantReadWriteLock.WriteLock writeLock = lock.writeLock();
+        writeLock.lock();
+        try {
+            for (int i = 0; i < numChunks; i++) {
+                PoolChunk<T> c = newChunk(pageSize, nPSizes, pageShifts, chunkSize);
+                preTouch(c);
+                c.emptySinceNanos = System.nanoTime();
+                qInit.add(c);
+                chunkAllocations.increment();
+                minChunks++;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    PoolSubpage<T> findSubpagePoolHead(int sizeIdx) {
+        return smallSubpagePools[sizeIdx];
     }
 
     void reallocate(PooledByteBuf<T> buf, int newCapacity, boolean freeOldMemory) {
@@ -400,9 +566,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return numThreadCaches.get();
     }
 
+    @Deprecated
     @Override
     public int numTinySubpages() {
-        return tinySubpagePools.length;
+        return 0;
     }
 
     @Override
@@ -415,9 +582,10 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         return chunkListMetrics.size();
     }
 
+    @Deprecated
     @Override
     public List<PoolSubpageMetric> tinySubpages() {
-        return subPageMetricList(tinySubpagePools);
+        return Collections.emptyList();
     }
 
     @Override
@@ -451,16 +619,13 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public long numAllocations() {
-        final long allocsNormal;
-        synchronized (this) {
-            allocsNormal = allocationsNormal;
-        }
-        return allocationsTiny.value() + allocationsSmall.value() + allocsNormal + allocationsHuge.value();
+        return allocationsSmall.value() + allocationsNormal.value() + allocationsHuge.value();
     }
 
+    @Deprecated
     @Override
     public long numTinyAllocations() {
-        return allocationsTiny.value();
+        return 0;
     }
 
     @Override
@@ -469,32 +634,29 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     @Override
-    public synchronized long numNormalAllocations() {
-        return allocationsNormal;
+    public long numNormalAllocations() {
+        return allocationsNormal.value();
     }
 
     @Override
     public long numDeallocations() {
-        final long deallocs;
-        synchronized (this) {
-            deallocs = deallocationsTiny + deallocationsSmall + deallocationsNormal;
-        }
-        return deallocs + deallocationsHuge.value();
+        return deallocationsSmall.value() + deallocationsNormal.value() + deallocationsHuge.value();
     }
 
+    @Deprecated
     @Override
-    public synchronized long numTinyDeallocations() {
-        return deallocationsTiny;
+    public long numTinyDeallocations() {
+        return 0;
     }
 
     @Override
-    public synchronized long numSmallDeallocations() {
-        return deallocationsSmall;
+    public long numSmallDeallocations() {
+        return deallocationsSmall.value();
     }
 
     @Override
-    public synchronized long numNormalDeallocations() {
-        return deallocationsNormal;
+    public long numNormalDeallocations() {
+        return deallocationsNormal.value();
     }
 
     @Override
@@ -509,17 +671,15 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public  long numActiveAllocations() {
-        long val = allocationsTiny.value() + allocationsSmall.value() + allocationsHuge.value()
-                - deallocationsHuge.value();
-        synchronized (this) {
-            val += allocationsNormal - (deallocationsTiny + deallocationsSmall + deallocationsNormal);
-        }
+        long val = allocationsSmall.value() + allocationsNormal.value() + allocationsHuge.value()
+                - deallocationsSmall.value() - deallocationsNormal.value() - deallocationsHuge.value();
         return max(val, 0);
     }
 
+    @Deprecated
     @Override
     public long numActiveTinyAllocations() {
-        return max(numTinyAllocations() - numTinyDeallocations(), 0);
+        return 0;
     }
 
     @Override
@@ -529,10 +689,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     @Override
     public long numActiveNormalAllocations() {
-        final long val;
-        synchronized (this) {
-            val = allocationsNormal - deallocationsNormal;
-        }
+        long val = allocationsNormal.value() - deallocationsNormal.value();
         return max(val, 0);
     }
 
@@ -542,26 +699,92 @@ abstract class PoolArena<T> implements PoolArenaMetric {
     }
 
     @Override
-    public long numActiveBytes() {
-        long val = activeBytesHuge.value();
-        synchronized (this) {
-            for (int i = 0; i < chunkListMetrics.size(); i++) {
-                for (PoolChunkMetric m: chunkListMetrics.get(i)) {
-                    val += m.chunkSize();
-                }
-            }
+    public long numThreadCacheGrows() {
+        return threadCacheGrows.value();
+    }
+
+    @Override
+    public long numThreadCacheShrinks() {
+        return threadCacheShrinks.value();
+    }
+
+    @Override
+    public long numThreadCacheCapacityBytes() {
+        return max(0, threadCacheCapacityBytes.value());
+    }
+
+    @Override
+    public long numThreadCacheHits() {
+        return sum(threadCacheHits);
+    }
+
+    @Override
+    public long numThreadCacheHits(int sizeIdx) {
+        checkSizeIdx(sizeIdx);
+        return threadCacheHits[sizeIdx].value();
+    }
+
+    @Override
+    public long numThreadCacheMisses() {
+        return sum(threadCacheMisses);
+    }
+
+    @Override
+    public long numThreadCacheMisses(int sizeIdx) {
+        checkSizeIdx(sizeIdx);
+        return threadCacheMisses[sizeIdx].value();
+    }
+
+    private void checkSizeIdx(int sizeIdx) {
+        if (sizeIdx < 0 || sizeIdx >= nSizes) {
+            throw new IllegalArgumentException("sizeIdx: " + sizeIdx + " (expected: 0-" + (nSizes - 1) + ')');
         }
+    }
+
+    private static long sum(LongCounter[] counters) {
+        long val = 0;
+        for (LongCounter counter: counters) {
+            val += counter.value();
+        }
+        return val;
+    }
+
+    @Override
+    public long numChunkAllocations() {
+        return chunkAllocations.value();
+    }
+
+    @Override
+    public long numChunkDestructions() {
+        return chunkDestructions.value();
+    }
+
+    @Override
+    public long numActiveBytes() {
+        // All pooled chunks have the same size so there is no need to walk the chunk lists under the lock.
+        long val = activeBytesHuge.value() + (chunkAllocations.value() - chunkDestructions.value()) * chunkSize;
         return max(0, val);
     }
 
-    protected abstract PoolChunk<T> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize);
+    protected abstract PoolChunk<T> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize);
     protected abstract PoolChunk<T> newUnpooledChunk(int capacity);
     protected abstract PooledByteBuf<T> newByteBuf(int maxCapacity);
     protected abstract void memoryCopy(T src, int srcOffset, T dst, int dstOffset, int length);
     protected abstract void destroyChunk(PoolChunk<T> chunk);
+    protected abstract void preTouch(PoolChunk<T> chunk);
 
     @Override
-    public synchronized String toString() {
+    public String toString() {
+        final ReentrantReadWriteLock.ReadLock readLock = lock.readLock();
+        readLock.lock();
+        try {
+            return toString0();
+        } finally {
+            readLock.unlock();
+        }
+    }
+
+    private String toString0() {
         StringBuilder buf = new StringBuilder()
             .append("Chunk(s) at 0~25%:")
             .append(StringUtil.NEWLINE)
@@ -587,10 +810,7 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             .append(StringUtil.NEWLINE)
             .append(q100)
             .append(StringUtil.NEWLINE)
-            .append("tiny subpages:");
-        appendPoolSubPages(buf, tinySubpagePools);
-        buf.append(StringUtil.NEWLINE)
-           .append("small subpages:");
+            .append("small subpages:");
         appendPoolSubPages(buf, smallSubpagePools);
         buf.append(StringUtil.NEWLINE);
 
@@ -624,7 +844,6 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             super.finalize();
         } finally {
             destroyPoolSubPages(smallSubpagePools);
-            destroyPoolSubPages(tinySubpagePools);
             destroyPoolChunkLists(qInit, q000, q025, q050, q075, q100);
         }
     }
@@ -641,10 +860,99 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
     }
 
+    /**
+     * The frees a thread collected between {@link #beginFreeBatch()} and {@link #endFreeBatch()}. They are grouped by
+     * arena and chunk when flushed, so every arena and every chunk is locked once instead of once per handle.
+     */
+    static final class FreeBatch {
+        // Flush early so a very long batch does not keep too much memory away from other threads.
+        private static final int MAX_SIZE = 1024;
+
+        int depth;
+        private PoolChunk<?>[] chunks = new PoolChunk<?>[16];
+        private long[] handles = new long[16];
+        private int[] normCapacities = new int[16];
+        private int size;
+
+        void add(PoolChunk<?> chunk, long handle, int normCapacity) {
+            if (size == chunks.length) {
+                if (size == MAX_SIZE) {
+                    flush();
+                } else {
+                    int newLength = size << 1;
+                    chunks = Arrays.copyOf(chunks, newLength);
+                    handles = Arrays.copyOf(handles, newLength);
+                    normCapacities = Arrays.copyOf(normCapacities, newLength);
+                }
+            }
+            chunks[size] = chunk;
+            handles[size] = handle;
+            normCapacities[size] = normCapacity;
+            size++;
+        }
+
+        void flush() {
+            final int size = this.size;
+            Throwable cause = null;
+            for (int start = 0; start < size;) {
+                PoolArena<?> arena = chunks[start].arena;
+                int end = group(start, size, true);
+                for (int i = start; i < end;) {
+                    i = group(i, end, false);
+                }
+                try {
+                    arena.freeChunks(chunks, handles, normCapacities, start, end);
+                } catch (Throwable t) {
+                    // Still free the other arenas, their handles would be lost otherwise.
+                    if (cause == null) {
+                        cause = t;
+                    }
+                }
+                start = end;
+            }
+            Arrays.fill(chunks, 0, size, null);
+            this.size = 0;
+            if (cause != null) {
+                PlatformDependent.throwException(cause);
+            }
+        }
+
+        /**
+         * Moves all entries between {@code from} and {@code to} that belong to the same arena, or the same chunk, as
+         * the entry at {@code from} right behind it and returns the index after the last of them.
+         */
+        private int group(int from, int to, boolean byArena) {
+            PoolChunk<?> first = chunks[from];
+            int end = from + 1;
+            for (int i = end; i < to; i++) {
+                PoolChunk<?> chunk = chunks[i];
+                if (byArena ? chunk.arena == first.arena : chunk == first) {
+                    if (i != end) {
+                        swap(i, end);
+                    }
+                    end++;
+                }
+            }
+            return end;
+        }
+
+        private void swap(int i, int j) {
+            PoolChunk<?> chunk = chunks[i];
+            chunks[i] = chunks[j];
+            chunks[j] = chunk;
+            long handle = handles[i];
+            handles[i] = handles[j];
+            handles[j] = handle;
+            int normCapacity = normCapacities[i];
+            normCapacities[i] = normCapacities[j];
+            normCapacities[j] = normCapacity;
+        }
+    }
+
     static final class HeapArena extends PoolArena<byte[]> {
 
-        HeapArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        HeapArena(PooledByteBufAllocator parent, int pageSize, int pageShifts, int chunkSize) {
+            super(parent, pageSize, pageShifts, chunkSize);
         }
 
         @Override
@@ -653,13 +961,16 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<byte[]> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            return new PoolChunk<byte[]>(this, new byte[chunkSize], pageSize, maxOrder, pageShifts, chunkSize);
+        protected PoolChunk<byte[]> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize) {
+            // The content of a chunk is undefined until a buffer writes to it, so there is no need to zero it.
+            byte[] memory = PlatformDependent.allocateUninitializedArray(chunkSize);
+            return new PoolChunk<byte[]>(this, memory, memory, pageSize, pageShifts, chunkSize, maxPageIdx);
         }
 
         @Override
         protected PoolChunk<byte[]> newUnpooledChunk(int capacity) {
-            return new PoolChunk<byte[]>(this, new byte[capacity], capacity);
+            byte[] memory = PlatformDependent.allocateUninitializedArray(capacity);
+            return new PoolChunk<byte[]>(this, memory, memory, capacity);
         }
 
         @Override
@@ -667,6 +978,12 @@ abstract class PoolArena<T> implements PoolArenaMetric {
             // Rely on GC.
         }
 
+        @Override
+        protected void preTouch(PoolChunk<byte[]> chunk) {
+            // Never called, heap arenas are not preallocated. Besides, chunk arrays of 1 MiB and more are allocated
+            // outside the TLAB, where the JVM zeroes them even if allocateUninitializedArray is used.
+        }
+
         @Override
         protected PooledByteBuf<byte[]> newByteBuf(int maxCapacity) {
             return HAS_UNSAFE ? PooledUnsafeHeapByteBuf.newUnsafeInstance(maxCapacity)
@@ -685,8 +1002,14 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
     static final class DirectArena extends PoolArena<ByteBuffer> {
 
-        DirectArena(PooledByteBufAllocator parent, int pageSize, int maxOrder, int pageShifts, int chunkSize) {
-            super(parent, pageSize, maxOrder, pageShifts, chunkSize);
+        // Write one byte per OS page when pre-touching a chunk.
+        private static final int PRE_TOUCH_STRIDE = 4096;
+
+        private final int chunkAlignment;
+
+        DirectArena(PooledByteBufAllocator parent, int pageSize, int pageShifts, int chunkSize, int chunkAlignment) {
+            super(parent, pageSize, pageShifts, chunkSize);
+            this.chunkAlignment = chunkAlignment;
         }
 
         @Override
@@ -695,15 +1018,28 @@ abstract class PoolArena<T> implements PoolArenaMetric {
         }
 
         @Override
-        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxOrder, int pageShifts, int chunkSize) {
+        protected PoolChunk<ByteBuffer> newChunk(int pageSize, int maxPageIdx, int pageShifts, int chunkSize) {
+            if (chunkAlignment == 0) {
+                ByteBuffer memory = allocateDirect(chunkSize);
+                return new PoolChunk<ByteBuffer>(this, memory, memory, pageSize, pageShifts, chunkSize, maxPageIdx);
+            }
+
+            // Over-allocate so the chunk can start at an aligned address. With allocateDirectNoCleaner the slack is
+            // never written to, so the OS does not need to back it with memory. ByteBuffer.allocateDirect zeroes the
+            // whole buffer though, so there the slack costs memory as well.
+            ByteBuffer base = allocateDirect(chunkSize + chunkAlignment - 1);
+            long address = PlatformDependent.directBufferAddress(base);
+            int adjustment = (int) (-address & (chunkAlignment - 1));
+            ByteBuffer memory = base.duplicate();
+            memory.position(adjustment).limit(adjustment + chunkSize);
             return new PoolChunk<ByteBuffer>(
-                    this, allocateDirect(chunkSize),
-                    pageSize, maxOrder, pageShifts, chunkSize);
+                    this, base, memory.slice(), pageSize, pageShifts, chunkSize, maxPageIdx);
         }
 
         @Override
         protected PoolChunk<ByteBuffer> newUnpooledChunk(int capacity) {
-            return new PoolChunk<ByteBuffer>(this, allocateDirect(capacity), capacity);
+            ByteBuffer memory = allocateDirect(capacity);
+            return new PoolChunk<ByteBuffer>(this, memory, memory, capacity);
         }
 
         private static ByteBuffer allocateDirect(int capacity) {
@@ -713,10 +1049,23 @@ abstract class PoolArena<T> implements PoolArenaMetric {
 
         @Override
         protected void destroyChunk(PoolChunk<ByteBuffer> chunk) {
+            ByteBuffer base = (ByteBuffer) chunk.base;
             if (PlatformDependent.useDirectBufferNoCleaner()) {
-                PlatformDependent.freeDirectNoCleaner(chunk.memory);
+                PlatformDependent.freeDirectNoCleaner(base);
             } else {
-                PlatformDependent.freeDirectBuffer(chunk.memory);
+                PlatformDependent.freeDirectBuffer(base);
+            }
+        }
+
+        @Override
+        protected void preTouch(PoolChunk<ByteBuffer> chunk) {
+            if (!PlatformDependent.useDirectBufferNoCleaner()) {
+                // ByteBuffer.allocateDirect already zeroed the memory.
+                return;
+            }
+            ByteBuffer memory = chunk.memory;
+            for (int i = 0; i < memory.capacity(); i += PRE_TOUCH_STRIDE) {
+                memory.put(i, (byte) 0);
             }
         }
 
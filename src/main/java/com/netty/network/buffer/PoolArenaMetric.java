@@ -21,7 +21,7 @@ import java.util.List;
 /**
  * Expose metrics for an arena.
  */
-public interface PoolArenaMetric {
+public interface PoolArenaMetric extends SizeClassesMetric {
 
     /**
      * Returns the number of thread caches backed by this arena.
@@ -30,7 +30,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns the number of tiny sub-pages for the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     int numTinySubpages();
 
     /**
@@ -45,7 +48,10 @@ public interface PoolArenaMetric {
 
     /**
      * Returns an unmodifiable {@link List} which holds {@link PoolSubpageMetric}s for tiny sub-pages.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     List<PoolSubpageMetric> tinySubpages();
 
     /**
@@ -65,7 +71,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny allocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyAllocations();
 
     /**
@@ -90,7 +99,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of tiny deallocations done via the arena.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numTinyDeallocations();
 
     /**
@@ -115,7 +127,10 @@ public interface PoolArenaMetric {
 
     /**
      * Return the number of currently active tiny allocations.
+     *
+     * @deprecated Tiny sub-pages have been merged into small sub-pages.
      */
+    @Deprecated
     long numActiveTinyAllocations();
 
     /**
@@ -133,6 +148,64 @@ public interface PoolArenaMetric {
      */
     long numActiveHugeAllocations();
 
+    /**
+     * Return the number of times a thread cache backed by this arena increased the capacity of one of its size
+     * classes because it missed too often.
+     */
+    long numThreadCacheGrows();
+
+    /**
+     * Return the number of times a thread cache backed by this arena decreased the capacity of one of its size
+     * classes because it was not used enough.
+     */
+    long numThreadCacheShrinks();
+
+    /**
+     * Return the number of bytes the thread caches backed by this arena may hold at most with their current
+     * capacities.
+     */
+    long numThreadCacheCapacityBytes();
+
+    /**
+     * Return the number of allocations served by the thread caches backed by this arena. A thread cache publishes
+     * its hits whenever it is trimmed or freed, so this value may lag behind.
+     */
+    long numThreadCacheHits();
+
+    /**
+     * Return the number of allocations of the size class {@code sizeIdx} served by the thread caches backed by this
+     * arena.
+     *
+     * @see #numThreadCacheHits()
+     * @see #size2SizeIdx(int)
+     */
+    long numThreadCacheHits(int sizeIdx);
+
+    /**
+     * Return the number of allocations the thread caches backed by this arena could not serve. A thread cache
+     * publishes its misses whenever it is trimmed or freed, so this value may lag behind.
+     */
+    long numThreadCacheMisses();
+
+    /**
+     * Return the number of allocations of the size class {@code sizeIdx} the thread caches backed by this arena could
+     * not serve.
+     *
+     * @see #numThreadCacheMisses()
+     * @see #size2SizeIdx(int)
+     */
+    long numThreadCacheMisses(int sizeIdx);
+
+    /**
+     * Return the number of chunks the arena allocated. Chunks of huge allocations are not included.
+     */
+    long numChunkAllocations();
+
+    /**
+     * Return the number of chunks the arena destroyed. Chunks of huge allocations are not included.
+     */
+    long numChunkDestructions();
+
     /**
      * Return the number of active bytes that are currently allocated by the arena.
      */
@@ -23,16 +23,20 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static java.lang.Math.*;
 
 final class PoolChunkList<T> implements PoolChunkListMetric {
     private static final Iterator<PoolChunkMetric> EMPTY_METRICS = Collections.<PoolChunkMetric>emptyList().iterator();
+    private final PoolArena<T> arena;
     private final PoolChunkList<T> nextList;
     private final int minUsage;
     private final int maxUsage;
     private final int maxCapacity;
     private PoolChunk<T> head;
+    private final int freeMinThreshold;
+    private final int freeMaxThreshold;
 
     // This is only update once when create the linked like list of PoolChunkList in PoolArena constructor.
     private PoolChunkList<T> prevList;
@@ -40,12 +44,31 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
     // TODO: Test if adding padding helps under contention
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
-    PoolChunkList(PoolChunkList<T> nextList, int minUsage, int maxUsage, int chunkSize) {
+    PoolChunkList(PoolArena<T> arena, PoolChunkList<T> nextList, int minUsage, int maxUsage, int chunkSize) {
         assert minUsage <= maxUsage;
+        this.arena = arena;
         this.nextList = nextList;
         this.minUsage = minUsage;
         this.maxUsage = maxUsage;
         maxCapacity = calculateMaxCapacity(minUsage, chunkSize);
+
+        // the thresholds are aligned with PoolChunk.usage() logic:
+        // 1) basic logic: usage() = 100 - freeBytes * 100L / chunkSize
+        //    so, for example: (usage() >= maxUsage) condition can be transformed in the following way:
+        //      100 - freeBytes * 100L / chunkSize >= maxUsage
+        //      freeBytes <= chunkSize * (100 - maxUsage) / 100
+        //      let freeMinThreshold = chunkSize * (100 - maxUsage) / 100, then freeBytes <= freeMinThreshold
+        //
+        //  2) usage() returns an int value and has a floor rounding during a calculation,
+        //     to be aligned absolute thresholds should be shifted for "the rounding step":
+        //       freeBytes * 100 / chunkSize < 1
+        //       the condition can be converted to: freeBytes < 1 * chunkSize / 100
+        //     this is why we have + 0.99999999 shifts. A example why just +1 shift cannot be used:
+        //       freeBytes = 16777216 == freeMaxThreshold: 16777216, usage = 0 < minUsage: 1, chunkSize: 16777216
+        //     At the same time we want to have zero thresholds in case of (maxUsage == 100) and (minUsage == 100).
+        //
+        freeMinThreshold = (maxUsage == 100) ? 0 : (int) (chunkSize * (100.0 - maxUsage + 0.99999999) / 100L);
+        freeMaxThreshold = (minUsage == 100) ? 0 : (int) (chunkSize * (100.0 - minUsage + 0.99999999) / 100L);
     }
 
     /**
@@ -73,34 +96,66 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         this.prevList = prevList;
     }
 
-    boolean allocate(PooledByteBuf<T> buf, int reqCapacity, int normCapacity) {
-        if (head == null || normCapacity > maxCapacity) {
+    /**
+     * Allocates out of the first {@link PoolChunk} in this list that can serve the request and returns it, or
+     * {@code null} if none could. Must be called while holding the arena read or write lock.
+     */
+    PoolChunk<T> allocate(PooledByteBuf<T> buf, int reqCapacity, int sizeIdx, PoolThreadCache threadCache) {
+        int normCapacity = arena.sizeIdx2size(sizeIdx);
+        if (normCapacity > maxCapacity) {
             // Either this PoolChunkList is empty or the requested capacity is larger then the capacity which can
             // be handled by the PoolChunks that are contained in this PoolChunkList.
-            return false;
+            return null;
         }
 
-        for (PoolChunk<T> cur = head;;) {
-            long handle = cur.allocate(normCapacity);
-            if (handle < 0) {
-                cur = cur.next;
-                if (cur == null) {
-                    return false;
-                }
-            } else {
-                cur.initBuf(buf, handle, reqCapacity);
-                if (cur.usage() >= maxUsage) {
-                    remove(cur);
-                    nextList.add(cur);
-                }
-                return true;
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            if (cur.allocate(buf, reqCapacity, sizeIdx, threadCache)) {
+                return cur;
             }
         }
+        return null;
+    }
+
+    /**
+     * Frees the {@code handle} back to the {@link PoolChunk}. Returns {@code false} if the chunk may not belong to
+     * this list anymore and so needs to be passed to {@link #relocate(PoolChunk)}. Must be called while holding the
+     * arena read or write lock.
+     */
+    boolean free(PoolChunk<T> chunk, long handle, int normCapacity) {
+        chunk.free(handle, normCapacity);
+        return chunk.freeBytes <= freeMaxThreshold;
     }
 
-    boolean free(PoolChunk<T> chunk, long handle) {
-        chunk.free(handle);
-        if (chunk.usage() < minUsage) {
+    /**
+     * Frees a batch of handles which all belong to the same chunk, see {@link PoolChunk#free(long[], int[], int, int)}
+     * and {@link #free(PoolChunk, long, int)}.
+     */
+    boolean free(PoolChunk<T> chunk, long[] handles, int[] normCapacities, int from, int to) {
+        chunk.free(handles, normCapacities, from, to);
+        return chunk.freeBytes <= freeMaxThreshold;
+    }
+
+    /**
+     * Returns {@code true} if the usage of the {@link PoolChunk} is within the bounds of this list.
+     */
+    boolean fits(PoolChunk<T> chunk) {
+        int freeBytes = chunk.freeBytes;
+        return freeBytes > freeMinThreshold && freeBytes <= freeMaxThreshold;
+    }
+
+    /**
+     * Moves the {@link PoolChunk}, which must belong to this list, to the list that matches its current usage.
+     * Returns {@code false} if the chunk is not used anymore and was unlinked so it can be destroyed.
+     * Must be called while holding the arena write lock.
+     */
+    boolean relocate(PoolChunk<T> chunk) {
+        assert chunk.parent == this;
+        if (chunk.freeBytes <= freeMinThreshold) {
+            remove(chunk);
+            nextList.add(chunk);
+            return true;
+        }
+        if (chunk.freeBytes > freeMaxThreshold) {
             remove(chunk);
             // Move the PoolChunk down the PoolChunkList linked-list.
             return move0(chunk);
@@ -109,9 +164,9 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
     }
 
     private boolean move(PoolChunk<T> chunk) {
-        assert chunk.usage() < maxUsage;
+        assert chunk.freeBytes > freeMinThreshold;
 
-        if (chunk.usage() < minUsage) {
+        if (chunk.freeBytes > freeMaxThreshold) {
             // Move the PoolChunk down the PoolChunkList linked-list.
             return move0(chunk);
         }
@@ -129,14 +184,46 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
         if (prevList == null) {
             // There is no previous PoolChunkList so return false which result in having the PoolChunk destroyed and
             // all memory associated with the PoolChunk will be released.
-            assert chunk.usage() == 0;
+            assert chunk.freeBytes == chunk.chunkSize();
+            chunk.parent = null;
             return false;
         }
         return prevList.move(chunk);
     }
 
+    /**
+     * Returns {@code true} if this list holds a {@link PoolChunk} that is not used at all and was not used for at least
+     * {@code idleNanos}. If called while only holding the arena read lock, this is only a hint as other threads may
+     * allocate from or free to the chunks concurrently.
+     */
+    boolean hasEmptyChunks(long nowNanos, long idleNanos) {
+        for (PoolChunk<T> cur = head; cur != null; cur = cur.next) {
+            if (cur.freeBytes == cur.chunkSize() && nowNanos - cur.emptySinceNanos >= idleNanos) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Unlinks up to {@code max} {@link PoolChunk}s of this list that are not used at all and were not used for at
+     * least {@code idleNanos}, and adds them to {@code released} so they can be destroyed once the lock was released.
+     * Must be called while holding the arena write lock.
+     */
+    void releaseEmptyChunks(long nowNanos, long idleNanos, int max, List<PoolChunk<T>> released) {
+        for (PoolChunk<T> cur = head; cur != null && released.size() < max;) {
+            PoolChunk<T> next = cur.next;
+            if (cur.freeBytes == cur.chunkSize() && nowNanos - cur.emptySinceNanos >= idleNanos) {
+                remove(cur);
+                cur.parent = null;
+                released.add(cur);
+            }
+            cur = next;
+        }
+    }
+
     void add(PoolChunk<T> chunk) {
-        if (chunk.usage() >= maxUsage) {
+        if (chunk.freeBytes <= freeMinThreshold) {
             nextList.add(chunk);
             return;
         }
@@ -191,36 +278,47 @@ final class PoolChunkList<T> implements PoolChunkListMetric {
 
     @Override
     public Iterator<PoolChunkMetric> iterator() {
-        if (head == null) {
-            return EMPTY_METRICS;
-        }
-        List<PoolChunkMetric> metrics = new ArrayList<PoolChunkMetric>();
-        for (PoolChunk<T> cur = head;;) {
-            metrics.add(cur);
-            cur = cur.next;
-            if (cur == null) {
-                break;
+        final ReentrantReadWriteLock.ReadLock readLock = arena.lock.readLock();
+        readLock.lock();
+        try {
+            if (head == null) {
+                return EMPTY_METRICS;
             }
+            List<PoolChunkMetric> metrics = new ArrayList<PoolChunkMetric>();
+            for (PoolChunk<T> cur = head;;) {
+                metrics.add(cur);
+                cur = cur.next;
+                if (cur == null) {
+                    break;
+                }
+            }
+            return metrics.iterator();
+        } finally {
+            readLock.unlock();
         }
-        return metrics.iterator();
     }
 
     @Override
     public String toString() {
-        if (head == null) {
-            return "none";
-        }
-
         StringBuilder buf = new StringBuilder();
-        for (PoolChunk<T> cur = head;;) {
-            buf.append(cur);
-            cur = cur.next;
-            if (cur == null) {
-                break;
+        final ReentrantReadWriteLock.ReadLock readLock = arena.lock.readLock();
+        readLock.lock();
+        try {
+            if (head == null) {
+                return "none";
             }
-            buf.append(StringUtil.NEWLINE);
-        }
 
+            for (PoolChunk<T> cur = head;;) {
+                buf.append(cur);
+                cur = cur.next;
+                if (cur == null) {
+                    break;
+                }
+                buf.append(StringUtil.NEWLINE);
+            }
+        } finally {
+            readLock.unlock();
+        }
         return buf.toString();
     }
 
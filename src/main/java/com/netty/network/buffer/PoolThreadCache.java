@@ -33,6 +33,10 @@ import java.util.Queue;
  * <a href="http://people.freebsd.org/~jasone/jemalloc/bsdcan2006/jemalloc.pdf">jemalloc</a> and the descripted
  * technics of <a href="https://www.facebook.com/notes/facebook-engineering/scalable-memory-allocation-using-jemalloc/
  * 480222803919">Scalable memory allocation using jemalloc</a>.
+ * <p>
+ * Each size class starts with a small capacity which is adjusted on every {@link #trim()} based on the hits and
+ * misses observed since the previous trim: size classes that miss often grow (up to the configured cache size) as
+ * long as the per-thread byte budget allows it, size classes that are rarely used shrink and release their entries.
  */
 final class PoolThreadCache {
 
@@ -41,18 +45,17 @@ final class PoolThreadCache {
     final PoolArena<byte[]> heapArena;
     final PoolArena<ByteBuffer> directArena;
 
-    // Hold the caches for the different size classes, which are tiny, small and normal.
-    private final MemoryRegionCache<byte[]>[] tinySubPageHeapCaches;
+    // Hold the caches for the different size classes, which are small and normal.
     private final MemoryRegionCache<byte[]>[] smallSubPageHeapCaches;
-    private final MemoryRegionCache<ByteBuffer>[] tinySubPageDirectCaches;
     private final MemoryRegionCache<ByteBuffer>[] smallSubPageDirectCaches;
     private final MemoryRegionCache<byte[]>[] normalHeapCaches;
     private final MemoryRegionCache<ByteBuffer>[] normalDirectCaches;
 
-    // Used for bitshifting when calculate the index of normal caches later
-    private final int numShiftsNormalDirect;
-    private final int numShiftsNormalHeap;
     private final int freeSweepAllocationThreshold;
+    // Upper bound for the sum of the capacities (in bytes) of all caches of this thread.
+    private final long maxCachedBytes;
+    // Sum of the capacities (in bytes) of all caches of this thread, only accessed by the owning thread.
+    private long reservedBytes;
 
     private int allocations;
 
@@ -68,8 +71,8 @@ final class PoolThreadCache {
     //private long pad0, pad1, pad2, pad3, pad4, pad5, pad6, pad7;
 
     PoolThreadCache(PoolArena<byte[]> heapArena, PoolArena<ByteBuffer> directArena,
-                    int tinyCacheSize, int smallCacheSize, int normalCacheSize,
-                    int maxCachedBufferCapacity, int freeSweepAllocationThreshold) {
+                    int smallCacheSize, int normalCacheSize, int maxCachedBufferCapacity,
+                    int freeSweepAllocationThreshold, long maxCachedBytes) {
         if (maxCachedBufferCapacity < 0) {
             throw new IllegalArgumentException("maxCachedBufferCapacity: "
                     + maxCachedBufferCapacity + " (expected: >= 0)");
@@ -78,60 +81,56 @@ final class PoolThreadCache {
             throw new IllegalArgumentException("freeSweepAllocationThreshold: "
                     + freeSweepAllocationThreshold + " (expected: > 0)");
         }
+        if (maxCachedBytes < 0) {
+            throw new IllegalArgumentException("maxCachedBytes: "
+                    + maxCachedBytes + " (expected: >= 0)");
+        }
         this.freeSweepAllocationThreshold = freeSweepAllocationThreshold;
+        this.maxCachedBytes = maxCachedBytes;
         this.heapArena = heapArena;
         this.directArena = directArena;
         if (directArena != null) {
-            tinySubPageDirectCaches = createSubPageCaches(
-                    tinyCacheSize, PoolArena.numTinySubpagePools, PoolArena.SizeClass.Tiny);
             smallSubPageDirectCaches = createSubPageCaches(
-                    smallCacheSize, directArena.numSmallSubpagePools, PoolArena.SizeClass.Small);
+                    smallCacheSize, directArena.numSmallSubpagePools, directArena);
 
-            numShiftsNormalDirect = log2(directArena.pageSize);
             normalDirectCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, directArena);
 
             directArena.numThreadCaches.getAndIncrement();
         } else {
             // No directArea is configured so just null out all caches
-            tinySubPageDirectCaches = null;
             smallSubPageDirectCaches = null;
             normalDirectCaches = null;
-            numShiftsNormalDirect = -1;
         }
         if (heapArena != null) {
             // Create the caches for the heap allocations
-            tinySubPageHeapCaches = createSubPageCaches(
-                    tinyCacheSize, PoolArena.numTinySubpagePools, PoolArena.SizeClass.Tiny);
             smallSubPageHeapCaches = createSubPageCaches(
-                    smallCacheSize, heapArena.numSmallSubpagePools, PoolArena.SizeClass.Small);
+                    smallCacheSize, heapArena.numSmallSubpagePools, heapArena);
 
-            numShiftsNormalHeap = log2(heapArena.pageSize);
             normalHeapCaches = createNormalCaches(
                     normalCacheSize, maxCachedBufferCapacity, heapArena);
 
             heapArena.numThreadCaches.getAndIncrement();
         } else {
             // No heapArea is configured so just null out all caches
-            tinySubPageHeapCaches = null;
             smallSubPageHeapCaches = null;
             normalHeapCaches = null;
-            numShiftsNormalHeap = -1;
         }
 
+        initCapacities();
+
         // The thread-local cache will keep a list of pooled buffers which must be returned to
         // the pool when the thread is not alive anymore.
         ThreadDeathWatcher.watch(thread, freeTask);
     }
 
     private static <T> MemoryRegionCache<T>[] createSubPageCaches(
-            int cacheSize, int numCaches, PoolArena.SizeClass sizeClass) {
+            int cacheSize, int numCaches, PoolArena<T> area) {
         if (cacheSize > 0) {
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[numCaches];
             for (int i = 0; i < cache.length; i++) {
-                // TODO: maybe use cacheSize / cache.length
-                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, sizeClass);
+                cache[i] = new SubPageMemoryRegionCache<T>(cacheSize, area, area.sizeIdx2size(i));
             }
             return cache;
         } else {
@@ -139,16 +138,23 @@ final class PoolThreadCache {
         }
     }
 
+    // normal caches are indexed by sizeIdx - numSmallSubpagePools, covering sizes up to maxCachedBufferCapacity.
     private static <T> MemoryRegionCache<T>[] createNormalCaches(
             int cacheSize, int maxCachedBufferCapacity, PoolArena<T> area) {
-        if (cacheSize > 0) {
+        if (cacheSize > 0 && maxCachedBufferCapacity > 0) {
             int max = Math.min(area.chunkSize, maxCachedBufferCapacity);
-            int arraySize = Math.max(1, log2(max / area.pageSize) + 1);
+            // Create as many normal caches as we support based on how many sizeIdx we have and what the upper
+            // bound is that we want to cache in general.
+            int arraySize = 0;
+            for (int idx = area.numSmallSubpagePools; idx < area.nSizes && area.sizeIdx2size(idx) <= max; idx++) {
+                arraySize++;
+            }
 
             @SuppressWarnings("unchecked")
             MemoryRegionCache<T>[] cache = new MemoryRegionCache[arraySize];
             for (int i = 0; i < cache.length; i++) {
-                cache[i] = new NormalMemoryRegionCache<T>(cacheSize);
+                cache[i] = new NormalMemoryRegionCache<T>(
+                        cacheSize, area, area.sizeIdx2size(area.numSmallSubpagePools + i));
             }
             return cache;
         } else {
@@ -156,34 +162,18 @@ final class PoolThreadCache {
         }
     }
 
-    private static int log2(int val) {
-        int res = 0;
-        while (val > 1) {
-            val >>= 1;
-            res++;
-        }
-        return res;
-    }
-
-    /**
-     * Try to allocate a tiny buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
-     */
-    boolean allocateTiny(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForTiny(area, normCapacity), buf, reqCapacity);
-    }
-
     /**
      * Try to allocate a small buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
-    boolean allocateSmall(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForSmall(area, normCapacity), buf, reqCapacity);
+    boolean allocateSmall(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int sizeIdx) {
+        return allocate(cacheForSmall(area, sizeIdx), buf, reqCapacity);
     }
 
     /**
-     * Try to allocate a small buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
+     * Try to allocate a normal buffer out of the cache. Returns {@code true} if successful {@code false} otherwise
      */
-    boolean allocateNormal(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int normCapacity) {
-        return allocate(cacheForNormal(area, normCapacity), buf, reqCapacity);
+    boolean allocateNormal(PoolArena<?> area, PooledByteBuf<?> buf, int reqCapacity, int sizeIdx) {
+        return allocate(cacheForNormal(area, sizeIdx), buf, reqCapacity);
     }
 
     @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -192,7 +182,7 @@ final class PoolThreadCache {
             // no cache found so just return false here
             return false;
         }
-        boolean allocated = cache.allocate(buf, reqCapacity);
+        boolean allocated = cache.allocate(buf, reqCapacity, this);
         if (++ allocations >= freeSweepAllocationThreshold) {
             allocations = 0;
             trim();
@@ -206,21 +196,20 @@ final class PoolThreadCache {
      */
     @SuppressWarnings({ "unchecked", "rawtypes" })
     boolean add(PoolArena<?> area, PoolChunk chunk, long handle, int normCapacity, PoolArena.SizeClass sizeClass) {
-        MemoryRegionCache<?> cache = cache(area, normCapacity, sizeClass);
+        int sizeIdx = area.size2SizeIdx(normCapacity);
+        MemoryRegionCache<?> cache = cache(area, sizeIdx, sizeClass);
         if (cache == null) {
             return false;
         }
-        return cache.add(chunk, handle);
+        return cache.add(chunk, handle, normCapacity);
     }
 
-    private MemoryRegionCache<?> cache(PoolArena<?> area, int normCapacity, PoolArena.SizeClass sizeClass) {
+    private MemoryRegionCache<?> cache(PoolArena<?> area, int sizeIdx, PoolArena.SizeClass sizeClass) {
         switch (sizeClass) {
         case Normal:
-            return cacheForNormal(area, normCapacity);
+            return cacheForNormal(area, sizeIdx);
         case Small:
-            return cacheForSmall(area, normCapacity);
-        case Tiny:
-            return cacheForTiny(area, normCapacity);
+            return cacheForSmall(area, sizeIdx);
         default:
             throw new Error();
         }
@@ -235,17 +224,26 @@ final class PoolThreadCache {
     }
 
     private void free0() {
-        int numFreed = free(tinySubPageDirectCaches) +
-                free(smallSubPageDirectCaches) +
-                free(normalDirectCaches) +
-                free(tinySubPageHeapCaches) +
-                free(smallSubPageHeapCaches) +
-                free(normalHeapCaches);
+        int numFreed;
+        PoolArena.beginFreeBatch();
+        try {
+            numFreed = free(smallSubPageDirectCaches) +
+                    free(normalDirectCaches) +
+                    free(smallSubPageHeapCaches) +
+                    free(normalHeapCaches);
+        } finally {
+            PoolArena.endFreeBatch();
+        }
 
         if (numFreed > 0 && logger.isDebugEnabled()) {
             logger.debug("Freed {} thread-local buffer(s) from thread: {}", numFreed, thread.getName());
         }
 
+        release(smallSubPageDirectCaches);
+        release(normalDirectCaches);
+        release(smallSubPageHeapCaches);
+        release(normalHeapCaches);
+
         if (directArena != null) {
             directArena.numThreadCaches.getAndDecrement();
         }
@@ -274,16 +272,70 @@ final class PoolThreadCache {
         return cache.free();
     }
 
+    /**
+     * Gives every cache its initial capacity within {@link #maxCachedBytes}. Each cache starts with
+     * {@link MemoryRegionCache#INITIAL_CAPACITY} entries, or with fewer if the budget can not hold that many of
+     * every size class. If it can not even hold one of each, the smaller size classes get one entry and the others
+     * none, and they all grow from there on demand.
+     */
+    private void initCapacities() {
+        long bytesPerEntry = elemSizes(smallSubPageDirectCaches) + elemSizes(smallSubPageHeapCaches) +
+                elemSizes(normalDirectCaches) + elemSizes(normalHeapCaches);
+        int initialCapacity = MemoryRegionCache.INITIAL_CAPACITY;
+        while (initialCapacity > 1 && initialCapacity * bytesPerEntry > maxCachedBytes) {
+            initialCapacity >>>= 1;
+        }
+        initCapacities(smallSubPageDirectCaches, initialCapacity);
+        initCapacities(smallSubPageHeapCaches, initialCapacity);
+        initCapacities(normalDirectCaches, initialCapacity);
+        initCapacities(normalHeapCaches, initialCapacity);
+    }
+
+    private static long elemSizes(MemoryRegionCache<?>[] caches) {
+        if (caches == null) {
+            return 0;
+        }
+        long bytes = 0;
+        for (MemoryRegionCache<?> c: caches) {
+            bytes += c.elemSize;
+        }
+        return bytes;
+    }
+
+    private void initCapacities(MemoryRegionCache<?>[] caches, int initialCapacity) {
+        if (caches == null) {
+            return;
+        }
+        for (MemoryRegionCache<?> c: caches) {
+            if (reservedBytes + (long) initialCapacity * c.elemSize <= maxCachedBytes) {
+                c.initCapacity(initialCapacity);
+                reservedBytes += c.reservedBytes();
+            }
+        }
+    }
+
+    private static void release(MemoryRegionCache<?>[] caches) {
+        if (caches == null) {
+            return;
+        }
+        for (MemoryRegionCache<?> c: caches) {
+            c.release();
+        }
+    }
+
     void trim() {
-        trim(tinySubPageDirectCaches);
-        trim(smallSubPageDirectCaches);
-        trim(normalDirectCaches);
-        trim(tinySubPageHeapCaches);
-        trim(smallSubPageHeapCaches);
-        trim(normalHeapCaches);
+        PoolArena.beginFreeBatch();
+        try {
+            trim(smallSubPageDirectCaches);
+            trim(normalDirectCaches);
+            trim(smallSubPageHeapCaches);
+            trim(normalHeapCaches);
+        } finally {
+            PoolArena.endFreeBatch();
+        }
     }
 
-    private static void trim(MemoryRegionCache<?>[] caches) {
+    private void trim(MemoryRegionCache<?>[] caches) {
         if (caches == null) {
             return;
         }
@@ -292,57 +344,69 @@ final class PoolThreadCache {
         }
     }
 
-    private static void trim(MemoryRegionCache<?> cache) {
+    private void trim(MemoryRegionCache<?> cache) {
         if (cache == null) {
             return;
         }
-        cache.trim();
+        cache.trim(this);
     }
 
-    private MemoryRegionCache<?> cacheForTiny(PoolArena<?> area, int normCapacity) {
-        int idx = PoolArena.tinyIdx(normCapacity);
-        if (area.isDirect()) {
-            return cache(tinySubPageDirectCaches, idx);
+    /**
+     * Reserves {@code bytes} of the per-thread budget for a cache that wants to grow. Returns {@code false} if the
+     * budget is exhausted.
+     */
+    boolean reserve(long bytes) {
+        if (reservedBytes + bytes > maxCachedBytes) {
+            return false;
         }
-        return cache(tinySubPageHeapCaches, idx);
+        reservedBytes += bytes;
+        return true;
+    }
+
+    /**
+     * Gives back {@code bytes} of the per-thread budget after a cache shrank.
+     */
+    void unreserve(long bytes) {
+        reservedBytes -= bytes;
+        assert reservedBytes >= 0;
     }
 
-    private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int normCapacity) {
-        int idx = PoolArena.smallIdx(normCapacity);
+    private MemoryRegionCache<?> cacheForSmall(PoolArena<?> area, int sizeIdx) {
         if (area.isDirect()) {
-            return cache(smallSubPageDirectCaches, idx);
+            return cache(smallSubPageDirectCaches, sizeIdx);
         }
-        return cache(smallSubPageHeapCaches, idx);
+        return cache(smallSubPageHeapCaches, sizeIdx);
     }
 
-    private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int normCapacity) {
+    private MemoryRegionCache<?> cacheForNormal(PoolArena<?> area, int sizeIdx) {
+        // We need to substract area.numSmallSubpagePools as sizeIdx is the overall index for all sizes.
+        int idx = sizeIdx - area.numSmallSubpagePools;
         if (area.isDirect()) {
-            int idx = log2(normCapacity >> numShiftsNormalDirect);
             return cache(normalDirectCaches, idx);
         }
-        int idx = log2(normCapacity >> numShiftsNormalHeap);
         return cache(normalHeapCaches, idx);
     }
 
     private static <T> MemoryRegionCache<T> cache(MemoryRegionCache<T>[] cache, int idx) {
-        if (cache == null || idx > cache.length - 1) {
+        if (cache == null || idx < 0 || idx > cache.length - 1) {
             return null;
         }
         return cache[idx];
     }
 
     /**
-     * Cache used for buffers which are backed by TINY or SMALL size.
+     * Cache used for buffers which are backed by SMALL size.
      */
     private static final class SubPageMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        SubPageMemoryRegionCache(int size, PoolArena.SizeClass sizeClass) {
-            super(size, sizeClass);
+        SubPageMemoryRegionCache(int size, PoolArena<T> arena, int elemSize) {
+            super(size, PoolArena.SizeClass.Small, arena, elemSize);
         }
 
         @Override
         protected void initBuf(
-                PoolChunk<T> chunk, long handle, PooledByteBuf<T> buf, int reqCapacity) {
-            chunk.initBufWithSubpage(buf, handle, reqCapacity);
+                PoolChunk<T> chunk, long handle, PooledByteBuf<T> buf, int reqCapacity,
+                PoolThreadCache threadCache) {
+            chunk.initBufWithSubpage(buf, handle, reqCapacity, threadCache);
         }
     }
 
@@ -350,41 +414,69 @@ final class PoolThreadCache {
      * Cache used for buffers which are backed by NORMAL size.
      */
     private static final class NormalMemoryRegionCache<T> extends MemoryRegionCache<T> {
-        NormalMemoryRegionCache(int size) {
-            super(size, PoolArena.SizeClass.Normal);
+        NormalMemoryRegionCache(int size, PoolArena<T> arena, int elemSize) {
+            super(size, PoolArena.SizeClass.Normal, arena, elemSize);
         }
 
         @Override
         protected void initBuf(
-                PoolChunk<T> chunk, long handle, PooledByteBuf<T> buf, int reqCapacity) {
-            chunk.initBuf(buf, handle, reqCapacity);
+                PoolChunk<T> chunk, long handle, PooledByteBuf<T> buf, int reqCapacity,
+                PoolThreadCache threadCache) {
+            chunk.initBuf(buf, handle, reqCapacity, threadCache);
         }
     }
 
     private abstract static class MemoryRegionCache<T> {
+        // The capacity every cache starts with, it grows from here if the size class is used a lot.
+        static final int INITIAL_CAPACITY = 8;
+        // Grow if at least 1 / 2^MISS_RATIO_SHIFT of the hits since the last trim missed the cache.
+        private static final int MISS_RATIO_SHIFT = 3;
+
         private final int size;
         private final Queue<Entry<T>> queue;
         private final PoolArena.SizeClass sizeClass;
-        private int allocations;
-
-        MemoryRegionCache(int size, PoolArena.SizeClass sizeClass) {
+        private final PoolArena<T> arena;
+        final int elemSize;
+        private final int sizeIdx;
+        // The number of entries we are currently willing to hold, between 0 and size. Only modified by the owning
+        // thread, but read by other threads that free buffers into this cache.
+        private volatile int capacity;
+        // hits and misses since the last trim, only accessed by the owning thread.
+        private int hits;
+        private int misses;
+
+        MemoryRegionCache(int size, PoolArena.SizeClass sizeClass, PoolArena<T> arena, int elemSize) {
             this.size = MathUtil.safeFindNextPositivePowerOfTwo(size);
             queue = PlatformDependent.newFixedMpscQueue(this.size);
             this.sizeClass = sizeClass;
+            this.arena = arena;
+            this.elemSize = elemSize;
+            sizeIdx = arena.size2SizeIdx(elemSize);
+        }
+
+        /**
+         * Sets the capacity this cache starts with, which is {@code 0} until then.
+         */
+        final void initCapacity(int initialCapacity) {
+            capacity = Math.min(size, initialCapacity);
+            arena.threadCacheCapacityBytes.add(reservedBytes());
         }
 
         /**
          * Init the {@link PooledByteBuf} using the provided chunk and handle with the capacity restrictions.
          */
         protected abstract void initBuf(PoolChunk<T> chunk, long handle,
-                                        PooledByteBuf<T> buf, int reqCapacity);
+                                        PooledByteBuf<T> buf, int reqCapacity, PoolThreadCache threadCache);
 
         /**
          * Add to cache if not already full.
          */
         @SuppressWarnings("unchecked")
-        public final boolean add(PoolChunk<T> chunk, long handle) {
-            Entry<T> entry = newEntry(chunk, handle);
+        public final boolean add(PoolChunk<T> chunk, long handle, int normCapacity) {
+            if (queue.size() >= capacity) {
+                return false;
+            }
+            Entry<T> entry = newEntry(chunk, handle, normCapacity);
             boolean queued = queue.offer(entry);
             if (!queued) {
                 // If it was not possible to cache the chunk, immediately recycle the entry
@@ -397,16 +489,18 @@ final class PoolThreadCache {
         /**
          * Allocate something out of the cache if possible and remove the entry from the cache.
          */
-        public final boolean allocate(PooledByteBuf<T> buf, int reqCapacity) {
+        public final boolean allocate(PooledByteBuf<T> buf, int reqCapacity, PoolThreadCache threadCache) {
             Entry<T> entry = queue.poll();
             if (entry == null) {
+                // hits and misses are not thread-safe which is fine as this is only called from the same thread
+                // all time.
+                ++ misses;
                 return false;
             }
-            initBuf(entry.chunk, entry.handle, buf, reqCapacity);
+            initBuf(entry.chunk, entry.handle, buf, reqCapacity, threadCache);
             entry.recycle();
 
-            // allocations is not thread-safe which is fine as this is only called from the same thread all time.
-            ++ allocations;
+            ++ hits;
             return true;
         }
 
@@ -432,33 +526,78 @@ final class PoolThreadCache {
         }
 
         /**
-         * Free up cached {@link PoolChunk}s if not allocated frequently enough.
+         * Adjusts the capacity of this cache to the hits and misses seen since the last call and frees up cached
+         * {@link PoolChunk}s which do not fit anymore.
          */
-        public final void trim() {
-            int free = size - allocations;
-            allocations = 0;
+        public final void trim(PoolThreadCache threadCache) {
+            final int hits = this.hits;
+            final int misses = this.misses;
+            this.hits = 0;
+            this.misses = 0;
+            arena.recordThreadCacheStats(sizeIdx, hits, misses);
+
+            int capacity = this.capacity;
+            if (misses > 0 && misses >= hits >>> MISS_RATIO_SHIFT) {
+                // The cache was too small to serve a noticeable part of the allocations, grow it so it could have
+                // served the misses as well.
+                int newCapacity = Math.min(size, MathUtil.safeFindNextPositivePowerOfTwo(capacity + misses));
+                long reserved = (long) (newCapacity - capacity) * elemSize;
+                if (newCapacity > capacity && threadCache.reserve(reserved)) {
+                    this.capacity = newCapacity;
+                    arena.threadCacheCapacityBytes.add(reserved);
+                    arena.threadCacheGrows.increment();
+                }
+            } else if (hits < capacity >>> 1 && capacity > 1) {
+                // Less than half of the cached entries were needed, halve the cache and free what does not fit.
+                int newCapacity = capacity >>> 1;
+                this.capacity = newCapacity;
+                long released = (long) (capacity - newCapacity) * elemSize;
+                threadCache.unreserve(released);
+                arena.threadCacheCapacityBytes.add(-released);
+                arena.threadCacheShrinks.increment();
+            }
 
-            // We not even allocated all the number that are
+            // Free what does not fit anymore, or everything if this size class was not used at all.
+            int free = queue.size() - (hits == 0 && misses == 0 ? 0 : this.capacity);
             if (free > 0) {
                 free(free);
             }
         }
 
+        /**
+         * Returns the number of bytes this cache may hold at most with its current capacity.
+         */
+        final long reservedBytes() {
+            return (long) capacity * elemSize;
+        }
+
+        /**
+         * Gives back the capacity of this cache to the arena metrics once the owning thread went away.
+         */
+        final void release() {
+            arena.threadCacheCapacityBytes.add(-reservedBytes());
+            arena.recordThreadCacheStats(sizeIdx, hits, misses);
+            hits = 0;
+            misses = 0;
+        }
+
         @SuppressWarnings({ "unchecked", "rawtypes" })
         private  void freeEntry(Entry entry) {
             PoolChunk chunk = entry.chunk;
             long handle = entry.handle;
+            int normCapacity = entry.normCapacity;
 
             // recycle now so PoolChunk can be GC'ed.
             entry.recycle();
 
-            chunk.arena.freeChunk(chunk, handle, sizeClass);
+            chunk.arena.freeChunk(chunk, handle, normCapacity, sizeClass);
         }
 
         static final class Entry<T> {
             final Recycler.Handle<Entry<?>> recyclerHandle;
             PoolChunk<T> chunk;
             long handle = -1;
+            int normCapacity;
 
             Entry(Recycler.Handle<Entry<?>> recyclerHandle) {
                 this.recyclerHandle = recyclerHandle;
@@ -467,15 +606,17 @@ final class PoolThreadCache {
             void recycle() {
                 chunk = null;
                 handle = -1;
+                normCapacity = 0;
                 recyclerHandle.recycle(this);
             }
         }
 
         @SuppressWarnings("rawtypes")
-        private static Entry newEntry(PoolChunk<?> chunk, long handle) {
+        private static Entry newEntry(PoolChunk<?> chunk, long handle, int normCapacity) {
             Entry entry = RECYCLER.get();
             entry.chunk = chunk;
             entry.handle = handle;
+            entry.normCapacity = normCapacity;
             return entry;
         }
 
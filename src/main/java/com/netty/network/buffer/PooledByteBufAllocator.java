@@ -28,8 +28,9 @@ import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
-public class PooledByteBufAllocator extends AbstractByteBufAllocator {
+public class PooledByteBufAllocator extends AbstractByteBufAllocator implements ByteBufAllocatorMetricProvider {
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(PooledByteBufAllocator.class);
     private static final int DEFAULT_NUM_HEAP_ARENA;
@@ -37,11 +38,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     private static final int DEFAULT_PAGE_SIZE;
     private static final int DEFAULT_MAX_ORDER; // 8192 << 11 = 16 MiB per chunk
-    private static final int DEFAULT_TINY_CACHE_SIZE;
     private static final int DEFAULT_SMALL_CACHE_SIZE;
     private static final int DEFAULT_NORMAL_CACHE_SIZE;
     private static final int DEFAULT_MAX_CACHED_BUFFER_CAPACITY;
     private static final int DEFAULT_CACHE_TRIM_INTERVAL;
+    private static final long DEFAULT_MAX_CACHED_BYTES_PER_THREAD;
+    private static final long DEFAULT_CHUNK_IDLE_TIME_MILLIS;
+    private static final long DEFAULT_POOLED_BYTES_HIGH_WATERMARK;
+    private static final int DEFAULT_NUM_PREALLOCATED_CHUNKS;
+    private static final int DEFAULT_DIRECT_CHUNK_ALIGNMENT;
 
     private static final int MIN_PAGE_SIZE = 4096;
     private static final int MAX_CHUNK_SIZE = (int) (((long) Integer.MAX_VALUE + 1) / 2);
@@ -91,7 +96,6 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
                                 PlatformDependent.maxDirectMemory() / defaultChunkSize / 2 / 3)));
 
         // cache sizes
-        DEFAULT_TINY_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.tinyCacheSize", 512);
         DEFAULT_SMALL_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.smallCacheSize", 256);
         DEFAULT_NORMAL_CACHE_SIZE = SystemPropertyUtil.getInt("io.netty.allocator.normalCacheSize", 64);
 
@@ -104,6 +108,35 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         DEFAULT_CACHE_TRIM_INTERVAL = SystemPropertyUtil.getInt(
                 "io.netty.allocator.cacheTrimInterval", 8192);
 
+        // the maximum number of bytes the caches of a single thread may grow to, heap and direct combined.
+        DEFAULT_MAX_CACHED_BYTES_PER_THREAD = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.maxCachedBytesPerThread", 16 * 1024 * 1024));
+
+        // how long a chunk must not be used at all before releaseIdleChunks() destroys it, a negative value disables
+        // the release of idle chunks.
+        DEFAULT_CHUNK_IDLE_TIME_MILLIS = SystemPropertyUtil.getLong(
+                "io.netty.allocator.chunkIdleTimeMillis", 60 * 1000);
+
+        // the number of bytes held by all arenas, heap and direct combined, above which chunks that are not used
+        // anymore are destroyed right away. 0 disables the high watermark.
+        DEFAULT_POOLED_BYTES_HIGH_WATERMARK = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.allocator.pooledBytesHighWatermark", 0));
+
+        // the number of chunks every direct arena allocates and pre-touches up front.
+        DEFAULT_NUM_PREALLOCATED_CHUNKS = Math.max(0, SystemPropertyUtil.getInt(
+                "io.netty.allocator.numPreallocatedChunks", 0));
+
+        // the alignment of the start address of direct chunks, e.g. 2 MiB so they can be backed by huge pages.
+        int defaultDirectChunkAlignment = SystemPropertyUtil.getInt("io.netty.allocator.directChunkAlignment", 0);
+        Throwable directChunkAlignmentFallbackCause = null;
+        try {
+            validateDirectChunkAlignment(defaultDirectChunkAlignment);
+        } catch (Throwable t) {
+            directChunkAlignmentFallbackCause = t;
+            defaultDirectChunkAlignment = 0;
+        }
+        DEFAULT_DIRECT_CHUNK_ALIGNMENT = defaultDirectChunkAlignment;
+
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.allocator.numHeapArenas: {}", DEFAULT_NUM_HEAP_ARENA);
             logger.debug("-Dio.netty.allocator.numDirectArenas: {}", DEFAULT_NUM_DIRECT_ARENA);
@@ -118,25 +151,41 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
                 logger.debug("-Dio.netty.allocator.maxOrder: {}", DEFAULT_MAX_ORDER, maxOrderFallbackCause);
             }
             logger.debug("-Dio.netty.allocator.chunkSize: {}", DEFAULT_PAGE_SIZE << DEFAULT_MAX_ORDER);
-            logger.debug("-Dio.netty.allocator.tinyCacheSize: {}", DEFAULT_TINY_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.smallCacheSize: {}", DEFAULT_SMALL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.normalCacheSize: {}", DEFAULT_NORMAL_CACHE_SIZE);
             logger.debug("-Dio.netty.allocator.maxCachedBufferCapacity: {}", DEFAULT_MAX_CACHED_BUFFER_CAPACITY);
             logger.debug("-Dio.netty.allocator.cacheTrimInterval: {}", DEFAULT_CACHE_TRIM_INTERVAL);
+            logger.debug("-Dio.netty.allocator.maxCachedBytesPerThread: {}", DEFAULT_MAX_CACHED_BYTES_PER_THREAD);
+            logger.debug("-Dio.netty.allocator.chunkIdleTimeMillis: {}", DEFAULT_CHUNK_IDLE_TIME_MILLIS);
+            logger.debug("-Dio.netty.allocator.pooledBytesHighWatermark: {}", DEFAULT_POOLED_BYTES_HIGH_WATERMARK);
+            logger.debug("-Dio.netty.allocator.numPreallocatedChunks: {}", DEFAULT_NUM_PREALLOCATED_CHUNKS);
+            if (directChunkAlignmentFallbackCause == null) {
+                logger.debug("-Dio.netty.allocator.directChunkAlignment: {}", DEFAULT_DIRECT_CHUNK_ALIGNMENT);
+            } else {
+                logger.debug("-Dio.netty.allocator.directChunkAlignment: {}", DEFAULT_DIRECT_CHUNK_ALIGNMENT,
+                        directChunkAlignmentFallbackCause);
+            }
+            logger.debug("-Dio.netty.allocator.biasedReferenceCounting: {}",
+                    AbstractReferenceCountedByteBuf.BIASED_REFERENCE_COUNTING);
         }
     }
 
     public static final PooledByteBufAllocator DEFAULT =
-            new PooledByteBufAllocator(PlatformDependent.directBufferPreferred());
+            new PooledByteBufAllocator(PlatformDependent.directBufferPreferred(), DEFAULT_NUM_HEAP_ARENA,
+                    DEFAULT_NUM_DIRECT_ARENA, DEFAULT_PAGE_SIZE, DEFAULT_MAX_ORDER, DEFAULT_SMALL_CACHE_SIZE,
+                    DEFAULT_NORMAL_CACHE_SIZE, DEFAULT_NUM_PREALLOCATED_CHUNKS, DEFAULT_DIRECT_CHUNK_ALIGNMENT);
 
     private final PoolArena<byte[]>[] heapArenas;
     private final PoolArena<ByteBuffer>[] directArenas;
-    private final int tinyCacheSize;
     private final int smallCacheSize;
     private final int normalCacheSize;
     private final List<PoolArenaMetric> heapArenaMetrics;
     private final List<PoolArenaMetric> directArenaMetrics;
     private final PoolThreadLocalCache threadCache;
+    private final int chunkSize;
+    private final PooledByteBufAllocatorMetric metric;
+    private final long chunkIdleTimeNanos;
+    private final long pooledBytesHighWatermark;
 
     public PooledByteBufAllocator() {
         this(false);
@@ -152,17 +201,43 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder) {
         this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder,
-                DEFAULT_TINY_CACHE_SIZE, DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE);
+                DEFAULT_SMALL_CACHE_SIZE, DEFAULT_NORMAL_CACHE_SIZE);
     }
 
+    /**
+     * @deprecated use
+     * {@link PooledByteBufAllocator#PooledByteBufAllocator(boolean, int, int, int, int, int, int)}
+     */
+    @Deprecated
     public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
                                   int tinyCacheSize, int smallCacheSize, int normalCacheSize) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, smallCacheSize, normalCacheSize);
+    }
+
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize) {
+        this(preferDirect, nHeapArena, nDirectArena, pageSize, maxOrder, smallCacheSize, normalCacheSize, 0, 0);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param numPreallocatedChunks the number of chunks every direct arena allocates and pre-touches up front and
+     *                              keeps even if they are not used, see {@link #defaultNumPreallocatedChunks()}.
+     * @param directChunkAlignment  the alignment of the start address of direct chunks, a power of two, or {@code 0}
+     *                              to not align them, see {@link #defaultDirectChunkAlignment()}.
+     */
+    public PooledByteBufAllocator(boolean preferDirect, int nHeapArena, int nDirectArena, int pageSize, int maxOrder,
+                                  int smallCacheSize, int normalCacheSize, int numPreallocatedChunks,
+                                  int directChunkAlignment) {
         super(preferDirect);
         threadCache = new PoolThreadLocalCache();
-        this.tinyCacheSize = tinyCacheSize;
         this.smallCacheSize = smallCacheSize;
         this.normalCacheSize = normalCacheSize;
-        final int chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
+        chunkSize = validateAndCalculateChunkSize(pageSize, maxOrder);
+        chunkIdleTimeNanos = DEFAULT_CHUNK_IDLE_TIME_MILLIS < 0 ?
+                -1 : TimeUnit.MILLISECONDS.toNanos(DEFAULT_CHUNK_IDLE_TIME_MILLIS);
+        pooledBytesHighWatermark = DEFAULT_POOLED_BYTES_HIGH_WATERMARK;
 
         if (nHeapArena < 0) {
             throw new IllegalArgumentException("nHeapArena: " + nHeapArena + " (expected: >= 0)");
@@ -171,13 +246,20 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
             throw new IllegalArgumentException("nDirectArea: " + nDirectArena + " (expected: >= 0)");
         }
 
+        if (numPreallocatedChunks < 0) {
+            throw new IllegalArgumentException("numPreallocatedChunks: " + numPreallocatedChunks + " (expected: >= 0)");
+        }
+        validateDirectChunkAlignment(directChunkAlignment);
+
         int pageShifts = validateAndCalculatePageShifts(pageSize);
 
         if (nHeapArena > 0) {
             heapArenas = newArenaArray(nHeapArena);
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(heapArenas.length);
             for (int i = 0; i < heapArenas.length; i ++) {
-                PoolArena.HeapArena arena = new PoolArena.HeapArena(this, pageSize, maxOrder, pageShifts, chunkSize);
+                // Heap arenas are not preallocated, their chunks live in the Java heap which the JVM already commits
+                // and pre-touches up front if asked to, see -Xms and -XX:+AlwaysPreTouch.
+                PoolArena.HeapArena arena = new PoolArena.HeapArena(this, pageSize, pageShifts, chunkSize);
                 heapArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -192,7 +274,8 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
             List<PoolArenaMetric> metrics = new ArrayList<PoolArenaMetric>(directArenas.length);
             for (int i = 0; i < directArenas.length; i ++) {
                 PoolArena.DirectArena arena = new PoolArena.DirectArena(
-                        this, pageSize, maxOrder, pageShifts, chunkSize);
+                        this, pageSize, pageShifts, chunkSize, directChunkAlignment);
+                arena.preallocateChunks(numPreallocatedChunks);
                 directArenas[i] = arena;
                 metrics.add(arena);
             }
@@ -201,6 +284,7 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
             directArenas = null;
             directArenaMetrics = Collections.emptyList();
         }
+        metric = new PooledByteBufAllocatorMetric(this);
     }
 
     @SuppressWarnings("unchecked")
@@ -221,6 +305,19 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return Integer.SIZE - 1 - Integer.numberOfLeadingZeros(pageSize);
     }
 
+    private static void validateDirectChunkAlignment(int alignment) {
+        if (alignment == 0) {
+            return;
+        }
+        if (alignment < 0 || alignment > MAX_CHUNK_SIZE || (alignment & alignment - 1) != 0) {
+            throw new IllegalArgumentException("directChunkAlignment: " + alignment +
+                    " (expected: power of 2 <= " + MAX_CHUNK_SIZE + ')');
+        }
+        if (!PlatformDependent.hasUnsafe()) {
+            throw new IllegalStateException("directChunkAlignment requires sun.misc.Unsafe");
+        }
+    }
+
     private static int validateAndCalculateChunkSize(int pageSize, int maxOrder) {
         if (maxOrder > 14) {
             throw new IllegalArgumentException("maxOrder: " + maxOrder + " (expected: 0-14)");
@@ -301,10 +398,13 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
     }
 
     /**
-     *  Default tiny cache size - System Property: io.netty.allocator.tinyCacheSize - default 512
+     * Default tiny cache size - default 0
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public static int defaultTinyCacheSize() {
-        return DEFAULT_TINY_CACHE_SIZE;
+        return 0;
     }
 
     /**
@@ -321,6 +421,60 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return DEFAULT_NORMAL_CACHE_SIZE;
     }
 
+    /**
+     *  Default maximum number of bytes the caches of a single thread may grow to -
+     *  System Property: io.netty.allocator.maxCachedBytesPerThread - default 16 MiB
+     */
+    public static long defaultMaxCachedBytesPerThread() {
+        return DEFAULT_MAX_CACHED_BYTES_PER_THREAD;
+    }
+
+    /**
+     *  Default time a chunk must not be used at all before it is released -
+     *  System Property: io.netty.allocator.chunkIdleTimeMillis - default 60000, a negative value disables it
+     */
+    public static long defaultChunkIdleTimeMillis() {
+        return DEFAULT_CHUNK_IDLE_TIME_MILLIS;
+    }
+
+    /**
+     *  Default number of pooled bytes above which chunks are released as soon as they are not used anymore -
+     *  System Property: io.netty.allocator.pooledBytesHighWatermark - default 0 (disabled)
+     */
+    public static long defaultPooledBytesHighWatermark() {
+        return DEFAULT_POOLED_BYTES_HIGH_WATERMARK;
+    }
+
+    /**
+     *  Default number of chunks every direct arena of {@link #DEFAULT} preallocates and pre-touches -
+     *  System Property: io.netty.allocator.numPreallocatedChunks - default 0
+     */
+    public static int defaultNumPreallocatedChunks() {
+        return DEFAULT_NUM_PREALLOCATED_CHUNKS;
+    }
+
+    /**
+     *  Default alignment of the start address of the direct chunks of {@link #DEFAULT} -
+     *  System Property: io.netty.allocator.directChunkAlignment - default 0 (not aligned)
+     */
+    public static int defaultDirectChunkAlignment() {
+        return DEFAULT_DIRECT_CHUNK_ALIGNMENT;
+    }
+
+    /**
+     *  Default whether pooled buffers allocated by an event loop update their reference count without atomic
+     *  operations until they are used by another thread -
+     *  System Property: io.netty.allocator.biasedReferenceCounting - default false
+     *
+     *  A buffer must not be retained or released by its event loop and another thread at the same time before the
+     *  other thread used it for the first time. Buffers which are passed between threads through a
+     *  {@link com.netty.network.channel.ChannelPipeline} are taken care of, everything else has to be passed to
+     *  {@link ByteBufUtil#markShared(Object)} before it is handed to another thread.
+     */
+    public static boolean defaultBiasedReferenceCounting() {
+        return AbstractReferenceCountedByteBuf.BIASED_REFERENCE_COUNTING;
+    }
+
     @Override
     public boolean isDirectBufferPooled() {
         return directArenas != null;
@@ -335,6 +489,75 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return threadCache.isSet();
     }
 
+    /**
+     * Trim thread local cache for the current {@link Thread}, which will give back any cached memory that was not
+     * allocated frequently since the last trim operation and adjust the capacity of each size class.
+     *
+     * Returns {@code true} if a cache for the current {@link Thread} exists and so was trimmed, false otherwise.
+     */
+    public boolean trimCurrentThreadCache() {
+        if (threadCache.isSet()) {
+            threadCache.get().trim();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Starts a bulk release on the current {@link Thread}. Until the matching {@link #endBulkRelease()} the memory of
+     * pooled buffers released by this thread which is not kept by a thread local cache is collected, and then given
+     * back grouped by arena and chunk so every arena and chunk is only locked once instead of once per buffer.
+     *
+     * Use this around loops which release many buffers at once, and always call {@link #endBulkRelease()} in a
+     * {@code finally} block. Calls can be nested, the memory is given back by the outermost {@link #endBulkRelease()}.
+     */
+    public static void beginBulkRelease() {
+        PoolArena.beginFreeBatch();
+    }
+
+    /**
+     * Ends a bulk release started by {@link #beginBulkRelease()} on the current {@link Thread}.
+     */
+    public static void endBulkRelease() {
+        PoolArena.endFreeBatch();
+    }
+
+    /**
+     * Release the chunks of all arenas which are not used at all and were not used for at least
+     * {@link #defaultChunkIdleTimeMillis()}, or all chunks which are not used anymore if the pooled memory is above
+     * {@link #defaultPooledBytesHighWatermark()}. This is meant to be called periodically, for example when an
+     * {@link com.netty.network.channel.EventLoop} is idle, so the memory held by the pool follows the load.
+     *
+     * Returns the number of released chunks. Memory cached by thread local caches is not released, use
+     * {@link #trimCurrentThreadCache()} for this.
+     */
+    public int releaseIdleChunks() {
+        long idleNanos = isAboveHighWatermark() ? 0 : chunkIdleTimeNanos;
+        if (idleNanos < 0) {
+            return 0;
+        }
+        return releaseEmptyChunks(heapArenas, idleNanos) + releaseEmptyChunks(directArenas, idleNanos);
+    }
+
+    private static int releaseEmptyChunks(PoolArena<?>[] arenas, long idleNanos) {
+        if (arenas == null) {
+            return 0;
+        }
+        int released = 0;
+        for (PoolArena<?> arena: arenas) {
+            released += arena.releaseEmptyChunks(idleNanos);
+        }
+        return released;
+    }
+
+    /**
+     * Returns {@code true} if the arenas hold more memory than the configured high watermark.
+     */
+    final boolean isAboveHighWatermark() {
+        return pooledBytesHighWatermark > 0 &&
+                metric.usedHeapMemory() + metric.usedDirectMemory() > pooledBytesHighWatermark;
+    }
+
     /**
      * Free all cached buffers for the calling {@link Thread}.
      */
@@ -351,8 +574,9 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
             final PoolArena<ByteBuffer> directArena = leastUsedArena(directArenas);
 
             return new PoolThreadCache(
-                    heapArena, directArena, tinyCacheSize, smallCacheSize, normalCacheSize,
-                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL);
+                    heapArena, directArena, smallCacheSize, normalCacheSize,
+                    DEFAULT_MAX_CACHED_BUFFER_CAPACITY, DEFAULT_CACHE_TRIM_INTERVAL,
+                    DEFAULT_MAX_CACHED_BYTES_PER_THREAD);
         }
 
         @Override
@@ -424,9 +648,12 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
 
     /**
      * Return the size of the tiny cache.
+     *
+     * @deprecated Tiny caches have been merged into small caches.
      */
+    @Deprecated
     public int tinyCacheSize() {
-        return tinyCacheSize;
+        return 0;
     }
 
     /**
@@ -443,6 +670,15 @@ public class PooledByteBufAllocator extends AbstractByteBufAllocator {
         return normalCacheSize;
     }
 
+    final int chunkSize() {
+        return chunkSize;
+    }
+
+    @Override
+    public PooledByteBufAllocatorMetric metric() {
+        return metric;
+    }
+
     final PoolThreadCache threadCache() {
         return threadCache.get();
     }
@@ -0,0 +1,227 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import com.netty.network.util.internal.StringUtil;
+
+import java.util.List;
+
+/**
+ * Exposed metric for {@link PooledByteBufAllocator}.
+ *
+ * All values are backed by counters that are updated without holding any lock, so it is cheap to read them
+ * frequently. Use {@link PooledByteBufAllocator#dumpStats()} if a detailed view of the chunks is needed.
+ */
+public final class PooledByteBufAllocatorMetric implements ByteBufAllocatorMetric {
+
+    private final PooledByteBufAllocator allocator;
+
+    PooledByteBufAllocatorMetric(PooledByteBufAllocator allocator) {
+        this.allocator = allocator;
+    }
+
+    /**
+     * Return the number of heap arenas.
+     */
+    public int numHeapArenas() {
+        return allocator.numHeapArenas();
+    }
+
+    /**
+     * Return the number of direct arenas.
+     */
+    public int numDirectArenas() {
+        return allocator.numDirectArenas();
+    }
+
+    /**
+     * Return a {@link List} of all heap {@link PoolArenaMetric}s that are provided by this pool.
+     */
+    public List<PoolArenaMetric> heapArenas() {
+        return allocator.heapArenas();
+    }
+
+    /**
+     * Return a {@link List} of all direct {@link PoolArenaMetric}s that are provided by this pool.
+     */
+    public List<PoolArenaMetric> directArenas() {
+        return allocator.directArenas();
+    }
+
+    /**
+     * Return the number of thread local caches used by this {@link PooledByteBufAllocator}.
+     */
+    public int numThreadLocalCaches() {
+        return allocator.numThreadLocalCaches();
+    }
+
+    /**
+     * Return the size of the small cache.
+     */
+    public int smallCacheSize() {
+        return allocator.smallCacheSize();
+    }
+
+    /**
+     * Return the size of the normal cache.
+     */
+    public int normalCacheSize() {
+        return allocator.normalCacheSize();
+    }
+
+    /**
+     * Return the chunk size for an arena.
+     */
+    public int chunkSize() {
+        return allocator.chunkSize();
+    }
+
+    @Override
+    public long usedHeapMemory() {
+        return usedMemory(heapArenas());
+    }
+
+    @Override
+    public long usedDirectMemory() {
+        return usedMemory(directArenas());
+    }
+
+    private static long usedMemory(List<PoolArenaMetric> arenas) {
+        long used = 0;
+        for (int i = 0; i < arenas.size(); i++) {
+            used += arenas.get(i).numActiveBytes();
+        }
+        return used;
+    }
+
+    /**
+     * Return the number of allocations served by the thread local caches, heap and direct combined.
+     *
+     * @see PoolArenaMetric#numThreadCacheHits()
+     */
+    public long numThreadCacheHits() {
+        return numThreadCacheHits(heapArenas()) + numThreadCacheHits(directArenas());
+    }
+
+    /**
+     * Return the number of allocations of the size class {@code sizeIdx} served by the thread local caches, heap and
+     * direct combined.
+     *
+     * @see PoolArenaMetric#numThreadCacheHits(int)
+     */
+    public long numThreadCacheHits(int sizeIdx) {
+        return numThreadCacheHits(heapArenas(), sizeIdx) + numThreadCacheHits(directArenas(), sizeIdx);
+    }
+
+    private static long numThreadCacheHits(List<PoolArenaMetric> arenas) {
+        long hits = 0;
+        for (int i = 0; i < arenas.size(); i++) {
+            hits += arenas.get(i).numThreadCacheHits();
+        }
+        return hits;
+    }
+
+    private static long numThreadCacheHits(List<PoolArenaMetric> arenas, int sizeIdx) {
+        long hits = 0;
+        for (int i = 0; i < arenas.size(); i++) {
+            hits += arenas.get(i).numThreadCacheHits(sizeIdx);
+        }
+        return hits;
+    }
+
+    /**
+     * Return the number of allocations the thread local caches could not serve, heap and direct combined.
+     *
+     * @see PoolArenaMetric#numThreadCacheMisses()
+     */
+    public long numThreadCacheMisses() {
+        return numThreadCacheMisses(heapArenas()) + numThreadCacheMisses(directArenas());
+    }
+
+    /**
+     * Return the number of allocations of the size class {@code sizeIdx} the thread local caches could not serve,
+     * heap and direct combined.
+     *
+     * @see PoolArenaMetric#numThreadCacheMisses(int)
+     */
+    public long numThreadCacheMisses(int sizeIdx) {
+        return numThreadCacheMisses(heapArenas(), sizeIdx) + numThreadCacheMisses(directArenas(), sizeIdx);
+    }
+
+    private static long numThreadCacheMisses(List<PoolArenaMetric> arenas) {
+        long misses = 0;
+        for (int i = 0; i < arenas.size(); i++) {
+            misses += arenas.get(i).numThreadCacheMisses();
+        }
+        return misses;
+    }
+
+    private static long numThreadCacheMisses(List<PoolArenaMetric> arenas, int sizeIdx) {
+        long misses = 0;
+        for (int i = 0; i < arenas.size(); i++) {
+            misses += arenas.get(i).numThreadCacheMisses(sizeIdx);
+        }
+        return misses;
+    }
+
+    /**
+     * Return the number of chunks allocated by all arenas.
+     */
+    public long numChunkAllocations() {
+        long chunks = 0;
+        for (PoolArenaMetric arena: heapArenas()) {
+            chunks += arena.numChunkAllocations();
+        }
+        for (PoolArenaMetric arena: directArenas()) {
+            chunks += arena.numChunkAllocations();
+        }
+        return chunks;
+    }
+
+    /**
+     * Return the number of chunks destroyed by all arenas.
+     */
+    public long numChunkDestructions() {
+        long chunks = 0;
+        for (PoolArenaMetric arena: heapArenas()) {
+            chunks += arena.numChunkDestructions();
+        }
+        for (PoolArenaMetric arena: directArenas()) {
+            chunks += arena.numChunkDestructions();
+        }
+        return chunks;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append(StringUtil.simpleClassName(this))
+                .append("(usedHeapMemory: ").append(usedHeapMemory())
+                .append("; usedDirectMemory: ").append(usedDirectMemory())
+                .append("; numHeapArenas: ").append(numHeapArenas())
+                .append("; numDirectArenas: ").append(numDirectArenas())
+                .append("; smallCacheSize: ").append(smallCacheSize())
+                .append("; normalCacheSize: ").append(normalCacheSize())
+                .append("; numThreadLocalCaches: ").append(numThreadLocalCaches())
+                .append("; numThreadCacheHits: ").append(numThreadCacheHits())
+                .append("; numThreadCacheMisses: ").append(numThreadCacheMisses())
+                .append("; numChunkAllocations: ").append(numChunkAllocations())
+                .append("; numChunkDestructions: ").append(numChunkDestructions())
+                .append("; chunkSize: ").append(chunkSize()).append(')');
+        return sb.toString();
+    }
+}
@@ -25,12 +25,13 @@ import java.nio.ByteBuffer;
 /**
  * Read-only ByteBuf which wraps a read-only direct ByteBuffer and use unsafe for best performance.
  */
-final class ReadOnlyUnsafeDirectByteBuf extends ReadOnlyByteBufferBuf {
+class ReadOnlyUnsafeDirectByteBuf extends ReadOnlyByteBufferBuf {
     private final long memoryAddress;
 
     ReadOnlyUnsafeDirectByteBuf(ByteBufAllocator allocator, ByteBuffer buffer) {
         super(allocator, buffer);
-        memoryAddress = PlatformDependent.directBufferAddress(buffer);
+        // Use the sliced buffer, the given one may not start at its position.
+        memoryAddress = PlatformDependent.directBufferAddress(this.buffer);
     }
 
     @Override
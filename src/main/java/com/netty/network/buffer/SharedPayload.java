@@ -0,0 +1,211 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import com.netty.network.util.internal.LongCounter;
+import com.netty.network.util.internal.PlatformDependent;
+
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * The content of a buffer which is sent to many receivers, see {@link Unpooled#sharedPayloadBuffer(ByteBuf)}.
+ *
+ * The owner buffer and every view created by its {@code retainedDuplicate()} and {@code retainedSlice(..)} methods
+ * are read-only buffers with a reference count of their own, so releasing a view on the thread of its receiver never
+ * contends with the other views. Only the number of views is shared, and it is kept in a striped counter. The content
+ * is released once the owner buffer and all views were released.
+ *
+ * Views are only created while the owner buffer is accessible, so once it was released the number of views can only
+ * go down and a sum of zero is final. Both the owner buffer and the views check the other side after updating their
+ * own, so whichever comes last releases the content.
+ */
+final class SharedPayload {
+
+    private static final AtomicIntegerFieldUpdater<SharedPayload> FREED_UPDATER =
+            AtomicIntegerFieldUpdater.newUpdater(SharedPayload.class, "freed");
+
+    private final ByteBuf content;
+    private final ByteBuffer buffer;
+    private final LongCounter views = PlatformDependent.newLongCounter();
+    private volatile boolean closed;
+    @SuppressWarnings("unused")
+    private volatile int freed;
+
+    SharedPayload(ByteBuf content) {
+        if (content.nioBufferCount() != 1) {
+            // The views are backed by a single ByteBuffer.
+            ByteBuf copy = content.alloc().directBuffer(content.readableBytes());
+            try {
+                copy.writeBytes(content, content.readerIndex(), content.readableBytes());
+            } catch (Throwable cause) {
+                copy.release();
+                PlatformDependent.throwException(cause);
+            }
+            content.release();
+            content = copy;
+        }
+        this.content = content;
+        buffer = content.nioBuffer().asReadOnlyBuffer();
+    }
+
+    /**
+     * Returns the owner buffer, which releases the content once it and all views were released.
+     */
+    ByteBuf newBuffer() {
+        return newBuffer(buffer, true);
+    }
+
+    private ByteBuf newView(int index, int length) {
+        ByteBuffer view = buffer.duplicate();
+        // Call the Buffer methods, ByteBuffer overrides them since Java 9 which would break running on Java 8.
+        ((Buffer) view).position(index);
+        ((Buffer) view).limit(index + length);
+        views.increment();
+        return newBuffer(view, false);
+    }
+
+    private ByteBuf newBuffer(ByteBuffer buffer, boolean owner) {
+        if (buffer.isDirect() && PlatformDependent.hasUnsafe()) {
+            return new UnsafeDirectSharedByteBuf(this, buffer, owner);
+        }
+        return new SharedByteBuf(this, buffer, owner);
+    }
+
+    /**
+     * Implements {@link ByteBuf#retainedDuplicate()} of the owner buffer {@code buf}.
+     */
+    private ByteBuf retainedDuplicate(AbstractByteBuf buf) {
+        buf.ensureAccessible();
+        return newView(0, buf.capacity()).setIndex(buf.readerIndex(), buf.writerIndex());
+    }
+
+    /**
+     * Implements {@link ByteBuf#retainedSlice(int, int)} of the owner buffer {@code buf}.
+     */
+    private ByteBuf retainedSlice(AbstractByteBuf buf, int index, int length) {
+        buf.checkIndex(index, length);
+        return newView(index, length);
+    }
+
+    /**
+     * Called once the owner buffer or a view, depending on {@code owner}, was released.
+     */
+    private void released(boolean owner) {
+        if (owner) {
+            ownerReleased();
+        } else {
+            viewReleased();
+        }
+    }
+
+    private void viewReleased() {
+        views.decrement();
+        if (closed && views.value() == 0) {
+            free();
+        }
+    }
+
+    private void ownerReleased() {
+        closed = true;
+        if (views.value() == 0) {
+            free();
+        }
+    }
+
+    private void free() {
+        // Both the owner buffer and the last view may see that the other side is done.
+        if (FREED_UPDATER.compareAndSet(this, 0, 1)) {
+            content.release();
+        }
+    }
+
+    private static final class SharedByteBuf extends ReadOnlyByteBufferBuf {
+        private final SharedPayload payload;
+        private final boolean owner;
+
+        SharedByteBuf(SharedPayload payload, ByteBuffer buffer, boolean owner) {
+            super(payload.content.alloc(), buffer);
+            this.payload = payload;
+            this.owner = owner;
+        }
+
+        @Override
+        public ByteBuf retainedDuplicate() {
+            if (!owner) {
+                return super.retainedDuplicate();
+            }
+            return payload.retainedDuplicate(this);
+        }
+
+        @Override
+        public ByteBuf retainedSlice() {
+            return retainedSlice(readerIndex(), readableBytes());
+        }
+
+        @Override
+        public ByteBuf retainedSlice(int index, int length) {
+            if (!owner) {
+                return super.retainedSlice(index, length);
+            }
+            return payload.retainedSlice(this, index, length);
+        }
+
+        @Override
+        protected void deallocate() {
+            payload.released(owner);
+        }
+    }
+
+    private static final class UnsafeDirectSharedByteBuf extends ReadOnlyUnsafeDirectByteBuf {
+        private final SharedPayload payload;
+        private final boolean owner;
+
+        UnsafeDirectSharedByteBuf(SharedPayload payload, ByteBuffer buffer, boolean owner) {
+            super(payload.content.alloc(), buffer);
+            this.payload = payload;
+            this.owner = owner;
+        }
+
+        @Override
+        public ByteBuf retainedDuplicate() {
+            if (!owner) {
+                return super.retainedDuplicate();
+            }
+            return payload.retainedDuplicate(this);
+        }
+
+        @Override
+        public ByteBuf retainedSlice() {
+            return retainedSlice(readerIndex(), readableBytes());
+        }
+
+        @Override
+        public ByteBuf retainedSlice(int index, int length) {
+            if (!owner) {
+                return super.retainedSlice(index, length);
+            }
+            return payload.retainedSlice(this, index, length);
+        }
+
+        @Override
+        protected void deallocate() {
+            payload.released(owner);
+        }
+    }
+}
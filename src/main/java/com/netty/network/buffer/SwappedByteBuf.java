@@ -607,6 +607,26 @@ public class SwappedByteBuf extends ByteBuf {
         return buf.readLong();
     }
 
+    @Override
+    public int readVarInt32() {
+        return buf.readVarInt32();
+    }
+
+    @Override
+    public long readVarInt64() {
+        return buf.readVarInt64();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        return buf.readZigZagVarInt32();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        return buf.readZigZagVarInt64();
+    }
+
     @Override
     public char readChar() {
         return (char) readShort();
@@ -760,6 +780,30 @@ public class SwappedByteBuf extends ByteBuf {
         return this;
     }
 
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        buf.writeVarInt32(value);
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        buf.writeVarInt64(value);
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        buf.writeZigZagVarInt32(value);
+        return this;
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        buf.writeZigZagVarInt64(value);
+        return this;
+    }
+
     @Override
     public ByteBuf writeChar(int value) {
         writeShort(value);
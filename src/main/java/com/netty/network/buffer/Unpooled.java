@@ -862,6 +862,20 @@ public final class Unpooled {
         return new UnreleasableByteBuf(buf);
     }
 
+    /**
+     * Return a read-only buffer to send the content of the given {@link ByteBuf} to many receivers, e.g. by writing
+     * it to a {@code ChannelGroup}. Its {@link ByteBuf#retainedDuplicate()} and {@link ByteBuf#retainedSlice()}
+     * methods return views with a reference count of their own instead of retaining the returned buffer, so views
+     * can be created and released by many threads without contending on a single reference count. The given buffer
+     * is released once the returned buffer and all views were released.
+     *
+     * The returned buffer takes over the reference of the given buffer, whose readable bytes must not be modified
+     * afterwards. Its content is copied once if it is not backed by a single NIO buffer.
+     */
+    public static ByteBuf sharedPayloadBuffer(ByteBuf buf) {
+        return new SharedPayload(buf).newBuffer();
+    }
+
     /**
      * Wrap the given {@link ByteBuf}s in an unmodifiable {@link ByteBuf}. Be aware the returned {@link ByteBuf} will
      * not try to slice the given {@link ByteBuf}s to reduce GC-Pressure.
@@ -18,6 +18,8 @@ package com.netty.network.buffer;
 
 import com.netty.network.util.internal.PlatformDependent;
 
+import java.nio.ByteBuffer;
+
 /**
  * Simplistic {@link ByteBufAllocator} implementation that does not pool anything.
  */
@@ -63,9 +65,14 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator {
 
     @Override
     protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
-        ByteBuf buf = PlatformDependent.hasUnsafe() ?
-                UnsafeByteBufUtil.newUnsafeDirectByteBuf(this, initialCapacity, maxCapacity) :
-                new UnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
+        final ByteBuf buf;
+        if (PlatformDependent.hasUnsafe()) {
+            buf = PlatformDependent.useDirectBufferNoCleaner() ?
+                    new CachedUnpooledUnsafeNoCleanerDirectByteBuf(this, initialCapacity, maxCapacity) :
+                    new CachedUnpooledUnsafeDirectByteBuf(this, initialCapacity, maxCapacity);
+        } else {
+            buf = new CachedUnpooledDirectByteBuf(this, initialCapacity, maxCapacity);
+        }
 
         return disableLeakDetector ? buf : toLeakAwareBuffer(buf);
     }
@@ -86,4 +93,74 @@ public final class UnpooledByteBufAllocator extends AbstractByteBufAllocator {
     public boolean isDirectBufferPooled() {
         return false;
     }
+
+    /**
+     * Returns the statistics of the per-thread caches the memory of the direct buffers allocated by all
+     * {@link UnpooledByteBufAllocator}s and by {@link ByteBufUtil#threadLocalDirectBuffer()} is reused from.
+     *
+     * The caches are configured by the {@code io.netty.unpooled.directBufferCacheSize},
+     * {@code io.netty.unpooled.maxCachedDirectBufferCapacity} and
+     * {@code io.netty.unpooled.maxCachedDirectBufferBytesPerThread} system properties.
+     */
+    public static UnpooledDirectBufferCacheMetric directBufferCacheMetric() {
+        return UnpooledDirectBufferCache.METRIC;
+    }
+
+    private static final class CachedUnpooledUnsafeNoCleanerDirectByteBuf
+            extends UnpooledUnsafeNoCleanerDirectByteBuf {
+
+        CachedUnpooledUnsafeNoCleanerDirectByteBuf(
+                UnpooledByteBufAllocator alloc, int initialCapacity, int maxCapacity) {
+            super(alloc, initialCapacity, maxCapacity);
+        }
+
+        @Override
+        protected ByteBuffer allocateDirect(int initialCapacity) {
+            return UnpooledDirectBufferCache.allocateDirectNoCleaner(initialCapacity);
+        }
+
+        @Override
+        ByteBuffer reallocateDirect(ByteBuffer oldBuffer, int newCapacity) {
+            return UnpooledDirectBufferCache.reallocateDirectNoCleaner(oldBuffer, newCapacity);
+        }
+
+        @Override
+        protected void freeDirect(ByteBuffer buffer) {
+            UnpooledDirectBufferCache.freeDirectNoCleaner(buffer);
+        }
+    }
+
+    private static final class CachedUnpooledUnsafeDirectByteBuf extends UnpooledUnsafeDirectByteBuf {
+
+        CachedUnpooledUnsafeDirectByteBuf(UnpooledByteBufAllocator alloc, int initialCapacity, int maxCapacity) {
+            super(alloc, initialCapacity, maxCapacity);
+        }
+
+        @Override
+        protected ByteBuffer allocateDirect(int initialCapacity) {
+            return UnpooledDirectBufferCache.allocateDirect(initialCapacity);
+        }
+
+        @Override
+        protected void freeDirect(ByteBuffer buffer) {
+            UnpooledDirectBufferCache.freeDirect(buffer);
+        }
+    }
+
+    private static final class CachedUnpooledDirectByteBuf extends UnpooledDirectByteBuf {
+
+        CachedUnpooledDirectByteBuf(UnpooledByteBufAllocator alloc, int initialCapacity, int maxCapacity) {
+            super(alloc, initialCapacity, maxCapacity);
+        }
+
+        @Override
+        protected ByteBuffer allocateDirect(int initialCapacity) {
+            return UnpooledDirectBufferCache.allocateDirect(initialCapacity);
+        }
+
+        @Override
+        protected void freeDirect(ByteBuffer buffer) {
+            UnpooledDirectBufferCache.freeDirect(buffer);
+        }
+    }
 }
@@ -0,0 +1,269 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+import com.netty.network.logging.InternalLogger;
+import com.netty.network.logging.InternalLoggerFactory;
+import com.netty.network.util.concurrent.FastThreadLocal;
+import com.netty.network.util.concurrent.FastThreadLocalThread;
+import com.netty.network.util.internal.LongCounter;
+import com.netty.network.util.internal.PlatformDependent;
+import com.netty.network.util.internal.SystemPropertyUtil;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+/**
+ * Bounded per-thread caches of the memory released by unpooled direct buffers, so buffers which are allocated and
+ * released over and over again do not pay for allocating and zeroing new memory and for registering a Cleaner each
+ * time.
+ *
+ * Buffers of up to {@code io.netty.unpooled.maxCachedDirectBufferCapacity} bytes are allocated with the next power of
+ * two as their capacity and a limit of the requested capacity, so a released buffer can serve any later request of
+ * the same size class. Each thread keeps up to {@code io.netty.unpooled.directBufferCacheSize} buffers per size class
+ * and no more than {@code io.netty.unpooled.maxCachedDirectBufferBytesPerThread} bytes. Buffers without a Cleaner are
+ * only cached by {@link FastThreadLocalThread}s, as nothing would free them once any other thread terminated.
+ */
+final class UnpooledDirectBufferCache {
+
+    private static final InternalLogger logger = InternalLoggerFactory.getInstance(UnpooledDirectBufferCache.class);
+
+    private static final int MIN_CACHED_CAPACITY_SHIFT = 6;
+    private static final int MIN_CACHED_CAPACITY = 1 << MIN_CACHED_CAPACITY_SHIFT;
+
+    private static final int CACHE_SIZE;
+    private static final int MAX_CACHED_CAPACITY;
+    private static final long MAX_CACHED_BYTES_PER_THREAD;
+    private static final boolean ENABLED;
+
+    private static final LongCounter hits = PlatformDependent.newLongCounter();
+    private static final LongCounter misses = PlatformDependent.newLongCounter();
+    private static final LongCounter overflows = PlatformDependent.newLongCounter();
+    private static final LongCounter cachedBuffers = PlatformDependent.newLongCounter();
+    private static final LongCounter cachedBytes = PlatformDependent.newLongCounter();
+
+    static final UnpooledDirectBufferCacheMetric METRIC = new UnpooledDirectBufferCacheMetric() {
+        @Override
+        public long hits() {
+            return hits.value();
+        }
+
+        @Override
+        public long misses() {
+            return misses.value();
+        }
+
+        @Override
+        public long overflows() {
+            return overflows.value();
+        }
+
+        @Override
+        public long cachedBuffers() {
+            return cachedBuffers.value();
+        }
+
+        @Override
+        public long cachedBytes() {
+            return cachedBytes.value();
+        }
+    };
+
+    private static final FastThreadLocal<ThreadCache> THREAD_CACHE = new FastThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+
+        @Override
+        protected void onRemoval(ThreadCache cache) {
+            cache.free();
+        }
+    };
+
+    static {
+        CACHE_SIZE = Math.max(0, SystemPropertyUtil.getInt("io.netty.unpooled.directBufferCacheSize", 8));
+
+        // Rounded down to a size class.
+        int maxCachedCapacity = SystemPropertyUtil.getInt("io.netty.unpooled.maxCachedDirectBufferCapacity", 64 * 1024);
+        MAX_CACHED_CAPACITY = maxCachedCapacity < MIN_CACHED_CAPACITY ? 0 : Integer.highestOneBit(maxCachedCapacity);
+
+        MAX_CACHED_BYTES_PER_THREAD = Math.max(0, SystemPropertyUtil.getLong(
+                "io.netty.unpooled.maxCachedDirectBufferBytesPerThread", 1024 * 1024));
+
+        ENABLED = CACHE_SIZE > 0 && MAX_CACHED_CAPACITY > 0 && MAX_CACHED_BYTES_PER_THREAD > 0;
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("-Dio.netty.unpooled.directBufferCacheSize: {}", CACHE_SIZE);
+            logger.debug("-Dio.netty.unpooled.maxCachedDirectBufferCapacity: {}", MAX_CACHED_CAPACITY);
+            logger.debug("-Dio.netty.unpooled.maxCachedDirectBufferBytesPerThread: {}", MAX_CACHED_BYTES_PER_THREAD);
+        }
+    }
+
+    static ByteBuffer allocateDirect(int capacity) {
+        return allocate(capacity, false);
+    }
+
+    static ByteBuffer allocateDirectNoCleaner(int capacity) {
+        return allocate(capacity, true);
+    }
+
+    static void freeDirect(ByteBuffer buffer) {
+        free(buffer, false);
+    }
+
+    static void freeDirectNoCleaner(ByteBuffer buffer) {
+        free(buffer, true);
+    }
+
+    /**
+     * Returns a buffer with {@code capacity} remaining bytes which starts with the content of {@code buffer}, and
+     * which was allocated by {@link #allocateDirectNoCleaner(int)} like {@code buffer}. If the buffer needs to grow
+     * beyond its size class, it is reallocated or replaced by a cached buffer.
+     */
+    static ByteBuffer reallocateDirectNoCleaner(ByteBuffer buffer, int capacity) {
+        if (capacity <= buffer.capacity()) {
+            buffer.clear();
+            buffer.limit(capacity);
+            return buffer;
+        }
+        if (!isCacheable(capacity, true)) {
+            return PlatformDependent.reallocateDirectNoCleaner(buffer, capacity);
+        }
+        ByteBuffer newBuffer = allocate(capacity, true);
+        PlatformDependent.copyMemory(PlatformDependent.directBufferAddress(buffer),
+                PlatformDependent.directBufferAddress(newBuffer), buffer.capacity());
+        free(buffer, true);
+        return newBuffer;
+    }
+
+    private static boolean isCacheable(int capacity, boolean noCleaner) {
+        return ENABLED && capacity > 0 && capacity <= MAX_CACHED_CAPACITY &&
+                (!noCleaner || Thread.currentThread() instanceof FastThreadLocalThread);
+    }
+
+    private static int sizeIdx(int capacity) {
+        int normalizedCapacity = Math.max(MIN_CACHED_CAPACITY, capacity);
+        // The number of bits needed for the next power of two minus the bits of the smallest size class.
+        return Integer.SIZE - Integer.numberOfLeadingZeros(normalizedCapacity - 1) - MIN_CACHED_CAPACITY_SHIFT;
+    }
+
+    private static ByteBuffer allocate(int capacity, boolean noCleaner) {
+        if (!isCacheable(capacity, noCleaner)) {
+            return newBuffer(capacity, noCleaner);
+        }
+        int sizeIdx = sizeIdx(capacity);
+        ByteBuffer buffer = THREAD_CACHE.get().poll(sizeIdx, noCleaner);
+        if (buffer == null) {
+            misses.increment();
+            buffer = newBuffer(MIN_CACHED_CAPACITY << sizeIdx, noCleaner);
+        } else {
+            hits.increment();
+            buffer.clear();
+        }
+        buffer.limit(capacity);
+        return buffer;
+    }
+
+    private static void free(ByteBuffer buffer, boolean noCleaner) {
+        int capacity = buffer.capacity();
+        // Only buffers of a size class can serve later allocations.
+        if (capacity >= MIN_CACHED_CAPACITY && (capacity & capacity - 1) == 0 && isCacheable(capacity, noCleaner)) {
+            if (THREAD_CACHE.get().offer(sizeIdx(capacity), noCleaner, buffer)) {
+                return;
+            }
+            overflows.increment();
+        }
+        freeBuffer(buffer, noCleaner);
+    }
+
+    private static ByteBuffer newBuffer(int capacity, boolean noCleaner) {
+        return noCleaner ? PlatformDependent.allocateDirectNoCleaner(capacity) : ByteBuffer.allocateDirect(capacity);
+    }
+
+    private static void freeBuffer(ByteBuffer buffer, boolean noCleaner) {
+        if (noCleaner) {
+            PlatformDependent.freeDirectNoCleaner(buffer);
+        } else {
+            PlatformDependent.freeDirectBuffer(buffer);
+        }
+    }
+
+    private static final class ThreadCache {
+        private final ArrayDeque<ByteBuffer>[] buffers = newQueues();
+        private final ArrayDeque<ByteBuffer>[] noCleanerBuffers = newQueues();
+        private long bytes;
+
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        private static ArrayDeque<ByteBuffer>[] newQueues() {
+            ArrayDeque<ByteBuffer>[] queues = new ArrayDeque[sizeIdx(MAX_CACHED_CAPACITY) + 1];
+            for (int i = 0; i < queues.length; i++) {
+                queues[i] = new ArrayDeque<ByteBuffer>(CACHE_SIZE);
+            }
+            return queues;
+        }
+
+        ByteBuffer poll(int sizeIdx, boolean noCleaner) {
+            // The most recently released buffer is the most likely one to still be in the CPU caches.
+            ByteBuffer buffer = (noCleaner ? noCleanerBuffers : buffers)[sizeIdx].pollLast();
+            if (buffer != null) {
+                bytes -= buffer.capacity();
+                cachedBuffers.decrement();
+                cachedBytes.add(-buffer.capacity());
+            }
+            return buffer;
+        }
+
+        boolean offer(int sizeIdx, boolean noCleaner, ByteBuffer buffer) {
+            ArrayDeque<ByteBuffer> queue = (noCleaner ? noCleanerBuffers : buffers)[sizeIdx];
+            int capacity = buffer.capacity();
+            if (queue.size() >= CACHE_SIZE || bytes + capacity > MAX_CACHED_BYTES_PER_THREAD) {
+                return false;
+            }
+            queue.addLast(buffer);
+            bytes += capacity;
+            cachedBuffers.increment();
+            cachedBytes.add(capacity);
+            return true;
+        }
+
+        /**
+         * Frees all cached buffers, called when the thread terminates.
+         */
+        void free() {
+            free(buffers, false);
+            free(noCleanerBuffers, true);
+        }
+
+        private void free(ArrayDeque<ByteBuffer>[] queues, boolean noCleaner) {
+            for (ArrayDeque<ByteBuffer> queue: queues) {
+                for (;;) {
+                    ByteBuffer buffer = queue.pollLast();
+                    if (buffer == null) {
+                        break;
+                    }
+                    bytes -= buffer.capacity();
+                    cachedBuffers.decrement();
+                    cachedBytes.add(-buffer.capacity());
+                    freeBuffer(buffer, noCleaner);
+                }
+            }
+        }
+    }
+
+    private UnpooledDirectBufferCache() { }
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.buffer;
+
+/**
+ * Expose metrics for the per-thread caches the memory of unpooled direct buffers is reused from, see
+ * {@link UnpooledByteBufAllocator#directBufferCacheMetric()}.
+ */
+public interface UnpooledDirectBufferCacheMetric {
+
+    /**
+     * Returns the number of allocations which were served from a cache.
+     */
+    long hits();
+
+    /**
+     * Returns the number of allocations of a cacheable size which had to allocate new memory.
+     */
+    long misses();
+
+    /**
+     * Returns the number of released buffers which were freed because the cache of the releasing thread was full.
+     */
+    long overflows();
+
+    /**
+     * Returns the number of buffers all caches currently hold.
+     */
+    long cachedBuffers();
+
+    /**
+     * Returns the number of bytes all caches currently hold.
+     */
+    long cachedBytes();
+}
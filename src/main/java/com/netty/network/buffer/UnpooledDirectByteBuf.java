@@ -65,7 +65,7 @@ public class UnpooledDirectByteBuf extends AbstractReferenceCountedByteBuf {
         }
 
         this.alloc = alloc;
-        setByteBuffer(ByteBuffer.allocateDirect(initialCapacity));
+        setByteBuffer(allocateDirect(initialCapacity));
     }
 
     /**
@@ -153,10 +153,11 @@ public class UnpooledDirectByteBuf extends AbstractReferenceCountedByteBuf {
         if (newCapacity > oldCapacity) {
             ByteBuffer oldBuffer = buffer;
             ByteBuffer newBuffer = allocateDirect(newCapacity);
-            oldBuffer.position(0).limit(oldBuffer.capacity());
-            newBuffer.position(0).limit(oldBuffer.capacity());
+            oldBuffer.position(0).limit(oldCapacity);
+            newBuffer.position(0).limit(oldCapacity);
             newBuffer.put(oldBuffer);
-            newBuffer.clear();
+            // The allocated buffer may be larger than requested.
+            newBuffer.position(0).limit(newCapacity);
             setByteBuffer(newBuffer);
         } else if (newCapacity < oldCapacity) {
             ByteBuffer oldBuffer = buffer;
@@ -168,7 +169,7 @@ public class UnpooledDirectByteBuf extends AbstractReferenceCountedByteBuf {
                 oldBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.put(oldBuffer);
-                newBuffer.clear();
+                newBuffer.position(0).limit(newCapacity);
             } else {
                 setIndex(newCapacity, newCapacity);
             }
@@ -160,10 +160,11 @@ public class UnpooledUnsafeDirectByteBuf extends AbstractReferenceCountedByteBuf
         if (newCapacity > oldCapacity) {
             ByteBuffer oldBuffer = buffer;
             ByteBuffer newBuffer = allocateDirect(newCapacity);
-            oldBuffer.position(0).limit(oldBuffer.capacity());
-            newBuffer.position(0).limit(oldBuffer.capacity());
+            oldBuffer.position(0).limit(oldCapacity);
+            newBuffer.position(0).limit(oldCapacity);
             newBuffer.put(oldBuffer);
-            newBuffer.clear();
+            // The allocated buffer may be larger than requested.
+            newBuffer.position(0).limit(newCapacity);
             setByteBuffer(newBuffer, true);
         } else if (newCapacity < oldCapacity) {
             ByteBuffer oldBuffer = buffer;
@@ -175,7 +176,7 @@ public class UnpooledUnsafeDirectByteBuf extends AbstractReferenceCountedByteBuf
                 oldBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.put(oldBuffer);
-                newBuffer.clear();
+                newBuffer.position(0).limit(newCapacity);
             } else {
                 setIndex(newCapacity, newCapacity);
             }
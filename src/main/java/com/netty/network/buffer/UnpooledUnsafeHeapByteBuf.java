@@ -30,6 +30,11 @@ final class UnpooledUnsafeHeapByteBuf extends UnpooledHeapByteBuf {
         super(alloc, initialCapacity, maxCapacity);
     }
 
+    @Override
+    protected byte[] allocateArray(int initialCapacity) {
+        return PlatformDependent.allocateUninitializedArray(initialCapacity);
+    }
+
     @Override
     public byte getByte(int index) {
         checkIndex(index);
@@ -20,7 +20,7 @@ import com.netty.network.util.internal.PlatformDependent;
 
 import java.nio.ByteBuffer;
 
-final class UnpooledUnsafeNoCleanerDirectByteBuf extends UnpooledUnsafeDirectByteBuf {
+class UnpooledUnsafeNoCleanerDirectByteBuf extends UnpooledUnsafeDirectByteBuf {
 
     UnpooledUnsafeNoCleanerDirectByteBuf(ByteBufAllocator alloc, int initialCapacity, int maxCapacity) {
         super(alloc, initialCapacity, maxCapacity);
@@ -36,6 +36,13 @@ final class UnpooledUnsafeNoCleanerDirectByteBuf extends UnpooledUnsafeDirectByt
         PlatformDependent.freeDirectNoCleaner(buffer);
     }
 
+    /**
+     * Grow a direct {@link ByteBuffer} allocated by {@link #allocateDirect(int)} to the given capacity.
+     */
+    ByteBuffer reallocateDirect(ByteBuffer oldBuffer, int newCapacity) {
+        return PlatformDependent.reallocateDirectNoCleaner(oldBuffer, newCapacity);
+    }
+
     @Override
     public ByteBuf capacity(int newCapacity) {
         ensureAccessible();
@@ -49,7 +56,7 @@ final class UnpooledUnsafeNoCleanerDirectByteBuf extends UnpooledUnsafeDirectByt
 
         if (newCapacity > oldCapacity) {
             ByteBuffer oldBuffer = buffer;
-            ByteBuffer newBuffer = PlatformDependent.reallocateDirectNoCleaner(oldBuffer, newCapacity);
+            ByteBuffer newBuffer = reallocateDirect(oldBuffer, newCapacity);
             setByteBuffer(newBuffer, false);
         } else if (newCapacity < oldCapacity) {
             ByteBuffer oldBuffer = buffer;
@@ -62,7 +69,7 @@ final class UnpooledUnsafeNoCleanerDirectByteBuf extends UnpooledUnsafeDirectByt
                 oldBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.position(readerIndex).limit(writerIndex);
                 newBuffer.put(oldBuffer);
-                newBuffer.clear();
+                newBuffer.position(0).limit(newCapacity);
             } else {
                 setIndex(newCapacity, newCapacity);
             }
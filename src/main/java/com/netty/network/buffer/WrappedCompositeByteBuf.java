@@ -309,6 +309,26 @@ class WrappedCompositeByteBuf extends CompositeByteBuf {
         return wrapped.readLongLE();
     }
 
+    @Override
+    public int readVarInt32() {
+        return wrapped.readVarInt32();
+    }
+
+    @Override
+    public long readVarInt64() {
+        return wrapped.readVarInt64();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        return wrapped.readZigZagVarInt32();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        return wrapped.readZigZagVarInt64();
+    }
+
     @Override
     public char readChar() {
         return wrapped.readChar();
@@ -469,6 +489,30 @@ class WrappedCompositeByteBuf extends CompositeByteBuf {
         return wrapped.writeLongLE(value);
     }
 
+    @Override
+    public CompositeByteBuf writeVarInt32(int value) {
+        wrapped.writeVarInt32(value);
+        return this;
+    }
+
+    @Override
+    public CompositeByteBuf writeVarInt64(long value) {
+        wrapped.writeVarInt64(value);
+        return this;
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt32(int value) {
+        wrapped.writeZigZagVarInt32(value);
+        return this;
+    }
+
+    @Override
+    public CompositeByteBuf writeZigZagVarInt64(long value) {
+        wrapped.writeZigZagVarInt64(value);
+        return this;
+    }
+
     @Override
     public int writeBytes(InputStream in, int length) throws IOException {
         return wrapped.writeBytes(in, length);
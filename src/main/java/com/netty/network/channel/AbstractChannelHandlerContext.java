@@ -17,6 +17,7 @@ package com.netty.network.channel;
 
 
 import com.netty.network.buffer.ByteBufAllocator;
+import com.netty.network.buffer.ByteBufUtil;
 import com.netty.network.logging.InternalLogger;
 import com.netty.network.logging.InternalLoggerFactory;
 import com.netty.network.util.*;
@@ -349,6 +350,8 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
         if (executor.inEventLoop()) {
             next.invokeChannelRead(m);
         } else {
+            // The message is released by another thread from now on.
+            ByteBufUtil.markShared(m);
             executor.execute(new Runnable() {
                 @Override
                 public void run() {
@@ -818,6 +821,8 @@ abstract class AbstractChannelHandlerContext extends DefaultAttributeMap
                 next.invokeWrite(m, promise);
             }
         } else {
+            // The message is released by another thread from now on.
+            ByteBufUtil.markShared(m);
             AbstractWriteTask task;
             if (flush) {
                 task = WriteAndFlushTask.newInstance(next, m, promise);
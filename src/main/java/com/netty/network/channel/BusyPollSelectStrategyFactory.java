@@ -0,0 +1,102 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.channel;
+
+import com.netty.network.util.IntSupplier;
+import com.netty.network.util.internal.LongCounter;
+import com.netty.network.util.internal.ObjectUtil;
+import com.netty.network.util.internal.PlatformDependent;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Factory of {@link SelectStrategy}s which keep polling for I/O and tasks for a while before the event loop blocks
+ * in a select, which lowers the latency of I/O and of tasks submitted from other threads at the cost of CPU. Other
+ * threads do not wake up the selector while the event loop is polling. As a polling event loop keeps its thread busy,
+ * this only pays off if every event loop has a core of its own.
+ *
+ * The event loop polls until it either found work, which counts as a {@linkplain #spinHits() spin hit}, or did so
+ * for the configured number of times or the configured time, which counts as a {@linkplain #parks() park}.
+ */
+public final class BusyPollSelectStrategyFactory implements SelectStrategyFactory {
+
+    private final int maxSpins;
+    private final long maxSpinNanos;
+    private final LongCounter spinHits = PlatformDependent.newLongCounter();
+    private final LongCounter parks = PlatformDependent.newLongCounter();
+
+    /**
+     * Creates a new instance.
+     *
+     * @param maxSpins      the maximum number of times to poll before blocking.
+     * @param maxSpinTime   the maximum time to poll for before blocking.
+     * @param unit          the {@link TimeUnit} of {@code maxSpinTime}.
+     */
+    public BusyPollSelectStrategyFactory(int maxSpins, long maxSpinTime, TimeUnit unit) {
+        this.maxSpins = ObjectUtil.checkPositive(maxSpins, "maxSpins");
+        ObjectUtil.checkPositive(maxSpinTime, "maxSpinTime");
+        maxSpinNanos = ObjectUtil.checkNotNull(unit, "unit").toNanos(maxSpinTime);
+    }
+
+    @Override
+    public SelectStrategy newSelectStrategy() {
+        return new BusyPollSelectStrategy();
+    }
+
+    /**
+     * Returns the number of times the event loops found work while polling.
+     */
+    public long spinHits() {
+        return spinHits.value();
+    }
+
+    /**
+     * Returns the number of times the event loops gave up polling and blocked.
+     */
+    public long parks() {
+        return parks.value();
+    }
+
+    private final class BusyPollSelectStrategy implements SelectStrategy {
+        private boolean spinning;
+        private int spins;
+        private long spinStartNanos;
+
+        @Override
+        public int calculateStrategy(IntSupplier selectSupplier, boolean hasTasks) throws Exception {
+            int selectedKeys = selectSupplier.get();
+            if (selectedKeys > 0 || hasTasks) {
+                if (spinning) {
+                    spinning = false;
+                    spinHits.increment();
+                }
+                return selectedKeys;
+            }
+
+            if (!spinning) {
+                spinning = true;
+                spins = 0;
+                spinStartNanos = System.nanoTime();
+            }
+            if (++spins < maxSpins && System.nanoTime() - spinStartNanos < maxSpinNanos) {
+                return CONTINUE;
+            }
+            spinning = false;
+            parks.increment();
+            return SELECT;
+        }
+    }
+}
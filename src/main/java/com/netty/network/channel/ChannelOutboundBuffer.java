@@ -26,6 +26,7 @@ import com.netty.network.logging.InternalLogger;
 import com.netty.network.logging.InternalLoggerFactory;
 import com.netty.network.buffer.ByteBuf;
 import com.netty.network.buffer.ByteBufHolder;
+import com.netty.network.buffer.PooledByteBufAllocator;
 import com.netty.network.buffer.Unpooled;
 
 import java.nio.ByteBuffer;
@@ -614,6 +615,7 @@ public final class ChannelOutboundBuffer {
             return;
         }
 
+        PooledByteBufAllocator.beginBulkRelease();
         try {
             inFail = true;
             for (;;) {
@@ -623,6 +625,7 @@ public final class ChannelOutboundBuffer {
             }
         } finally {
             inFail = false;
+            PooledByteBufAllocator.endBulkRelease();
         }
     }
 
@@ -648,6 +651,7 @@ public final class ChannelOutboundBuffer {
         }
 
         // Release all unflushed messages.
+        PooledByteBufAllocator.beginBulkRelease();
         try {
             Entry e = unflushedEntry;
             while (e != null) {
@@ -663,6 +667,7 @@ public final class ChannelOutboundBuffer {
             }
         } finally {
             inFail = false;
+            PooledByteBufAllocator.endBulkRelease();
         }
         clearNioBuffers();
     }
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2016 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+package com.netty.network.channel;
+
+import com.netty.network.util.concurrent.EventExecutor;
+import com.netty.network.util.concurrent.EventExecutorChooserFactory;
+import com.netty.network.util.internal.ThreadLocalRandom;
+import com.netty.network.util.internal.UnstableApi;
+
+/**
+ * {@link EventExecutorChooserFactory} which chooses the less loaded of two randomly picked {@link EventLoop}s, so
+ * that channels are registered with the event loops that have the least work instead of in turn, which may pile long
+ * lived busy channels onto a single event loop.
+ *
+ * An event loop which was {@linkplain SingleThreadEventLoop#busyPercent() busy} for a clearly smaller share of the
+ * recent time is less loaded, and otherwise the one with fewer
+ * {@linkplain SingleThreadEventLoop#registeredChannels() registered channels}. A backlog of tasks shows up as busy
+ * time. Event loops which do not provide these metrics are chosen at random.
+ */
+@UnstableApi
+public final class LoadAwareEventLoopChooserFactory implements EventExecutorChooserFactory {
+
+    public static final LoadAwareEventLoopChooserFactory INSTANCE = new LoadAwareEventLoopChooserFactory();
+
+    // Differences in the busy share of at most this many percentage points are considered noise.
+    private static final int BUSY_PERCENT_TOLERANCE = 10;
+
+    private LoadAwareEventLoopChooserFactory() { }
+
+    @Override
+    public EventExecutorChooser newChooser(EventExecutor[] executors) {
+        return new LoadAwareEventLoopChooser(executors);
+    }
+
+    private static final class LoadAwareEventLoopChooser implements EventExecutorChooser {
+        private final EventExecutor[] executors;
+
+        LoadAwareEventLoopChooser(EventExecutor[] executors) {
+            this.executors = executors;
+        }
+
+        @Override
+        public EventExecutor next() {
+            int length = executors.length;
+            if (length == 1) {
+                return executors[0];
+            }
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            int first = random.nextInt(length);
+            int second = random.nextInt(length - 1);
+            if (second >= first) {
+                second++;
+            }
+            EventExecutor a = executors[first];
+            EventExecutor b = executors[second];
+            return isLessLoaded(b, a) ? b : a;
+        }
+
+        private static boolean isLessLoaded(EventExecutor executor, EventExecutor other) {
+            if (!(executor instanceof SingleThreadEventLoop) || !(other instanceof SingleThreadEventLoop)) {
+                return false;
+            }
+            SingleThreadEventLoop loop = (SingleThreadEventLoop) executor;
+            SingleThreadEventLoop otherLoop = (SingleThreadEventLoop) other;
+            int busyPercent = loop.busyPercent();
+            int otherBusyPercent = otherLoop.busyPercent();
+            if (Math.abs(busyPercent - otherBusyPercent) > BUSY_PERCENT_TOLERANCE) {
+                return busyPercent < otherBusyPercent;
+            }
+            return loop.registeredChannels() < otherLoop.registeredChannels();
+        }
+    }
+}
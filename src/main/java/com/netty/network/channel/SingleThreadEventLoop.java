@@ -149,6 +149,24 @@ public abstract class SingleThreadEventLoop extends SingleThreadEventExecutor im
         return super.pendingTasks() + tailTasks.size();
     }
 
+    /**
+     * Returns the number of {@link Channel}s registered with this event loop, or {@code -1} if it does not keep track
+     * of them. The value is only an estimate if called from outside the event loop.
+     */
+    @UnstableApi
+    public int registeredChannels() {
+        return -1;
+    }
+
+    /**
+     * Returns the percentage of recent time this event loop spent on handling I/O and running tasks, or {@code -1} if
+     * it does not measure it.
+     */
+    @UnstableApi
+    public int busyPercent() {
+        return -1;
+    }
+
     /**
      * Marker interface for {@link Runnable} that will not trigger an {@link #wakeup(boolean)} in all cases.
      */
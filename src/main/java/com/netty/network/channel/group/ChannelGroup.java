@@ -106,6 +106,10 @@ public interface ChannelGroup extends Set<Channel>, Comparable<ChannelGroup> {
      * condition. The same is true for {@link ByteBufHolder}. Please note that this operation is asynchronous as
      * {@link Channel#write(Object)} is.
      *
+     * To write the same content to a large group, pass a buffer created by
+     * {@link com.netty.network.buffer.Unpooled#sharedPayloadBuffer(ByteBuf)}, whose duplicates do not share a
+     * reference count.
+     *
      * @return itself
      */
     ChannelGroupFuture write(Object message);
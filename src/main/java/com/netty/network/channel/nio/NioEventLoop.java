@@ -16,6 +16,8 @@
 package com.netty.network.channel.nio;
 
 
+import com.netty.network.buffer.ByteBufAllocator;
+import com.netty.network.buffer.PooledByteBufAllocator;
 import com.netty.network.channel.*;
 import com.netty.network.logging.InternalLogger;
 import com.netty.network.logging.InternalLoggerFactory;
@@ -53,6 +55,14 @@ public final class NioEventLoop extends SingleThreadEventLoop {
     private static final boolean DISABLE_KEYSET_OPTIMIZATION =
             SystemPropertyUtil.getBoolean("io.netty.noKeySetOptimization", false);
 
+    private static final boolean RELEASE_IDLE_MEMORY =
+            SystemPropertyUtil.getBoolean("io.netty.releaseIdleMemory", true);
+    // Minimum time between two attempts to give back pooled memory while idle.
+    private static final long RELEASE_IDLE_MEMORY_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    // Length of the window over which the share of busy time is measured, see busyPercent().
+    private static final long LOAD_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(1);
+
     private static final int MIN_PREMATURE_SELECTOR_RETURNS = 3;
     private static final int SELECTOR_AUTO_REBUILD_THRESHOLD;
 
@@ -101,6 +111,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         if (logger.isDebugEnabled()) {
             logger.debug("-Dio.netty.noKeySetOptimization: {}", DISABLE_KEYSET_OPTIMIZATION);
             logger.debug("-Dio.netty.selectorAutoRebuildThreshold: {}", SELECTOR_AUTO_REBUILD_THRESHOLD);
+            logger.debug("-Dio.netty.releaseIdleMemory: {}", RELEASE_IDLE_MEMORY);
         }
     }
 
@@ -122,9 +133,20 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
     private final SelectStrategy selectStrategy;
 
+    /**
+     * Whether the loop is polling for I/O and tasks instead of blocking in a select, see
+     * {@link BusyPollSelectStrategyFactory}, in which case there is no need to wake up the selector.
+     */
+    private volatile boolean spinning;
+
     private volatile int ioRatio = 50;
     private int cancelledKeys;
     private boolean needsToSelectAgain;
+    private long lastIdleMemoryReleaseNanos;
+    private volatile PooledByteBufAllocator idleMemoryAllocator = defaultIdleMemoryAllocator();
+    private long loadWindowStartNanos = System.nanoTime();
+    private long busyNanosInWindow;
+    private volatile int busyPercent;
 
     NioEventLoop(NioEventLoopGroup parent, Executor executor, SelectorProvider selectorProvider,
                  SelectStrategy strategy, RejectedExecutionHandler rejectedExecutionHandler) {
@@ -249,6 +271,21 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    @Override
+    public int registeredChannels() {
+        return selector.keys().size() - cancelledKeys;
+    }
+
+    /**
+     * Returns the percentage of time this event loop spent on I/O and tasks instead of waiting for them in select,
+     * measured over the last window of about a second. As an idle event loop only starts a new window once its
+     * select returned, which it does at least once per second, the value may lag behind by up to a second.
+     */
+    @Override
+    public int busyPercent() {
+        return busyPercent;
+    }
+
     /**
      * Registers an arbitrary {@link SelectableChannel}, not necessarily created by Netty, to the {@link Selector}
      * of this event loop.  Once the specified {@link SelectableChannel} is registered, the specified {@code task} will
@@ -298,6 +335,17 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         this.ioRatio = ioRatio;
     }
 
+    /**
+     * Sets the {@link PooledByteBufAllocator} whose idle chunks are released and whose thread local cache of this
+     * event loop is trimmed while the event loop is idle, or {@code null} to release no memory. The default is
+     * {@link ByteBufAllocator#DEFAULT} if it is pooled. Only this allocator is handled, so channels configured with
+     * a pooled allocator of their own should set it here. Nothing is released if
+     * {@code -Dio.netty.releaseIdleMemory} is {@code false}.
+     */
+    public void setIdleMemoryAllocator(PooledByteBufAllocator idleMemoryAllocator) {
+        this.idleMemoryAllocator = idleMemoryAllocator;
+    }
+
     /**
      * Replaces the current {@link Selector} of this event loop with newly created {@link Selector}s to work
      * around the infamous epoll 100% CPU bug.
@@ -386,8 +434,16 @@ public final class NioEventLoop extends SingleThreadEventLoop {
             try {
                 switch (selectStrategy.calculateStrategy(selectNowSupplier, hasTasks())) {
                     case SelectStrategy.CONTINUE:
+                        if (!spinning) {
+                            spinning = true;
+                        }
                         continue;
                     case SelectStrategy.SELECT:
+                        if (spinning) {
+                            // Tasks which were added while spinning did not wake up the selector, but select(...)
+                            // checks for tasks before it blocks.
+                            spinning = false;
+                        }
                         select(wakenUp.getAndSet(false));
 
                         // 'wakenUp.compareAndSet(false, true)' is always evaluated
@@ -427,6 +483,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
                 cancelledKeys = 0;
                 needsToSelectAgain = false;
+                final long ioStartTime = System.nanoTime();
                 final int ioRatio = this.ioRatio;
                 if (ioRatio == 100) {
                     try {
@@ -436,7 +493,6 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         runAllTasks();
                     }
                 } else {
-                    final long ioStartTime = System.nanoTime();
                     try {
                         processSelectedKeys();
                     } finally {
@@ -445,6 +501,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                         runAllTasks(ioTime * (100 - ioRatio) / ioRatio);
                     }
                 }
+                updateLoad(ioStartTime);
             } catch (Throwable t) {
                 handleLoopException(t);
             }
@@ -462,6 +519,17 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    private void updateLoad(long busyStartNanos) {
+        long currentTimeNanos = System.nanoTime();
+        busyNanosInWindow += currentTimeNanos - busyStartNanos;
+        long windowNanos = currentTimeNanos - loadWindowStartNanos;
+        if (windowNanos >= LOAD_WINDOW_NANOS) {
+            busyPercent = (int) Math.min(100, busyNanosInWindow * 100 / windowNanos);
+            loadWindowStartNanos = currentTimeNanos;
+            busyNanosInWindow = 0;
+        }
+    }
+
     private static void handleLoopException(Throwable t) {
         logger.warn("Unexpected exception in the selector loop.", t);
 
@@ -705,7 +773,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
 
     @Override
     protected void wakeup(boolean inEventLoop) {
-        if (!inEventLoop && wakenUp.compareAndSet(false, true)) {
+        if (!inEventLoop && !spinning && wakenUp.compareAndSet(false, true)) {
             selector.wakeup();
         }
     }
@@ -776,6 +844,7 @@ public final class NioEventLoop extends SingleThreadEventLoop {
                 if (time - TimeUnit.MILLISECONDS.toNanos(timeoutMillis) >= currentTimeNanos) {
                     // timeoutMillis elapsed without anything selected.
                     selectCnt = 1;
+                    releaseIdleMemory(time);
                 } else if (SELECTOR_AUTO_REBUILD_THRESHOLD > 0 &&
                         selectCnt >= SELECTOR_AUTO_REBUILD_THRESHOLD) {
                     // The selector returned prematurely many times in a row.
@@ -811,6 +880,39 @@ public final class NioEventLoop extends SingleThreadEventLoop {
         }
     }
 
+    /**
+     * Returns {@link ByteBufAllocator#DEFAULT} if idle memory is released and it is pooled, {@code null} otherwise.
+     */
+    private static PooledByteBufAllocator defaultIdleMemoryAllocator() {
+        // Do not touch the default allocator at all if idle memory is never released.
+        if (RELEASE_IDLE_MEMORY && ByteBufAllocator.DEFAULT instanceof PooledByteBufAllocator) {
+            return (PooledByteBufAllocator) ByteBufAllocator.DEFAULT;
+        }
+        return null;
+    }
+
+    /**
+     * Gives back pooled memory this {@link EventLoop} does not need while it is idle: the thread local cache of
+     * the idle memory allocator, see {@link #setIdleMemoryAllocator(PooledByteBufAllocator)}, is trimmed and chunks
+     * that stayed unused long enough are released.
+     */
+    private void releaseIdleMemory(long currentTimeNanos) {
+        if (!RELEASE_IDLE_MEMORY || currentTimeNanos - lastIdleMemoryReleaseNanos < RELEASE_IDLE_MEMORY_INTERVAL) {
+            return;
+        }
+        lastIdleMemoryReleaseNanos = currentTimeNanos;
+
+        PooledByteBufAllocator pooled = idleMemoryAllocator;
+        if (pooled != null) {
+            try {
+                pooled.trimCurrentThreadCache();
+                pooled.releaseIdleChunks();
+            } catch (Throwable t) {
+                logger.warn("Failed to release idle pooled memory.", t);
+            }
+        }
+    }
+
     private void selectAgain() {
         needsToSelectAgain = false;
         try {
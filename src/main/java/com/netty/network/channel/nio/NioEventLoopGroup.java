@@ -16,6 +16,7 @@
 package com.netty.network.channel.nio;
 
 
+import com.netty.network.buffer.PooledByteBufAllocator;
 import com.netty.network.channel.DefaultSelectStrategyFactory;
 import com.netty.network.channel.EventLoop;
 import com.netty.network.channel.MultithreadEventLoopGroup;
@@ -111,6 +112,16 @@ public class NioEventLoopGroup extends MultithreadEventLoopGroup {
         }
     }
 
+    /**
+     * Sets the {@link PooledByteBufAllocator} whose memory the child event loops release while they are idle, see
+     * {@link NioEventLoop#setIdleMemoryAllocator(PooledByteBufAllocator)}.
+     */
+    public void setIdleMemoryAllocator(PooledByteBufAllocator idleMemoryAllocator) {
+        for (EventExecutor e: this) {
+            ((NioEventLoop) e).setIdleMemoryAllocator(idleMemoryAllocator);
+        }
+    }
+
     /**
      * Replaces the current {@link Selector}s of the child event loops with newly created {@link Selector}s to work
      * around the  infamous epoll 100% CPU bug.
@@ -642,6 +642,30 @@ final class ReplayingDecoderByteBuf extends ByteBuf {
         return buffer.readLongLE();
     }
 
+    @Override
+    public int readVarInt32() {
+        checkReadableVarInt();
+        return buffer.readVarInt32();
+    }
+
+    @Override
+    public long readVarInt64() {
+        checkReadableVarInt();
+        return buffer.readVarInt64();
+    }
+
+    @Override
+    public int readZigZagVarInt32() {
+        checkReadableVarInt();
+        return buffer.readZigZagVarInt32();
+    }
+
+    @Override
+    public long readZigZagVarInt64() {
+        checkReadableVarInt();
+        return buffer.readZigZagVarInt64();
+    }
+
     @Override
     public int readMedium() {
         checkReadableBytes(3);
@@ -1024,6 +1048,26 @@ final class ReplayingDecoderByteBuf extends ByteBuf {
         throw reject();
     }
 
+    @Override
+    public ByteBuf writeVarInt32(int value) {
+        throw reject();
+    }
+
+    @Override
+    public ByteBuf writeVarInt64(long value) {
+        throw reject();
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt32(int value) {
+        throw reject();
+    }
+
+    @Override
+    public ByteBuf writeZigZagVarInt64(long value) {
+        throw reject();
+    }
+
     @Override
     public ByteBuf writeMedium(int value) {
         throw reject();
@@ -1096,6 +1140,21 @@ final class ReplayingDecoderByteBuf extends ByteBuf {
         }
     }
 
+    /**
+     * Replays unless the buffer contains the last byte of the varint at the current {@code readerIndex}, or the
+     * maximum number of bytes of a varint.
+     */
+    private void checkReadableVarInt() {
+        int readerIndex = buffer.readerIndex();
+        int readableBytes = Math.min(buffer.readableBytes(), 10);
+        for (int i = 0; i < readableBytes; i ++) {
+            if (buffer.getByte(readerIndex + i) >= 0) {
+                return;
+            }
+        }
+        checkReadableBytes(10);
+    }
+
     @Override
     public ByteBuf discardSomeReadBytes() {
         throw reject();
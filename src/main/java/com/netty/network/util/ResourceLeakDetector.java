@@ -28,6 +28,8 @@ import java.lang.ref.ReferenceQueue;
 import java.util.ArrayDeque;
 import java.util.Deque;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -44,6 +46,11 @@ public class ResourceLeakDetector<T> {
     private static final int DEFAULT_MAX_RECORDS = 4;
     private static final int MAX_RECORDS;
 
+    private static final String PROP_TRACK_SITES = "io.netty.leakDetection.trackSites";
+    private static final String PROP_MAX_SITES = "io.netty.leakDetection.maxSites";
+    private static final int DEFAULT_MAX_SITES = 1024;
+    private static final int MAX_SITES;
+
     /**
      * Represents the level of resource leak detection.
      */
@@ -70,6 +77,7 @@ public class ResourceLeakDetector<T> {
     }
 
     private static Level level;
+    private static boolean trackSites;
 
     private static final InternalLogger logger = InternalLoggerFactory.getInstance(ResourceLeakDetector.class);
 
@@ -100,11 +108,15 @@ public class ResourceLeakDetector<T> {
         }
 
         MAX_RECORDS = SystemPropertyUtil.getInt(PROP_MAX_RECORDS, DEFAULT_MAX_RECORDS);
+        MAX_SITES = SystemPropertyUtil.getInt(PROP_MAX_SITES, DEFAULT_MAX_SITES);
 
         ResourceLeakDetector.level = level;
+        trackSites = SystemPropertyUtil.getBoolean(PROP_TRACK_SITES, false);
         if (logger.isDebugEnabled()) {
             logger.debug("-D{}: {}", PROP_LEVEL, level.name().toLowerCase());
             logger.debug("-D{}: {}", PROP_MAX_RECORDS, MAX_RECORDS);
+            logger.debug("-D{}: {}", PROP_TRACK_SITES, trackSites);
+            logger.debug("-D{}: {}", PROP_MAX_SITES, MAX_SITES);
         }
     }
 
@@ -143,12 +155,36 @@ public class ResourceLeakDetector<T> {
         return level;
     }
 
+    /**
+     * Sets whether {@link Level#SIMPLE} remembers where sampled resources were allocated, so leaks are reported with
+     * the calling frames and counted per allocation site. Only the first, second, fourth, eighth... leak of a site is
+     * logged, see {@link #leaksBySite()} for all counts.
+     *
+     * Unlike {@link Level#ADVANCED} accesses are not recorded, and the stack of a sampled allocation is captured
+     * without being formatted. It is only inspected once the resource leaked, so this is cheap enough to stay enabled
+     * in production.
+     */
+    public static void setSiteTracking(boolean trackSites) {
+        ResourceLeakDetector.trackSites = trackSites;
+    }
+
+    /**
+     * Returns {@code true} if leaks are counted per allocation site, see {@link #setSiteTracking(boolean)}.
+     */
+    public static boolean isSiteTracking() {
+        return trackSites;
+    }
+
     /** the linked list of active resources */
     private final DefaultResourceLeak head = new DefaultResourceLeak(null);
     private final DefaultResourceLeak tail = new DefaultResourceLeak(null);
 
     private final ReferenceQueue<Object> refQueue = new ReferenceQueue<Object>();
     private final ConcurrentMap<String, Boolean> reportedLeaks = PlatformDependent.newConcurrentHashMap();
+    private final ConcurrentMap<Long, ResourceLeakSite> sites = PlatformDependent.newConcurrentHashMap();
+    // Counts the leaks of all sites once there are MAX_SITES.
+    private final ResourceLeakSite otherSites = new ResourceLeakSite(NEWLINE + "\t(more than " + MAX_SITES +
+            " sites, use system property " + PROP_MAX_SITES + " to increase the limit)");
 
     private final String resourceType;
     private final int samplingInterval;
@@ -223,6 +259,9 @@ public class ResourceLeakDetector<T> {
         if (level.ordinal() < Level.PARANOID.ordinal()) {
             if ((++ leakCheckCnt & mask) == 0) {
                 reportLeak(level);
+                if (level == Level.SIMPLE && trackSites) {
+                    return new DefaultResourceLeak(obj, new Throwable());
+                }
                 return new DefaultResourceLeak(obj);
             } else {
                 return null;
@@ -233,6 +272,39 @@ public class ResourceLeakDetector<T> {
         }
     }
 
+    private ResourceLeakSite site(Throwable allocationTrace) {
+        StackTraceElement[] frames = ResourceLeakSite.callerFrames(allocationTrace);
+        Long key = ResourceLeakSite.hash(frames);
+        ResourceLeakSite site = sites.get(key);
+        if (site == null) {
+            if (sites.size() >= MAX_SITES) {
+                return otherSites;
+            }
+            ResourceLeakSite newSite = new ResourceLeakSite(ResourceLeakSite.describe(frames));
+            site = sites.putIfAbsent(key, newSite);
+            if (site == null) {
+                site = newSite;
+            }
+        }
+        return site;
+    }
+
+    /**
+     * Returns the number of leaks detected per allocation site, see {@link #setSiteTracking(boolean)}. The sites are
+     * formatted like a stack trace.
+     */
+    public final Map<String, Long> leaksBySite() {
+        Map<String, Long> leaks = new HashMap<String, Long>();
+        for (ResourceLeakSite site: sites.values()) {
+            leaks.put(site.description, site.leaked.get());
+        }
+        long otherLeaks = otherSites.leaked.get();
+        if (otherLeaks > 0) {
+            leaks.put(otherSites.description, otherLeaks);
+        }
+        return leaks;
+    }
+
     private void reportLeak(Level level) {
         if (!logger.isErrorEnabled()) {
             for (;;) {
@@ -266,6 +338,15 @@ public class ResourceLeakDetector<T> {
                 continue;
             }
 
+            if (ref.allocationTrace != null) {
+                ResourceLeakSite site = site(ref.allocationTrace);
+                long leaked = site.leaked.incrementAndGet();
+                if ((leaked & leaked - 1) == 0) {
+                    reportSiteLeak(resourceType, site.description, leaked);
+                }
+                continue;
+            }
+
             String records = ref.toString();
             if (reportedLeaks.putIfAbsent(records, Boolean.TRUE) == null) {
                 if (records.isEmpty()) {
@@ -288,6 +369,20 @@ public class ResourceLeakDetector<T> {
                 resourceType, records);
     }
 
+    /**
+     * This method is called when a leak of a resource whose allocation site was tracked is detected, see
+     * {@link #setSiteTracking(boolean)}. It is only called for the first, second, fourth, eighth... leak of every
+     * site, and can be overridden for tracking how many times leaks have been detected.
+     *
+     * @param site      the calling frames of the site
+     * @param leaked    the number of leaks from this site so far
+     */
+    protected void reportSiteLeak(String resourceType, String site, long leaked) {
+        logger.error("LEAK: {}.release() was not called before it's garbage-collected ({} leak(s) from this site). " +
+                "See http://netty.io/wiki/reference-counted-objects.html for more information.{}Allocated at:{}",
+                resourceType, leaked, NEWLINE, site);
+    }
+
     /**
      * This method is called when an untraced leak is detected. It can be overridden for tracking how many times leaks
      * have been detected.
@@ -313,6 +408,8 @@ public class ResourceLeakDetector<T> {
 
     private final class DefaultResourceLeak extends PhantomReference<Object> implements ResourceLeak {
         private final String creationRecord;
+        // Captured when the resource was allocated if sites are tracked, the stack trace is only filled in on a leak.
+        final Throwable allocationTrace;
         private final Deque<String> lastRecords = new ArrayDeque<String>();
         private final AtomicBoolean freed;
         private DefaultResourceLeak prev;
@@ -320,7 +417,12 @@ public class ResourceLeakDetector<T> {
         private int removedRecords;
 
         DefaultResourceLeak(Object referent) {
+            this(referent, null);
+        }
+
+        DefaultResourceLeak(Object referent, Throwable allocationTrace) {
             super(referent, referent != null? refQueue : null);
+            this.allocationTrace = allocationTrace;
 
             if (referent != null) {
                 Level level = getLevel();
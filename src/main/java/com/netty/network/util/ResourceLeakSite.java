@@ -0,0 +1,86 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.util;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.netty.network.util.internal.StringUtil.NEWLINE;
+
+/**
+ * A place leaked resources were allocated from, see {@link ResourceLeakDetector#setSiteTracking(boolean)}. A site
+ * is identified by a hash of the first frames that called into the allocator.
+ */
+final class ResourceLeakSite {
+
+    // The number of calling frames that identify a site.
+    private static final int MAX_FRAMES = 4;
+
+    // Leading frames with these prefixes belong to the allocator and are not part of the site.
+    private static final String[] EXCLUDED_CLASS_PREFIXES = {
+            "com.netty.network.buffer.",
+            "com.netty.network.util.ResourceLeak",
+            "com.netty.network.util.ReferenceCountUtil"
+    };
+
+    final String description;
+    final AtomicLong leaked = new AtomicLong();
+
+    ResourceLeakSite(String description) {
+        this.description = description;
+    }
+
+    /**
+     * Returns the first frames of {@code trace}, which was created when the resource was allocated, that do not
+     * belong to the allocator.
+     */
+    static StackTraceElement[] callerFrames(Throwable trace) {
+        StackTraceElement[] frames = trace.getStackTrace();
+        int start = 0;
+        while (start < frames.length && isExcluded(frames[start].getClassName())) {
+            start++;
+        }
+        return Arrays.copyOfRange(frames, start, Math.min(start + MAX_FRAMES, frames.length));
+    }
+
+    private static boolean isExcluded(String className) {
+        for (String prefix: EXCLUDED_CLASS_PREFIXES) {
+            if (className.startsWith(prefix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long hash(StackTraceElement[] frames) {
+        long hash = frames.length;
+        for (StackTraceElement frame: frames) {
+            hash = hash * 31 + frame.getClassName().hashCode();
+            hash = hash * 31 + frame.getMethodName().hashCode();
+            hash = hash * 31 + frame.getLineNumber();
+        }
+        return hash;
+    }
+
+    static String describe(StackTraceElement[] frames) {
+        StringBuilder buf = new StringBuilder(256);
+        for (StackTraceElement frame: frames) {
+            buf.append(NEWLINE).append('\t').append(frame);
+        }
+        return buf.toString();
+    }
+}
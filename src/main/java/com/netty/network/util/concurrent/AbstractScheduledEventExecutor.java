@@ -4,6 +4,7 @@ package com.netty.network.util.concurrent;
 
 import com.netty.network.util.internal.ObjectUtil;
 
+import java.util.Collections;
 import java.util.PriorityQueue;
 import java.util.Queue;
 import java.util.concurrent.Callable;
@@ -16,6 +17,7 @@ import java.util.concurrent.TimeUnit;
 public abstract class AbstractScheduledEventExecutor extends AbstractEventExecutor {
 
     Queue<ScheduledFutureTask<?>> scheduledTaskQueue;
+    private volatile boolean timingWheelEnabled;
 
     protected AbstractScheduledEventExecutor() {
     }
@@ -29,12 +31,41 @@ public abstract class AbstractScheduledEventExecutor extends AbstractEventExecut
     }
 
     Queue<ScheduledFutureTask<?>> scheduledTaskQueue() {
+        Queue<ScheduledFutureTask<?>> scheduledTaskQueue = this.scheduledTaskQueue;
         if (scheduledTaskQueue == null) {
-            scheduledTaskQueue = new PriorityQueue<ScheduledFutureTask<?>>();
+            this.scheduledTaskQueue = scheduledTaskQueue = newScheduledTaskQueue();
+        } else if (timingWheelEnabled != scheduledTaskQueue instanceof TimingWheelScheduledTaskQueue) {
+            // Move the tasks scheduled so far over.
+            ScheduledFutureTask<?>[] scheduledTasks =
+                    scheduledTaskQueue.toArray(new ScheduledFutureTask<?>[scheduledTaskQueue.size()]);
+            scheduledTaskQueue.clear();
+            this.scheduledTaskQueue = scheduledTaskQueue = newScheduledTaskQueue();
+            Collections.addAll(scheduledTaskQueue, scheduledTasks);
         }
         return scheduledTaskQueue;
     }
 
+    private Queue<ScheduledFutureTask<?>> newScheduledTaskQueue() {
+        return timingWheelEnabled ? new TimingWheelScheduledTaskQueue()
+                : new PriorityQueue<ScheduledFutureTask<?>>();
+    }
+
+    /**
+     * Sets whether scheduled tasks are kept in a hierarchical timing wheel instead of a priority queue. A timing wheel
+     * adds and cancels tasks in constant time, which pays off when many tasks are outstanding at once, such as the
+     * timeouts of many channels. The tasks which were scheduled before are moved over once the next task is scheduled.
+     */
+    public void setTimingWheelEnabled(boolean timingWheelEnabled) {
+        this.timingWheelEnabled = timingWheelEnabled;
+    }
+
+    /**
+     * Returns {@code true} if scheduled tasks are kept in a hierarchical timing wheel.
+     */
+    public boolean isTimingWheelEnabled() {
+        return timingWheelEnabled;
+    }
+
     private static  boolean isNullOrEmpty(Queue<ScheduledFutureTask<?>> queue) {
         return queue == null || queue.isEmpty();
     }
@@ -150,6 +150,18 @@ public abstract class MultithreadEventExecutorGroup extends AbstractEventExecuto
         return children.length;
     }
 
+    /**
+     * Sets whether the child executors keep their scheduled tasks in a hierarchical timing wheel instead of a priority
+     * queue, see {@link AbstractScheduledEventExecutor#setTimingWheelEnabled(boolean)}.
+     */
+    public void setTimingWheelEnabled(boolean timingWheelEnabled) {
+        for (EventExecutor e: children) {
+            if (e instanceof AbstractScheduledEventExecutor) {
+                ((AbstractScheduledEventExecutor) e).setTimingWheelEnabled(timingWheelEnabled);
+            }
+        }
+    }
+
     /**
      * Create a new EventExecutor which will later then accessible via the {@link #next()}  method. This method will be
      * called for each thread that will serve this {@link MultithreadEventExecutorGroup}.
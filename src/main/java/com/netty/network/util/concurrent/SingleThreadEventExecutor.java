@@ -770,6 +770,37 @@ public abstract class SingleThreadEventExecutor extends AbstractScheduledEventEx
         }
     }
 
+    /**
+     * Executes all given tasks in their iteration order, like calling {@link #execute(Runnable)} for each of them,
+     * but wakes up the thread of this executor only once after all of them were added. A producer which hands many
+     * tasks to an event loop should prefer this method, as waking up a selector is a system call.
+     */
+    public void executeBatch(Collection<? extends Runnable> tasks) {
+        ObjectUtil.checkNotNull(tasks, "tasks");
+
+        boolean inEventLoop = inEventLoop();
+        if (!inEventLoop) {
+            startThread();
+        }
+        boolean wakeup = false;
+        try {
+            for (Runnable task: tasks) {
+                addTask(task);
+                if (!inEventLoop && isShutdown() && removeTask(task)) {
+                    reject();
+                }
+                if (!wakeup && !addTaskWakesUp && wakesUpForTask(task)) {
+                    wakeup = true;
+                }
+            }
+        } finally {
+            // Also wake up for the tasks which were added before one was rejected.
+            if (wakeup) {
+                wakeup(inEventLoop);
+            }
+        }
+    }
+
     @Override
     public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException, ExecutionException {
         throwIfInEventLoop("invokeAny");
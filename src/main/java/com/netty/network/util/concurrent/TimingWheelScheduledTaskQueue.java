@@ -0,0 +1,309 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.util.concurrent;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * A queue of {@link ScheduledFutureTask}s backed by a hierarchical timing wheel, which adds and removes tasks in
+ * constant time, see {@link AbstractScheduledEventExecutor#setTimingWheelEnabled(boolean)}.
+ *
+ * Deadlines are bucketed by ticks of 2^20 nanoseconds, about a millisecond. The wheel has {@value #LEVELS} levels of
+ * 64 buckets each, and a task is kept on the level of the highest 6 bit group in which its tick differs from the
+ * current tick, so every level spans 64 times the ticks of the level below. Tasks whose tick is not after the current
+ * tick are kept in a binary heap instead, which holds the tasks that are about to run in the exact order of their
+ * deadlines.
+ *
+ * Once the heap ran empty, {@link #peek()} moves the current tick forward to the start of the earliest bucket and
+ * cascades its tasks down the wheel until the earliest tick reached the heap. Tasks scheduled before the current
+ * tick go to the heap as well, so the heap only grows beyond the tasks of a single tick if tasks are scheduled ahead
+ * of all others, and even then tasks are added and removed in logarithmic time.
+ */
+final class TimingWheelScheduledTaskQueue extends AbstractQueue<ScheduledFutureTask<?>> {
+
+    static final int NOT_QUEUED = -1;
+    private static final int DUE = -2;
+
+    private static final int TICK_SHIFT = 20;
+    private static final int SLOT_SHIFT = 6;
+    private static final int SLOTS = 1 << SLOT_SHIFT;
+    private static final int SLOT_MASK = SLOTS - 1;
+    // 2^36 ticks, about two years.
+    private static final int LEVELS = 6;
+    // The bucket of the tasks which are too far ahead for the wheel.
+    private static final int OVERFLOW = LEVELS * SLOTS;
+
+    private final ScheduledFutureTask<?>[] buckets = new ScheduledFutureTask<?>[OVERFLOW + 1];
+    // A bit per non-empty bucket of each level.
+    private final long[] occupied = new long[LEVELS];
+    private ScheduledFutureTask<?>[] dueTasks = new ScheduledFutureTask<?>[16];
+    private int dueCount;
+    private long currentTick;
+    private int size;
+
+    TimingWheelScheduledTaskQueue() {
+        currentTick = tick(ScheduledFutureTask.nanoTime());
+    }
+
+    private static long tick(long deadlineNanos) {
+        return deadlineNanos >> TICK_SHIFT;
+    }
+
+    @Override
+    public boolean offer(ScheduledFutureTask<?> task) {
+        if (task.wheelBucket != NOT_QUEUED) {
+            throw new IllegalArgumentException("task already queued: " + task);
+        }
+        place(task);
+        size++;
+        return true;
+    }
+
+    @Override
+    public ScheduledFutureTask<?> peek() {
+        if (dueCount == 0) {
+            if (size == 0) {
+                return null;
+            }
+            advanceToEarliest();
+        }
+        return dueTasks[0];
+    }
+
+    @Override
+    public ScheduledFutureTask<?> poll() {
+        ScheduledFutureTask<?> task = peek();
+        if (task != null) {
+            removeDue(task);
+            size--;
+        }
+        return task;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        if (!(o instanceof ScheduledFutureTask)) {
+            return false;
+        }
+        ScheduledFutureTask<?> task = (ScheduledFutureTask<?>) o;
+        if (task.wheelBucket == NOT_QUEUED) {
+            return false;
+        }
+        if (task.wheelBucket == DUE) {
+            removeDue(task);
+        } else {
+            unlink(task);
+        }
+        size--;
+        return true;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < dueCount; i++) {
+            ScheduledFutureTask<?> task = dueTasks[i];
+            dueTasks[i] = null;
+            task.wheelBucket = NOT_QUEUED;
+        }
+        dueCount = 0;
+        for (int bucket = 0; bucket < buckets.length; bucket++) {
+            ScheduledFutureTask<?> task = buckets[bucket];
+            buckets[bucket] = null;
+            while (task != null) {
+                ScheduledFutureTask<?> next = task.wheelNext;
+                task.wheelPrev = task.wheelNext = null;
+                task.wheelBucket = NOT_QUEUED;
+                task = next;
+            }
+        }
+        Arrays.fill(occupied, 0);
+        size = 0;
+    }
+
+    /**
+     * Returns an iterator over a snapshot of the queued tasks in no particular order, which is only used to cancel
+     * or move all of them.
+     */
+    @Override
+    public Iterator<ScheduledFutureTask<?>> iterator() {
+        List<ScheduledFutureTask<?>> tasks = new ArrayList<ScheduledFutureTask<?>>(size);
+        tasks.addAll(Arrays.asList(dueTasks).subList(0, dueCount));
+        for (ScheduledFutureTask<?> head: buckets) {
+            for (ScheduledFutureTask<?> task = head; task != null; task = task.wheelNext) {
+                tasks.add(task);
+            }
+        }
+        return Collections.unmodifiableList(tasks).iterator();
+    }
+
+    private void place(ScheduledFutureTask<?> task) {
+        long tick = tick(task.deadlineNanos());
+        if (tick <= currentTick) {
+            addDue(task);
+            return;
+        }
+
+        int level = (Long.SIZE - 1 - Long.numberOfLeadingZeros(tick ^ currentTick)) / SLOT_SHIFT;
+        int bucket;
+        if (level < LEVELS) {
+            int slot = (int) (tick >>> level * SLOT_SHIFT) & SLOT_MASK;
+            occupied[level] |= 1L << slot;
+            bucket = level * SLOTS + slot;
+        } else {
+            bucket = OVERFLOW;
+        }
+        ScheduledFutureTask<?> head = buckets[bucket];
+        if (head != null) {
+            head.wheelPrev = task;
+        }
+        task.wheelNext = head;
+        task.wheelBucket = bucket;
+        buckets[bucket] = task;
+    }
+
+    private void unlink(ScheduledFutureTask<?> task) {
+        int bucket = task.wheelBucket;
+        ScheduledFutureTask<?> prev = task.wheelPrev;
+        ScheduledFutureTask<?> next = task.wheelNext;
+        if (prev != null) {
+            prev.wheelNext = next;
+        } else {
+            buckets[bucket] = next;
+            if (next == null && bucket != OVERFLOW) {
+                occupied[bucket >>> SLOT_SHIFT] &= ~(1L << (bucket & SLOT_MASK));
+            }
+        }
+        if (next != null) {
+            next.wheelPrev = prev;
+        }
+        task.wheelPrev = task.wheelNext = null;
+        task.wheelBucket = NOT_QUEUED;
+    }
+
+    /**
+     * Moves the current tick forward until the earliest tasks reached the heap, which must be empty.
+     */
+    private void advanceToEarliest() {
+        assert dueCount == 0 && size != 0;
+        do {
+            // All tasks of a level are after the tasks of the levels below, and the buckets of a level are in order.
+            int level = 0;
+            while (level < LEVELS && occupied[level] == 0) {
+                level++;
+            }
+            if (level == LEVELS) {
+                // Only overflowed tasks are left, which are placed anew around the earliest of them.
+                long earliestTick = Long.MAX_VALUE;
+                for (ScheduledFutureTask<?> task = buckets[OVERFLOW]; task != null; task = task.wheelNext) {
+                    earliestTick = Math.min(earliestTick, tick(task.deadlineNanos()));
+                }
+                currentTick = earliestTick;
+                cascade(OVERFLOW);
+            } else {
+                int slot = Long.numberOfTrailingZeros(occupied[level]);
+                int shift = level * SLOT_SHIFT;
+                currentTick = ((currentTick >>> shift + SLOT_SHIFT) << shift + SLOT_SHIFT) | ((long) slot << shift);
+                cascade(level * SLOTS + slot);
+            }
+        } while (dueCount == 0);
+    }
+
+    private void cascade(int bucket) {
+        ScheduledFutureTask<?> task = buckets[bucket];
+        buckets[bucket] = null;
+        if (bucket != OVERFLOW) {
+            occupied[bucket >>> SLOT_SHIFT] &= ~(1L << (bucket & SLOT_MASK));
+        }
+        while (task != null) {
+            ScheduledFutureTask<?> next = task.wheelNext;
+            task.wheelPrev = task.wheelNext = null;
+            place(task);
+            task = next;
+        }
+    }
+
+    private void addDue(ScheduledFutureTask<?> task) {
+        if (dueCount == dueTasks.length) {
+            dueTasks = Arrays.copyOf(dueTasks, dueTasks.length << 1);
+        }
+        task.wheelBucket = DUE;
+        siftUp(dueCount++, task);
+    }
+
+    private void removeDue(ScheduledFutureTask<?> task) {
+        int index = task.dueIndex;
+        task.wheelBucket = NOT_QUEUED;
+        ScheduledFutureTask<?> last = dueTasks[--dueCount];
+        dueTasks[dueCount] = null;
+        if (last != task) {
+            siftDown(index, last);
+            if (dueTasks[index] == last) {
+                siftUp(index, last);
+            }
+        }
+    }
+
+    private void siftUp(int index, ScheduledFutureTask<?> task) {
+        while (index > 0) {
+            int parentIndex = (index - 1) >>> 1;
+            ScheduledFutureTask<?> parent = dueTasks[parentIndex];
+            if (task.compareTo(parent) >= 0) {
+                break;
+            }
+            dueTasks[index] = parent;
+            parent.dueIndex = index;
+            index = parentIndex;
+        }
+        dueTasks[index] = task;
+        task.dueIndex = index;
+    }
+
+    private void siftDown(int index, ScheduledFutureTask<?> task) {
+        int half = dueCount >>> 1;
+        while (index < half) {
+            int childIndex = (index << 1) + 1;
+            ScheduledFutureTask<?> child = dueTasks[childIndex];
+            int rightIndex = childIndex + 1;
+            if (rightIndex < dueCount && dueTasks[rightIndex].compareTo(child) < 0) {
+                child = dueTasks[childIndex = rightIndex];
+            }
+            if (task.compareTo(child) <= 0) {
+                break;
+            }
+            dueTasks[index] = child;
+            child.dueIndex = index;
+            index = childIndex;
+        }
+        dueTasks[index] = task;
+        task.dueIndex = index;
+    }
+}
@@ -0,0 +1,221 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License,
+ * version 2.0 (the "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at:
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS, WITHOUT
+ * WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the
+ * License for the specific language governing permissions and limitations
+ * under the License.
+ */
+
+package com.netty.network.util.concurrent;
+
+import com.netty.network.util.internal.chmv8.ForkJoinPool;
+import com.netty.network.util.internal.chmv8.ForkJoinTask;
+import com.netty.network.util.internal.chmv8.ForkJoinWorkerThread;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * {@link EventExecutor} implementation which runs its tasks on a work-stealing {@link ForkJoinPool}, which gives
+ * every thread a task queue of its own and lets idle threads take tasks from the others. It makes no guarantees
+ * about the ordering of task execution, like {@link UnorderedThreadPoolEventExecutor}, but its threads do not
+ * contend on a single shared queue, which makes it a better fit for offloading CPU heavy handler work.
+ *
+ * Tasks which are submitted by a thread of the pool are queued by that thread. Wrap it in a
+ * {@link NonStickyEventExecutorGroup} to run the tasks submitted to each of its executors in order, for example the
+ * tasks of the handlers of a single channel, while still using all threads of the pool.
+ *
+ * Scheduling tasks is not supported.
+ *
+ * <strong>Because it provides no ordering care should be taken when using it!</strong>
+ */
+public final class WorkStealingEventExecutor extends AbstractEventExecutor {
+    // How often the pool is checked for the end of the quiet period and for its termination.
+    private static final long CHECK_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final ForkJoinPool pool;
+    private final AtomicBoolean shuttingDown = new AtomicBoolean();
+    private final Promise<?> terminationFuture = GlobalEventExecutor.INSTANCE.newPromise();
+
+    /**
+     * Creates a new instance with as many threads as there are available processors.
+     */
+    public WorkStealingEventExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Creates a new instance with the given number of threads.
+     */
+    public WorkStealingEventExecutor(int nThreads) {
+        if (nThreads <= 0) {
+            throw new IllegalArgumentException(String.format("nThreads: %d (expected: > 0)", nThreads));
+        }
+        // Tasks are never joined, so run the tasks of each thread in the order they were queued.
+        pool = new ForkJoinPool(nThreads, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (task == null) {
+            throw new NullPointerException("task");
+        }
+        RunnableTask forkJoinTask = new RunnableTask(task);
+        Thread currentThread = Thread.currentThread();
+        if (currentThread instanceof ForkJoinWorkerThread && ((ForkJoinWorkerThread) currentThread).getPool() == pool) {
+            forkJoinTask.fork();
+        } else {
+            pool.execute(forkJoinTask);
+        }
+    }
+
+    @Override
+    public boolean inEventLoop(Thread thread) {
+        return false;
+    }
+
+    @Override
+    public boolean isShuttingDown() {
+        return shuttingDown.get();
+    }
+
+    /**
+     * Shuts the pool down once it did not run any task for {@code quietPeriod}, or once {@code timeout} passed. Tasks
+     * are accepted until then, and the tasks which were queued by then still run before the pool terminates.
+     */
+    @Override
+    public Future<?> shutdownGracefully(long quietPeriod, long timeout, TimeUnit unit) {
+        if (quietPeriod < 0) {
+            throw new IllegalArgumentException("quietPeriod: " + quietPeriod + " (expected >= 0)");
+        }
+        if (timeout < quietPeriod) {
+            throw new IllegalArgumentException(
+                    "timeout: " + timeout + " (expected >= quietPeriod (" + quietPeriod + "))");
+        }
+        if (unit == null) {
+            throw new NullPointerException("unit");
+        }
+
+        if (shuttingDown.compareAndSet(false, true)) {
+            new ShutdownTask(unit.toNanos(quietPeriod), System.nanoTime() + unit.toNanos(timeout)).run();
+        }
+        return terminationFuture();
+    }
+
+    @Override
+    public Future<?> terminationFuture() {
+        return terminationFuture;
+    }
+
+    @Override
+    @Deprecated
+    public void shutdown() {
+        shuttingDown.set(true);
+        pool.shutdown();
+        new ShutdownTask(0, System.nanoTime()).run();
+    }
+
+    @Override
+    @Deprecated
+    public List<Runnable> shutdownNow() {
+        shuttingDown.set(true);
+        List<Runnable> tasks = pool.shutdownNow();
+        new ShutdownTask(0, System.nanoTime()).run();
+        return tasks;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return pool.isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return pool.isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return pool.awaitTermination(timeout, unit);
+    }
+
+    /**
+     * Shuts the pool down once it was quiescent for the quiet period or the deadline passed, and then completes the
+     * {@link #terminationFuture()} once the pool terminated. Checks again on the {@link GlobalEventExecutor} until
+     * then instead of blocking a thread.
+     */
+    private final class ShutdownTask implements Runnable {
+        private final long quietPeriodNanos;
+        private final long deadlineNanos;
+        private long quietSinceNanos;
+        private boolean quiet;
+
+        ShutdownTask(long quietPeriodNanos, long deadlineNanos) {
+            this.quietPeriodNanos = quietPeriodNanos;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        @Override
+        public void run() {
+            if (!pool.isShutdown()) {
+                long nanoTime = System.nanoTime();
+                if (!pool.isQuiescent()) {
+                    quiet = false;
+                } else if (!quiet) {
+                    quiet = true;
+                    quietSinceNanos = nanoTime;
+                }
+                if (nanoTime - deadlineNanos < 0 && (!quiet || nanoTime - quietSinceNanos < quietPeriodNanos)) {
+                    GlobalEventExecutor.INSTANCE.schedule(this, CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+                    return;
+                }
+                pool.shutdown();
+            }
+
+            if (pool.isTerminated()) {
+                terminationFuture.trySuccess(null);
+            } else {
+                GlobalEventExecutor.INSTANCE.schedule(this, CHECK_INTERVAL_NANOS, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+
+    /**
+     * Runs a task and logs its failure, instead of letting the {@link ForkJoinPool} hand it to the uncaught exception
+     * handler of its thread.
+     */
+    private static final class RunnableTask extends ForkJoinTask<Void> {
+        private static final long serialVersionUID = -2409914938452537335L;
+
+        private final Runnable task;
+
+        RunnableTask(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public Void getRawResult() {
+            return null;
+        }
+
+        @Override
+        protected void setRawResult(Void value) {
+            // NOOP
+        }
+
+        @Override
+        protected boolean exec() {
+            safeExecute(task);
+            return true;
+        }
+    }
+}
@@ -19,12 +19,13 @@ import java.nio.ByteBuffer;
 
 /**
  * {@link OutOfMemoryError} that is throws if {@link PlatformDependent#allocateDirectNoCleaner(int)} can not allocate
- * a new {@link ByteBuffer} due memory restrictions.
+ * a new {@link ByteBuffer} due memory restrictions, or if an allocation would exceed the budget of a
+ * {@code BudgetedByteBufAllocator}.
  */
 public final class OutOfDirectMemoryError extends OutOfMemoryError {
     private static final long serialVersionUID = 4228264016184011555L;
 
-    OutOfDirectMemoryError(String s) {
+    public OutOfDirectMemoryError(String s) {
         super(s);
     }
 }
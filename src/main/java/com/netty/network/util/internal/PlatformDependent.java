@@ -105,6 +105,7 @@ public final class PlatformDependent {
     private static final boolean USE_DIRECT_BUFFER_NO_CLEANER;
     private static final AtomicLong DIRECT_MEMORY_COUNTER;
     private static final long DIRECT_MEMORY_LIMIT;
+    private static final int UNINITIALIZED_ARRAY_ALLOCATION_THRESHOLD;
 
     public static final boolean BIG_ENDIAN_NATIVE_ORDER = ByteOrder.nativeOrder() == ByteOrder.BIG_ENDIAN;
 
@@ -147,6 +148,14 @@ public final class PlatformDependent {
         }
         DIRECT_MEMORY_LIMIT = maxDirectMemory;
         logger.debug("io.netty.maxDirectMemory: {} bytes", maxDirectMemory);
+
+        // Arrays of at least this many bytes which are allocated by allocateUninitializedArray(int) are not zeroed,
+        // a negative value disables it.
+        int tryAllocateUninitializedArray =
+                SystemPropertyUtil.getInt("io.netty.uninitializedArrayAllocationThreshold", 1024);
+        UNINITIALIZED_ARRAY_ALLOCATION_THRESHOLD = PlatformDependent0.hasAllocateArrayMethod() ?
+                tryAllocateUninitializedArray : -1;
+        logger.debug("-Dio.netty.uninitializedArrayAllocationThreshold: {}", UNINITIALIZED_ARRAY_ALLOCATION_THRESHOLD);
     }
 
     /**
@@ -178,6 +187,15 @@ public final class PlatformDependent {
         return IS_ROOT;
     }
 
+    /**
+     * Allocates a new {@code byte[]} whose content is not zeroed if it is large enough and the platform supports it,
+     * see {@code -Dio.netty.uninitializedArrayAllocationThreshold}. The caller must not read what it did not write.
+     */
+    public static byte[] allocateUninitializedArray(int size) {
+        return UNINITIALIZED_ARRAY_ALLOCATION_THRESHOLD < 0 || UNINITIALIZED_ARRAY_ALLOCATION_THRESHOLD > size ?
+                new byte[size] : PlatformDependent0.allocateUninitializedArray(size);
+    }
+
     /**
      * Return the version of Java under which this library is used.
      */
@@ -19,6 +19,9 @@ import com.netty.network.logging.InternalLogger;
 import com.netty.network.logging.InternalLoggerFactory;
 import sun.misc.Unsafe;
 
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
@@ -57,105 +60,111 @@ final class PlatformDependent0 {
     private static final long UNSAFE_COPY_THRESHOLD = 1024L * 1024L;
 
     private static final boolean UNALIGNED;
+    // jdk.internal.misc.Unsafe.allocateUninitializedArray(byte.class, int), only available on Java 9+ if the
+    // jdk.internal.misc package is exported, e.g. by --add-exports java.base/jdk.internal.misc=ALL-UNNAMED.
+    // A MethodHandle in a static final field is inlined by the JIT, which is required for the JVM to skip zeroing.
+    private static final MethodHandle ALLOCATE_ARRAY_METHOD;
 
     static {
         final ByteBuffer direct = ByteBuffer.allocateDirect(1);
-        final Field addressField;
-        // attempt to access field Buffer#address
-        final Object maybeAddressField = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+        Field addressField = null;
+
+        // attempt to access field Unsafe#theUnsafe
+        final Object maybeUnsafe = AccessController.doPrivileged(new PrivilegedAction<Object>() {
             @Override
             public Object run() {
                 try {
-                    final Field field = Buffer.class.getDeclaredField("address");
-                    field.setAccessible(true);
-                    // if direct really is a direct buffer, address will be non-zero
-                    if (field.getLong(direct) == 0) {
-                        return null;
-                    }
-                    return field;
-                } catch (IllegalAccessException e) {
-                    return e;
+                    final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
+                    unsafeField.setAccessible(true);
+                    // the unsafe instance
+                    return unsafeField.get(null);
                 } catch (NoSuchFieldException e) {
                     return e;
                 } catch (SecurityException e) {
                     return e;
+                } catch (IllegalAccessException e) {
+                    return e;
+                } catch (RuntimeException e) {
+                    // InaccessibleObjectException on Java 9+ if the module is not open.
+                    return e;
                 }
             }
         });
 
-        if (maybeAddressField instanceof Field) {
-            addressField = (Field) maybeAddressField;
-            logger.debug("java.nio.Buffer.address: available");
+        // the conditional check here can not be replaced with checking that maybeUnsafe
+        // is an instanceof Unsafe and reversing the if and else blocks; this is because an
+        // instanceof check against Unsafe will trigger a class load and we might not have
+        // the runtime permission accessClassInPackage.sun.misc
+        Unsafe unsafe;
+        if (maybeUnsafe instanceof Exception) {
+            unsafe = null;
+            logger.debug("sun.misc.Unsafe.theUnsafe: unavailable", (Exception) maybeUnsafe);
         } else {
-            logger.debug("java.nio.Buffer.address: unavailable", (Exception) maybeAddressField);
-            addressField = null;
+            unsafe = (Unsafe) maybeUnsafe;
+            logger.debug("sun.misc.Unsafe.theUnsafe: available");
         }
 
-        Unsafe unsafe;
-        if (addressField != null) {
-            // attempt to access field Unsafe#theUnsafe
-            final Object maybeUnsafe = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+        // ensure the unsafe supports all necessary methods to work around the mistake in the latest OpenJDK
+        // https://github.com/netty/netty/issues/1061
+        // http://www.mail-archive.com/jdk6-dev@openjdk.java.net/msg00698.html
+        if (unsafe != null) {
+            final Unsafe finalUnsafe = unsafe;
+            final Object maybeException = AccessController.doPrivileged(new PrivilegedAction<Object>() {
                 @Override
                 public Object run() {
                     try {
-                        final Field unsafeField = Unsafe.class.getDeclaredField("theUnsafe");
-                        unsafeField.setAccessible(true);
-                        // the unsafe instance
-                        return unsafeField.get(null);
-                    } catch (NoSuchFieldException e) {
+                        finalUnsafe.getClass().getDeclaredMethod(
+                                "copyMemory", Object.class, long.class, Object.class, long.class, long.class);
+                        return null;
+                    } catch (NoSuchMethodException e) {
                         return e;
                     } catch (SecurityException e) {
                         return e;
-                    } catch (IllegalAccessException e) {
-                        return e;
                     }
                 }
             });
 
-            // the conditional check here can not be replaced with checking that maybeUnsafe
-            // is an instanceof Unsafe and reversing the if and else blocks; this is because an
-            // instanceof check against Unsafe will trigger a class load and we might not have
-            // the runtime permission accessClassInPackage.sun.misc
-            if (maybeUnsafe instanceof Exception) {
-                unsafe = null;
-                logger.debug("sun.misc.Unsafe.theUnsafe: unavailable", (Exception) maybeUnsafe);
+            if (maybeException == null) {
+                logger.debug("sun.misc.Unsafe.copyMemory: available");
             } else {
-                unsafe = (Unsafe) maybeUnsafe;
-                logger.debug("sun.misc.Unsafe.theUnsafe: available");
+                // Unsafe.copyMemory(Object, long, Object, long, long) unavailable.
+                unsafe = null;
+                logger.debug("sun.misc.Unsafe.copyMemory: unavailable", (Exception) maybeException);
             }
+        }
 
-            // ensure the unsafe supports all necessary methods to work around the mistake in the latest OpenJDK
-            // https://github.com/netty/netty/issues/1061
-            // http://www.mail-archive.com/jdk6-dev@openjdk.java.net/msg00698.html
-            if (unsafe != null) {
-                final Unsafe finalUnsafe = unsafe;
-                final Object maybeException = AccessController.doPrivileged(new PrivilegedAction<Object>() {
-                    @Override
-                    public Object run() {
-                        try {
-                            finalUnsafe.getClass().getDeclaredMethod(
-                                    "copyMemory", Object.class, long.class, Object.class, long.class, long.class);
+        if (unsafe != null) {
+            final Unsafe finalUnsafe = unsafe;
+            // attempt to access field Buffer#address. The field is read through Unsafe so this also works on
+            // Java 9+ where java.nio is not open for deep reflection.
+            final Object maybeAddressField = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+                @Override
+                public Object run() {
+                    try {
+                        final Field field = Buffer.class.getDeclaredField("address");
+                        final long offset = finalUnsafe.objectFieldOffset(field);
+                        // if direct really is a direct buffer, address will be non-zero
+                        if (finalUnsafe.getLong(direct, offset) == 0) {
                             return null;
-                        } catch (NoSuchMethodException e) {
-                            return e;
-                        } catch (SecurityException e) {
-                            return e;
                         }
+                        return field;
+                    } catch (NoSuchFieldException e) {
+                        return e;
+                    } catch (SecurityException e) {
+                        return e;
                     }
-                });
-
-                if (maybeException == null) {
-                    logger.debug("sun.misc.Unsafe.copyMemory: available");
-                } else {
-                    // Unsafe.copyMemory(Object, long, Object, long, long) unavailable.
-                    unsafe = null;
-                    logger.debug("sun.misc.Unsafe.copyMemory: unavailable", (Exception) maybeException);
                 }
+            });
+
+            if (maybeAddressField instanceof Field) {
+                addressField = (Field) maybeAddressField;
+                logger.debug("java.nio.Buffer.address: available");
+            } else {
+                logger.debug("java.nio.Buffer.address: unavailable", (Exception) maybeAddressField);
+                // If we cannot access the address of a direct buffer, there's no point of using unsafe.
+                // Let's just pretend unsafe is unavailable for overall simplicity.
+                unsafe = null;
             }
-        } else {
-            // If we cannot access the address of a direct buffer, there's no point of using unsafe.
-            // Let's just pretend unsafe is unavailable for overall simplicity.
-            unsafe = null;
         }
 
         UNSAFE = unsafe;
@@ -182,6 +191,9 @@ final class PlatformDependent0 {
                                     return e;
                                 } catch (SecurityException e) {
                                     return e;
+                                } catch (RuntimeException e) {
+                                    // InaccessibleObjectException on Java 9+ if the module is not open.
+                                    return e;
                                 }
                             }
                         });
@@ -235,6 +247,9 @@ final class PlatformDependent0 {
                         return e;
                     } catch (SecurityException e) {
                         return e;
+                    } catch (RuntimeException e) {
+                        // InaccessibleObjectException on Java 9+ if the module is not open.
+                        return e;
                     }
                 }
             });
@@ -256,6 +271,36 @@ final class PlatformDependent0 {
         logger.debug("java.nio.DirectByteBuffer.<init>(long, int): {}",
                 DIRECT_BUFFER_CONSTRUCTOR != null ? "available" : "unavailable");
 
+        Object maybeAllocateArray = AccessController.doPrivileged(new PrivilegedAction<Object>() {
+            @Override
+            public Object run() {
+                try {
+                    Class<?> internalUnsafeClass = Class.forName(
+                            "jdk.internal.misc.Unsafe", false, PlatformDependent.getSystemClassLoader());
+                    Object internalUnsafe = internalUnsafeClass.getMethod("getUnsafe").invoke(null);
+                    Method allocateArrayMethod = internalUnsafeClass.getMethod(
+                            "allocateUninitializedArray", Class.class, int.class);
+                    MethodHandle allocateArray = MethodHandles.lookup().unreflect(allocateArrayMethod)
+                            .bindTo(internalUnsafe).bindTo(byte.class)
+                            .asType(MethodType.methodType(byte[].class, int.class));
+                    // Make sure the method can be invoked before using it.
+                    byte[] array = (byte[]) allocateArray.invokeExact(8);
+                    assert array.length == 8;
+                    return allocateArray;
+                } catch (Throwable e) {
+                    return e;
+                }
+            }
+        });
+        if (maybeAllocateArray instanceof MethodHandle) {
+            ALLOCATE_ARRAY_METHOD = (MethodHandle) maybeAllocateArray;
+            logger.debug("jdk.internal.misc.Unsafe.allocateUninitializedArray(int): available");
+        } else {
+            ALLOCATE_ARRAY_METHOD = null;
+            logger.debug("jdk.internal.misc.Unsafe.allocateUninitializedArray(int): unavailable",
+                    (Throwable) maybeAllocateArray);
+        }
+
         freeDirectBuffer(direct);
     }
 
@@ -276,6 +321,20 @@ final class PlatformDependent0 {
         UNSAFE.throwException(checkNotNull(cause, "cause"));
     }
 
+    static boolean hasAllocateArrayMethod() {
+        return ALLOCATE_ARRAY_METHOD != null;
+    }
+
+    static byte[] allocateUninitializedArray(int size) {
+        try {
+            return (byte[]) ALLOCATE_ARRAY_METHOD.invokeExact(size);
+        } catch (Throwable cause) {
+            // e.g. an OutOfMemoryError, which is thrown as is by new byte[size].
+            PlatformDependent.throwException(cause);
+            return null;
+        }
+    }
+
     static boolean hasDirectBufferNoCleanerConstructor() {
         return DIRECT_BUFFER_CONSTRUCTOR != null;
     }
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2017 The Netty Project
+ *
+ * The Netty Project licenses this file to you under the Apache License, version 2.0 (the
+ * "License"); you may not use this file except in compliance with the License. You may obtain a
+ * copy of the License at:
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package com.netty.network.util.internal;
+
+/**
+ * SWAR (SIMD Within A Register) utility methods, which process the 8 bytes of a {@code long} at once.
+ */
+public final class SWARUtil {
+
+    private static final long HIGH_BITS_CLEARED = 0x7F7F7F7F7F7F7F7FL;
+    private static final long HIGH_BITS = ~HIGH_BITS_CLEARED;
+
+    private SWARUtil() {
+    }
+
+    /**
+     * Returns a word with every byte set to {@code byteToFind}, to be used with {@link #applyPattern(long, long)}.
+     */
+    public static long compilePattern(byte byteToFind) {
+        return (byteToFind & 0xFFL) * 0x101010101010101L;
+    }
+
+    /**
+     * Returns a word in which the highest bit of every byte is set if the same byte of {@code word} matches the
+     * {@code pattern}, and all other bits are cleared. Unlike the classic {@code (x - 0x01..) & ~x & 0x80..} trick
+     * there are no false positives, so the result can be used to find any matching byte and not just the first one.
+     *
+     * @param word the 8 bytes to search
+     * @param pattern the pattern created by {@link #compilePattern(byte)}
+     * @return {@code 0} if no byte matched
+     */
+    public static long applyPattern(long word, long pattern) {
+        long input = word ^ pattern;
+        long tmp = (input & HIGH_BITS_CLEARED) + HIGH_BITS_CLEARED;
+        return ~(tmp | input | HIGH_BITS_CLEARED);
+    }
+
+    /**
+     * Returns {@code true} if none of the 8 bytes of {@code word} has its highest bit set, which means all of them
+     * are ASCII characters.
+     */
+    public static boolean isAscii(long word) {
+        return (word & HIGH_BITS) == 0;
+    }
+
+    /**
+     * Returns the index of the first matching byte in a non-zero word returned by {@link #applyPattern(long, long)}.
+     *
+     * @param word the result of {@link #applyPattern(long, long)}
+     * @param isBigEndian {@code true} if the first byte is the most significant byte of the word that was searched
+     */
+    public static int getIndex(long word, boolean isBigEndian) {
+        int zeros = isBigEndian ? Long.numberOfLeadingZeros(word) : Long.numberOfTrailingZeros(word);
+        return zeros >>> 3;
+    }
+}